@@ -0,0 +1,117 @@
+package com.github.lxp000.pacp4j_extend.benchmark;
+
+import com.github.lxp000.pacp4j_extend.http.HttpDecoder;
+import com.github.lxp000.pacp4j_extend.http.HttpPacket;
+import com.github.lxp000.pacp4j_extend.tcp.FrameParser;
+import com.github.lxp000.pacp4j_extend.tcp.TcpSegment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.pcap4j.packet.EthernetPacket;
+import org.pcap4j.packet.IllegalRawDataException;
+import org.pcap4j.packet.Packet;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * {@link HttpDecoder}性能测试<br>
+ * 每次操作解码一个包: 吞吐量(包/µs), 每个包的耗时分布(SampleTime), 分配速率通过 -prof gc 查看(gc.alloc.rate.norm 为每个包分配的字节数)<br>
+ * 1. decodePacket: pcap4j的包对象(已提前解析) -> {@link HttpDecoder#decode(Packet, Consumer)}<br>
+ * 2. decodeFrame: 原始帧 -> {@link FrameParser} -> {@link HttpDecoder#decode(TcpSegment, Consumer)}<br>
+ * 所有帧解码完后换新的解码器从头开始(同一个解码器重复解码相同的seqNum会被当作重传)
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class HttpDecoderBenchmark {
+    private static final long SEED = 20220401L;
+
+    @Param({"SMALL_GET", "CONTENT_LENGTH", "CHUNKED", "SPLIT_HEAD", "MANY_FLOWS"})
+    private SyntheticTraffic.Scenario scenario;
+    @Param({"2000"})
+    private int exchanges;
+
+    private Packet[] packets;
+    private ByteBuffer[] frames;
+    private final TcpSegment segment = new TcpSegment();
+    private Consumer<HttpPacket> sink;
+    private HttpDecoder decoder;
+    private int index;
+
+    @Setup
+    public void setup(Blackhole blackhole) throws IllegalRawDataException {
+        List<byte[]> rawFrames = SyntheticTraffic.generate(scenario, exchanges, SEED);
+        packets = new Packet[rawFrames.size()];
+        frames = new ByteBuffer[rawFrames.size()];
+        for (int i = 0; i < packets.length; i++) {
+            byte[] frame = rawFrames.get(i);
+            packets[i] = EthernetPacket.newPacket(frame, 0, frame.length);
+            frames[i] = ByteBuffer.wrap(frame);
+        }
+        sink = blackhole::consume;
+        verify();
+        decoder = new HttpDecoder();
+        index = 0;
+    }
+
+    @Benchmark
+    public void decodePacket() {
+        if (index == packets.length) {
+            index = 0;
+            decoder = new HttpDecoder();
+        }
+        decoder.decode(packets[index++], sink);
+    }
+
+    @Benchmark
+    public void decodeFrame() {
+        if (index == frames.length) {
+            index = 0;
+            decoder = new HttpDecoder();
+        }
+        if (FrameParser.parse(frames[index++], FrameParser.DLT_EN10MB, segment)) {
+            decoder.decode(segment, sink);
+        }
+    }
+
+    /**
+     * 检查生成的流量能完整解码(每组一个请求一个响应), 避免测到解码失败的路径
+     */
+    private void verify() {
+        HttpDecoder verifier = new HttpDecoder();
+        int[] count = new int[1];
+        for (Packet packet : packets) {
+            verifier.decode(packet, httpPacket -> count[0]++);
+        }
+        if (count[0] != exchanges * 2 || verifier.pendingCount() != 0) {
+            throw new IllegalStateException(scenario + ": decoded " + count[0] + " of " + exchanges * 2
+                    + " messages, pending " + verifier.pendingCount());
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(HttpDecoderBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
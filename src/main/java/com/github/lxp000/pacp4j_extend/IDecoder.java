@@ -2,6 +2,37 @@ package com.github.lxp000.pacp4j_extend;
 
 import org.pcap4j.packet.Packet;
 
-public interface IDecoder<IPacket> {
+import java.util.function.Consumer;
+
+public interface IDecoder<IPacket> extends AutoCloseable {
     IPacket decode(Packet packet);
+
+    /**
+     * 解码, 本包中所有完整的请求/响应依次交给sink(一个包中可以有多个)<br>
+     * 默认为{@link #decode(Packet)}的一个结果
+     *
+     * @param packet 包
+     * @param sink   完整的请求/响应
+     */
+    default void decode(Packet packet, Consumer<? super IPacket> sink) {
+        IPacket result = decode(packet);
+        if (result instanceof IRequest || result instanceof IResponse) {
+            sink.accept(result);
+        }
+    }
+
+    /**
+     * 删除超时缓存<br>
+     * 没有新包时由调用方定时调用, 需要与{@link #decode(Packet)}在同一线程
+     */
+    default void expire() {
+    }
+
+    /**
+     * 关闭解码器, 释放会话中所有的缓存(未完整的请求/响应不再发送), 关闭后不能继续解码<br>
+     * 需要与{@link #decode(Packet)}在同一线程
+     */
+    @Override
+    default void close() {
+    }
 }
@@ -0,0 +1,194 @@
+package com.github.lxp000.pacp4j_extend.aggregate;
+
+import com.github.lxp000.pacp4j_extend.http.HttpListener;
+import com.github.lxp000.pacp4j_extend.http.HttpPacket;
+import com.github.lxp000.pacp4j_extend.http.HttpRequest;
+import com.github.lxp000.pacp4j_extend.http.HttpResponse;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 按接口汇总请求/响应<br>
+ * 作为{@link HttpListener}注册到解码器(可以注册到多个解码线程), 每组完整的请求/响应按
+ * (目标地址, 端口, 请求方式, 归一化的路径)计数、统计响应码和耗时分布, 不保存请求/响应本身;
+ * 只需要汇总时可以不处理解码结果, 定时导出{@link #snapshot(boolean)}<br>
+ * 每个接口的内存固定, 接口数量超出上限后新接口计入{@link EndpointKey#OTHER}; 重置时本周期没有记录的接口被删除
+ * <pre>
+ * EndpointAggregator aggregator = new EndpointAggregator();
+ * decoder.addListener(aggregator);
+ * aggregator.schedule(executor, 1, TimeUnit.MINUTES, summaries -&gt; ...);
+ * </pre>
+ */
+public class EndpointAggregator implements HttpListener {
+    private final ConcurrentHashMap<EndpointKey, EndpointStats> endpoints = new ConcurrentHashMap<>();
+    private final int maxEndpoints;
+    private final Function<String, String> pathNormalizer;
+
+    public EndpointAggregator() {
+        this(10_000, EndpointAggregator::normalizePath);
+    }
+
+    /**
+     * @param maxEndpoints   最大接口数量
+     * @param pathNormalizer 路径归一化(把路径中的id等替换为占位符)
+     */
+    public EndpointAggregator(int maxEndpoints, Function<String, String> pathNormalizer) {
+        this.maxEndpoints = maxEndpoints;
+        this.pathNormalizer = pathNormalizer;
+    }
+
+    @Override
+    public void onComplete(HttpPacket packet) {
+        if (packet instanceof HttpRequest) {
+            HttpRequest request = (HttpRequest) packet;
+            request.getHttpMethod();  // 转为字符串保存: 视图模式下使用方可能在响应之前释放请求
+            request.getPath();
+            return;
+        }
+        HttpResponse response = (HttpResponse) packet;
+        if (response.getRequestPath() == null) {
+            return;
+        }
+        EndpointKey key = new EndpointKey(response.getSrcHost(), response.getPort() == null ? 0 : response.getPort(),
+                response.getRequestMethod(), pathNormalizer.apply(response.getRequestPath()));
+        int status = response.getResCode() == null ? 0 : response.getResCode();
+        long latency = latencyMicros(response);
+        while (true) {
+            EndpointStats stats = endpoints.get(key);
+            if (stats == null) {
+                if (endpoints.size() >= maxEndpoints) {
+                    key = EndpointKey.OTHER;
+                }
+                stats = endpoints.computeIfAbsent(key, k -> new EndpointStats());
+            }
+            if (stats.record(status, latency)) {
+                return;
+            }
+            endpoints.remove(key, stats);  // 已删除 重新创建
+        }
+    }
+
+    /**
+     * 所有接口的汇总
+     *
+     * @param reset 读取后清零(开始新的统计周期)
+     * @return 接口 => 汇总(只包含本周期有记录的接口)
+     */
+    public Map<EndpointKey, EndpointSummary> snapshot(boolean reset) {
+        Map<EndpointKey, EndpointSummary> result = new LinkedHashMap<>();
+        for (Map.Entry<EndpointKey, EndpointStats> entry : endpoints.entrySet()) {
+            EndpointSummary summary = entry.getValue().snapshot(entry.getKey(), reset);
+            if (summary != null) {
+                result.put(entry.getKey(), summary);
+            } else if (entry.getValue().isRetired()) {
+                endpoints.remove(entry.getKey(), entry.getValue());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 定时导出并重置
+     *
+     * @param executor 定时线程
+     * @param period   周期
+     * @param unit     周期单位
+     * @param exporter 每个周期的汇总
+     * @return 用于取消
+     */
+    public ScheduledFuture<?> schedule(ScheduledExecutorService executor, long period, TimeUnit unit,
+                                       Consumer<? super Map<EndpointKey, EndpointSummary>> exporter) {
+        return executor.scheduleAtFixedRate(() -> exporter.accept(snapshot(true)), period, period, unit);
+    }
+
+    /**
+     * 当前接口数量
+     *
+     * @return 数量
+     */
+    public int size() {
+        return endpoints.size();
+    }
+
+    /**
+     * 默认的路径归一化: 纯数字 => {id}, UUID => {uuid}, 16位以上的十六进制 => {hex}
+     *
+     * @param path 路径(不含参数)
+     * @return 归一化的路径
+     */
+    public static String normalizePath(String path) {
+        if (path == null || path.isEmpty()) {
+            return "/";
+        }
+        StringBuilder builder = null;
+        int start = 0;
+        while (start <= path.length()) {
+            int end = path.indexOf('/', start);
+            if (end == -1) {
+                end = path.length();
+            }
+            String placeholder = placeholder(path, start, end);
+            if (placeholder != null && builder == null) {
+                builder = new StringBuilder(path.length()).append(path, 0, start);
+            }
+            if (builder != null) {
+                builder.append(placeholder != null ? placeholder : path.substring(start, end));
+                if (end < path.length()) {
+                    builder.append('/');
+                }
+            }
+            start = end + 1;
+        }
+        return builder == null ? path : builder.toString();
+    }
+
+    private static String placeholder(String path, int start, int end) {
+        int length = end - start;
+        if (length == 0) {
+            return null;
+        }
+        boolean digits = true;
+        boolean hex = true;
+        for (int i = start; i < end; i++) {
+            char c = path.charAt(i);
+            int position = i - start;
+            if (length == 36 && (position == 8 || position == 13 || position == 18 || position == 23)) {
+                if (c != '-') {
+                    hex = false;
+                }
+                digits = false;
+                continue;
+            }
+            if (c < '0' || c > '9') {
+                digits = false;
+                if (!(c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F')) {
+                    hex = false;
+                }
+            }
+        }
+        if (digits) {
+            return "{id}";
+        }
+        if (hex && length == 36) {
+            return "{uuid}";
+        }
+        return hex && length >= 16 ? "{hex}" : null;
+    }
+
+    /**
+     * 请求到响应的耗时(请求首部第一个包到响应首部第一个包的抓包时间)
+     */
+    private static long latencyMicros(HttpResponse response) {
+        if (response.getRequestTimestamp() == 0 || response.getTimestamp() == 0) {
+            return 0;
+        }
+        return TimeUnit.NANOSECONDS.toMicros(response.getTimestamp() - response.getRequestTimestamp());
+    }
+}
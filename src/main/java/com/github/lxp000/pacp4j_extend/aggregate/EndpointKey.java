@@ -0,0 +1,19 @@
+package com.github.lxp000.pacp4j_extend.aggregate;
+
+import lombok.Data;
+
+/**
+ * 接口标识: 目标地址 + 端口 + 请求方式 + 归一化的路径
+ */
+@Data
+public final class EndpointKey {
+    /**
+     * 接口数量超出上限后, 新接口都计入此项
+     */
+    public static final EndpointKey OTHER = new EndpointKey("*", 0, "*", "*");
+
+    private final String dstHost;
+    private final int port;
+    private final String method;
+    private final String path;
+}
@@ -0,0 +1,79 @@
+package com.github.lxp000.pacp4j_extend.aggregate;
+
+import com.github.lxp000.pacp4j_extend.metrics.QuantileSketch;
+
+import java.util.Arrays;
+
+/**
+ * 一个接口的统计(记录和读取都在锁内, 不同接口之间不竞争)
+ */
+class EndpointStats {
+    private long count;
+    private int[] codes = new int[4];  // 出现过的响应码(通常只有几种)
+    private long[] codeCounts = new long[4];
+    private int codeSize;
+    private final QuantileSketch latency = new QuantileSketch();
+    private boolean retired;  // 已从表中删除(重置时没有记录的接口)
+
+    /**
+     * 记录一组请求/响应
+     *
+     * @param status  响应码
+     * @param latency 耗时(µs)
+     * @return false 已从表中删除, 需要重新查找
+     */
+    synchronized boolean record(int status, long latency) {
+        if (retired) {
+            return false;
+        }
+        count++;
+        int index = 0;
+        while (index < codeSize && codes[index] != status) {
+            index++;
+        }
+        if (index == codeSize) {
+            if (codeSize == codes.length) {
+                codes = Arrays.copyOf(codes, codeSize * 2);
+                codeCounts = Arrays.copyOf(codeCounts, codeSize * 2);
+            }
+            codes[codeSize++] = status;
+        }
+        codeCounts[index]++;
+        this.latency.record(latency);
+        return true;
+    }
+
+    /**
+     * 读取汇总
+     *
+     * @param key   接口
+     * @param reset 读取后清零
+     * @return 汇总, null 本周期没有记录(reset时同时标记为已删除)
+     */
+    synchronized EndpointSummary snapshot(EndpointKey key, boolean reset) {
+        if (count == 0) {
+            retired = reset;
+            return null;
+        }
+        EndpointSummary summary = new EndpointSummary();
+        summary.setKey(key);
+        summary.setCount(count);
+        for (int i = 0; i < codeSize; i++) {
+            summary.getStatusCodes().put(codes[i], codeCounts[i]);
+            int statusClass = codes[i] / 100;
+            summary.getStatusClasses().merge(statusClass >= 1 && statusClass <= 5 ? statusClass + "xx" : "other", codeCounts[i], Long::sum);
+        }
+        summary.latencySketch().merge(latency);
+        summary.updateLatency();
+        if (reset) {
+            count = 0;
+            codeSize = 0;
+            latency.reset();
+        }
+        return summary;
+    }
+
+    synchronized boolean isRetired() {
+        return retired;
+    }
+}
@@ -0,0 +1,70 @@
+package com.github.lxp000.pacp4j_extend.aggregate;
+
+import com.github.lxp000.pacp4j_extend.metrics.QuantileSketch;
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 一个接口在统计周期内的汇总<br>
+ * 耗时为请求首部第一个包到响应首部第一个包的时间(µs); 不同进程/周期的汇总可以通过{@link #merge(EndpointSummary)}合并
+ */
+@Data
+public class EndpointSummary {
+    private EndpointKey key;
+    private long count;  // 完整的请求/响应组数
+    private Map<String, Long> statusClasses = new TreeMap<>();  // 1xx ~ 5xx
+    private Map<Integer, Long> statusCodes = new TreeMap<>();
+    private double latencyMean;
+    private long latencyMin;
+    private long latencyP50;
+    private long latencyP90;
+    private long latencyP99;
+    private long latencyMax;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private QuantileSketch latency = new QuantileSketch();
+
+    /**
+     * 耗时分布(用于合并或计算其他分位数)
+     *
+     * @return 分布
+     */
+    public QuantileSketch latencySketch() {
+        return latency;
+    }
+
+    /**
+     * 合并另一个汇总(相同接口的不同周期/进程)
+     *
+     * @param other 汇总
+     */
+    public void merge(EndpointSummary other) {
+        count += other.count;
+        other.statusClasses.forEach((k, v) -> statusClasses.merge(k, v, Long::sum));
+        other.statusCodes.forEach((k, v) -> statusCodes.merge(k, v, Long::sum));
+        latency.merge(other.latency);
+        updateLatency();
+    }
+
+    /**
+     * 由耗时分布计算各分位数
+     */
+    void updateLatency() {
+        latencyMean = latency.mean();
+        latencyMin = latency.min();
+        latencyP50 = latency.quantile(0.5);
+        latencyP90 = latency.quantile(0.9);
+        latencyP99 = latency.quantile(0.99);
+        latencyMax = latency.max();
+    }
+}
@@ -0,0 +1,26 @@
+package com.github.lxp000.pacp4j_extend.dispatch;
+
+import com.github.lxp000.pacp4j_extend.tcp.FlowKey;
+import com.github.lxp000.pacp4j_extend.util.TimerWheel;
+
+/**
+ * 连接(两个方向共用), 在连接表中以两个方向的流为key
+ */
+final class Connection {
+    static final int CLIENT_FIN = 1;
+    static final int SERVER_FIN = 2;
+
+    final FlowKey key;  // 第一个包的流
+    final FlowKey reverseKey;
+    FlowKey clientKey;  // 客户端 -> 服务端(null 还不知道方向)
+    ProtocolDecoder<Object> decoder;  // null 未分配
+    Object state;
+    boolean unknown;  // 所有协议都不匹配 之后的包跳过
+    int fins;
+    TimerWheel.Timeout<Connection> timeout;
+
+    Connection(FlowKey key) {
+        this.key = key;
+        this.reverseKey = key.reverse();
+    }
+}
@@ -0,0 +1,18 @@
+package com.github.lxp000.pacp4j_extend.dispatch;
+
+import lombok.Data;
+
+/**
+ * 协议分配器配置
+ */
+@Data
+public class DispatcherConfig {
+    /**
+     * 连接超时时间(ms), 超过此时间没有新包的连接删除
+     */
+    private long timeout = 100_000;
+    /**
+     * 事件时间模式: 超时按抓包时间计算(与{@link com.github.lxp000.pacp4j_extend.http.HttpDecoderConfig#isEventTime()}相同)
+     */
+    private boolean eventTime;
+}
@@ -0,0 +1,91 @@
+package com.github.lxp000.pacp4j_extend.dispatch;
+
+import com.github.lxp000.pacp4j_extend.IPacket;
+import com.github.lxp000.pacp4j_extend.http.HttpConnection;
+import com.github.lxp000.pacp4j_extend.http.HttpDecoder;
+import com.github.lxp000.pacp4j_extend.tcp.FlowKey;
+import com.github.lxp000.pacp4j_extend.tcp.TcpSegment;
+import io.netty.buffer.ByteBuf;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * HTTP协议(把{@link HttpDecoder}注册到{@link ProtocolDispatcher})<br>
+ * 两个方向的流保存在分配器连接表的{@link HttpConnection}中, 解码时不再查找解码器自己的会话表;
+ * 连接结束时删除连接的流并释放缓存
+ */
+public class HttpProtocol implements ProtocolDecoder<HttpConnection> {
+    private static final byte[][] METHODS = bytes("GET ", "POST ", "PUT ", "DELETE ", "HEAD ", "OPTIONS ", "PATCH ", "TRACE ", "CONNECT ", "HTTP/1.");
+    private final HttpDecoder decoder;
+
+    public HttpProtocol(HttpDecoder decoder) {
+        this.decoder = decoder;
+    }
+
+    @Override
+    public String name() {
+        return "http";
+    }
+
+    /**
+     * 请求行以请求方式开始(或中途抓包时第一段数据为响应)
+     */
+    @Override
+    public boolean sniff(ByteBuf data) {
+        int index = data.readerIndex();
+        int length = data.readableBytes();
+        for (byte[] method : METHODS) {
+            if (length >= method.length && matches(data, index, method)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public HttpConnection open(FlowKey clientKey) {
+        return decoder.openConnection(clientKey);
+    }
+
+    @Override
+    public void decode(HttpConnection state, TcpSegment segment, boolean fromClient, Consumer<? super IPacket> sink) {
+        decoder.decode(state, segment, fromClient, sink);
+    }
+
+    @Override
+    public void close(HttpConnection state) {
+        decoder.closeConnection(state);
+    }
+
+    @Override
+    public void expire() {
+        decoder.expire();
+    }
+
+    @Override
+    public void close() {
+        decoder.close();
+    }
+
+    public HttpDecoder getDecoder() {
+        return decoder;
+    }
+
+    private static boolean matches(ByteBuf data, int index, byte[] prefix) {
+        for (int i = 0; i < prefix.length; i++) {
+            if (data.getByte(index + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[][] bytes(String... values) {
+        byte[][] result = new byte[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = values[i].getBytes(StandardCharsets.US_ASCII);
+        }
+        return result;
+    }
+}
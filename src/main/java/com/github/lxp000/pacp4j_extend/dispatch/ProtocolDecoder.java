@@ -0,0 +1,71 @@
+package com.github.lxp000.pacp4j_extend.dispatch;
+
+import com.github.lxp000.pacp4j_extend.IPacket;
+import com.github.lxp000.pacp4j_extend.tcp.FlowKey;
+import com.github.lxp000.pacp4j_extend.tcp.TcpSegment;
+import io.netty.buffer.ByteBuf;
+
+import java.util.function.Consumer;
+
+/**
+ * 协议解码器(注册到{@link ProtocolDispatcher})<br>
+ * 分配器保存连接表, 连接分配给本协议后, 连接的状态(由{@link #open(FlowKey)}创建)保存在分配器的连接表中,
+ * 之后本连接的报文段(包括FIN/RST)和状态一起交给{@link #decode(Object, TcpSegment, boolean, Consumer)}, 解码器不需要再查找连接
+ *
+ * @param <S> 连接的状态
+ */
+public interface ProtocolDecoder<S> {
+    /**
+     * 协议名
+     *
+     * @return 名称
+     */
+    String name();
+
+    /**
+     * 首字节探测: 连接(没有按端口分配时)的第一段数据是否为本协议<br>
+     * 按注册顺序依次探测, 第一个匹配的协议得到连接
+     *
+     * @param data 第一个有数据的报文段的payload(不能修改readerIndex)
+     * @return true 是本协议
+     */
+    boolean sniff(ByteBuf data);
+
+    /**
+     * 连接分配给本协议
+     *
+     * @param clientKey 客户端 -> 服务端方向的流
+     * @return 连接的状态(可以为null)
+     */
+    S open(FlowKey clientKey);
+
+    /**
+     * 解码本连接的报文段
+     *
+     * @param state      {@link #open(FlowKey)}创建的状态
+     * @param segment    报文段(已设置抓包时间)
+     * @param fromClient true 客户端 -> 服务端
+     * @param sink       完整的请求/响应
+     */
+    void decode(S state, TcpSegment segment, boolean fromClient, Consumer<? super IPacket> sink);
+
+    /**
+     * 连接结束(两个方向都已FIN/RST/超时), 释放状态中的缓存
+     *
+     * @param state 连接的状态
+     */
+    default void close(S state) {
+    }
+
+    /**
+     * 删除超时缓存(分配器定时调用)
+     */
+    default void expire() {
+    }
+
+    /**
+     * 分配器关闭(所有连接已{@link #close(Object)}), 释放协议自己的缓存
+     */
+    default void close() {
+    }
+}
@@ -0,0 +1,283 @@
+package com.github.lxp000.pacp4j_extend.dispatch;
+
+import com.github.lxp000.pacp4j_extend.IDecoder;
+import com.github.lxp000.pacp4j_extend.IPacket;
+import com.github.lxp000.pacp4j_extend.http.HttpPacket;
+import com.github.lxp000.pacp4j_extend.tcp.FlowKey;
+import com.github.lxp000.pacp4j_extend.tcp.FrameParser;
+import com.github.lxp000.pacp4j_extend.tcp.TcpSegment;
+import com.github.lxp000.pacp4j_extend.util.TimerWheel;
+import io.netty.buffer.ByteBuf;
+import org.pcap4j.packet.Packet;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * 多协议分配器<br>
+ * 只保存一张连接表(两个方向的流都指向同一个连接), 每个包一次查找:<br>
+ * 1. 新连接按端口(任一端)分配协议, 没有配置端口时, 第一个有数据的报文段按注册顺序探测({@link ProtocolDecoder#sniff(ByteBuf)})<br>
+ * 2. 已分配的连接, 报文段和连接的状态直接交给协议解码器; 所有协议都不匹配的连接标记为未知, 之后的包直接跳过<br>
+ * 3. 两个方向都FIN, 或RST, 或超时没有新包时删除连接<br>
+ * 探测之前的控制包(SYN等)不交给解码器, 解码器需要支持从中途开始的连接
+ * <pre>
+ * ProtocolDispatcher dispatcher = new ProtocolDispatcher()
+ *         .register(new HttpProtocol(new HttpDecoder()), 80, 8080)
+ *         .register(new RedisDecoder(), 6379);
+ * dispatcher.decode(segment, packet -&gt; ...);  // HttpPacket / RedisCommand / RedisReply
+ * </pre>
+ * 没有抓包时间的报文段, 分配器设置为当前时间(事件时间模式下为上一个包的时间)后再交给解码器
+ */
+public class ProtocolDispatcher implements IDecoder<IPacket> {
+    private static final int WHEEL_SIZE = 512;
+    private final long timeout;
+    private final boolean eventTime;
+    private final List<ProtocolDecoder<Object>> decoders = new ArrayList<>();
+    private final Map<Integer, ProtocolDecoder<Object>> ports = new HashMap<>();
+    private final Map<FlowKey, Connection> connections = new HashMap<>();
+    private final TimerWheel<Connection> wheel;
+    private final TcpSegment frameSegment = new TcpSegment();
+    private final List<IPacket> batch = new ArrayList<>();  // decode(Packet)的结果
+    private long discarded;  // decode(Packet)释放的结果数量
+    private long clock;  // 事件时间模式的当前时间(ms)
+
+    public ProtocolDispatcher() {
+        this(new DispatcherConfig());
+    }
+
+    public ProtocolDispatcher(DispatcherConfig config) {
+        this.timeout = config.getTimeout();
+        this.eventTime = config.isEventTime();
+        this.wheel = new TimerWheel<>(Math.max(1, timeout / (WHEEL_SIZE / 2)), WHEEL_SIZE);
+    }
+
+    /**
+     * 注册协议(需要在解码开始前注册)
+     *
+     * @param decoder 协议解码器
+     * @param ports   服务端端口(连接任一端为此端口时直接分配, 不探测)
+     * @return this
+     */
+    @SuppressWarnings("unchecked")
+    public ProtocolDispatcher register(ProtocolDecoder<?> decoder, int... ports) {
+        ProtocolDecoder<Object> protocol = (ProtocolDecoder<Object>) decoder;
+        decoders.add(protocol);
+        for (int port : ports) {
+            if (port < 0 || port > 65535) {
+                throw new IllegalArgumentException("port out of range: " + port);
+            }
+            this.ports.put(port, protocol);
+        }
+        return this;
+    }
+
+    /**
+     * 解码一个包, 一个包中有多个结果时只返回第一个, 其他的释放并计入{@link #discardedCount()}
+     * (协议解码器已计入请求/响应数量并通知监听器)
+     *
+     * @param packet 包
+     * @return null 没有完整的请求/响应
+     * @deprecated 会丢失同一包中的其他结果, 使用{@link #decode(Packet, Consumer)}
+     */
+    @Deprecated
+    @Override
+    public IPacket decode(Packet packet) {
+        decode(packet, batch::add);
+        if (batch.isEmpty()) {
+            return null;
+        }
+        IPacket result = batch.get(0);
+        for (int i = 1; i < batch.size(); i++) {
+            if (batch.get(i) instanceof HttpPacket) {
+                ((HttpPacket) batch.get(i)).release();
+            }
+            discarded++;
+        }
+        batch.clear();
+        return result;
+    }
+
+    @Override
+    public void decode(Packet packet, Consumer<? super IPacket> sink) {
+        TcpSegment segment = TcpSegment.of(packet);
+        if (segment != null) {
+            decode(segment, sink);
+        }
+    }
+
+    /**
+     * 原始帧解码(与{@link com.github.lxp000.pacp4j_extend.http.HttpDecoder#decode(ByteBuffer, int, long, Consumer)}相同)
+     *
+     * @param frame     原始帧(position到limit)
+     * @param linkType  链路类型
+     * @param timestamp 抓包时间(纳秒, 0 未知)
+     * @param sink      完整的请求/响应
+     */
+    public void decode(ByteBuffer frame, int linkType, long timestamp, Consumer<? super IPacket> sink) {
+        if (FrameParser.parse(frame, linkType, frameSegment)) {
+            frameSegment.setTimestamp(timestamp);
+            decode(frameSegment, sink);
+        }
+    }
+
+    /**
+     * 报文段交给所属连接的协议解码器
+     *
+     * @param segment TCP报文段
+     * @param sink    完整的请求/响应
+     */
+    public void decode(TcpSegment segment, Consumer<? super IPacket> sink) {
+        long time = time(segment);
+        wheel.advance(time, this::close);
+        FlowKey key = segment.flowKey();
+        Connection connection = connections.get(key);
+        boolean reset = segment.hasFlag(TcpSegment.RST);
+        if (connection == null) {
+            if (reset) {
+                return;
+            }
+            connection = open(key, segment, time);
+        } else {
+            wheel.reschedule(connection.timeout, time + timeout);
+        }
+        if (connection.decoder == null && !connection.unknown) {
+            ByteBuf payload = segment.getPayload();
+            if (payload == null || !payload.isReadable()) {
+                if (reset) {
+                    close(connection);
+                }
+                return;  // 还不能判断协议
+            }
+            for (ProtocolDecoder<Object> decoder : decoders) {
+                if (decoder.sniff(payload)) {
+                    if (connection.clientKey == null) {
+                        connection.clientKey = key;  // 先发数据的一端为客户端
+                    }
+                    assign(connection, decoder);
+                    break;
+                }
+            }
+            connection.unknown = connection.decoder == null;
+        }
+        boolean fromClient = key.equals(connection.clientKey);
+        if (!connection.unknown) {
+            connection.decoder.decode(connection.state, segment, fromClient, sink);
+        }
+        if (reset) {
+            close(connection);
+        } else if (segment.hasFlag(TcpSegment.FIN)) {
+            connection.fins |= fromClient ? Connection.CLIENT_FIN : Connection.SERVER_FIN;
+            if (connection.fins == (Connection.CLIENT_FIN | Connection.SERVER_FIN)) {
+                close(connection);
+            }
+        }
+    }
+
+    /**
+     * 删除超时的连接, 并调用各协议的{@link ProtocolDecoder#expire()}<br>
+     * 没有新包时可以定时调用(需要与解码在同一线程)
+     */
+    @Override
+    public void expire() {
+        wheel.advance(eventTime ? clock : System.currentTimeMillis(), this::close);
+        for (ProtocolDecoder<Object> decoder : decoders) {
+            decoder.expire();
+        }
+    }
+
+    /**
+     * 关闭所有连接(释放各协议的连接状态), 并调用各协议的{@link ProtocolDecoder#close()}
+     */
+    @Override
+    public void close() {
+        for (Connection connection : new ArrayList<>(connections.values())) {
+            close(connection);
+        }
+        for (ProtocolDecoder<Object> decoder : decoders) {
+            decoder.close();
+        }
+    }
+
+    /**
+     * {@link #decode(Packet)}只返回第一个结果时释放的请求/响应数量
+     *
+     * @return 数量
+     */
+    public long discardedCount() {
+        return discarded;
+    }
+
+    /**
+     * 当前连接数量(包括未知协议的连接)
+     *
+     * @return 数量
+     */
+    public int connectionCount() {
+        return wheel.size();
+    }
+
+    /**
+     * 新连接: 按SYN判断方向, 按端口分配协议
+     */
+    private Connection open(FlowKey key, TcpSegment segment, long time) {
+        Connection connection = new Connection(key);
+        if (segment.hasFlag(TcpSegment.SYN)) {
+            connection.clientKey = segment.hasFlag(TcpSegment.ACK) ? connection.reverseKey : key;
+        }
+        ProtocolDecoder<Object> decoder = ports.get(key.getDstPort());
+        if (decoder != null) {
+            if (connection.clientKey == null) {
+                connection.clientKey = key;
+            }
+        } else if ((decoder = ports.get(key.getSrcPort())) != null && connection.clientKey == null) {
+            connection.clientKey = connection.reverseKey;
+        }
+        if (decoder != null) {
+            assign(connection, decoder);
+        }
+        connection.timeout = wheel.schedule(connection, time + timeout);
+        connections.put(key, connection);
+        connections.put(connection.reverseKey, connection);
+        return connection;
+    }
+
+    private void assign(Connection connection, ProtocolDecoder<Object> decoder) {
+        connection.decoder = decoder;
+        connection.state = decoder.open(connection.clientKey);
+    }
+
+    private void close(Connection connection) {
+        if (connections.remove(connection.key) == null) {
+            return;  // 已删除
+        }
+        connections.remove(connection.reverseKey);
+        wheel.cancel(connection.timeout);
+        if (connection.decoder != null) {
+            connection.decoder.close(connection.state);
+        }
+    }
+
+    /**
+     * 当前时间(ms), 没有抓包时间的报文段设置为当前时间
+     */
+    private long time(TcpSegment segment) {
+        long timestamp = segment.getTimestamp();
+        long time;
+        if (eventTime) {
+            if (timestamp > 0) {
+                clock = Math.max(clock, timestamp / 1_000_000);
+            }
+            time = clock;
+        } else {
+            time = System.currentTimeMillis();
+        }
+        if (timestamp <= 0) {
+            segment.setTimestamp(time * 1_000_000);
+        }
+        return time;
+    }
+}
@@ -0,0 +1,34 @@
+package com.github.lxp000.pacp4j_extend.http;
+
+import lombok.Data;
+
+/**
+ * 新连接的准入控制({@link HttpDecoderConfig#setAdmission(AdmissionConfig)})<br>
+ * 新连接(会话表中两个方向都没有流)按当前连接数量占上限的比例(负载)逐级处理:<br>
+ * 1. 负载低于{@link #headOnlyThreshold}: 正常接受<br>
+ * 2. 达到{@link #headOnlyThreshold}: 接受, 但只保存首部(body只计长度, 不缓存)<br>
+ * 3. 达到{@link #sampleThreshold}: 按比例采样(负载越高比例越低, 按连接哈希选择, 同一连接的包结果相同), 选中的只保存首部<br>
+ * 4. 达到{@link #maxSessions}, 或客户端地址(SYN的发送方, 中途抓包时端口较大的一端)的连接数量达到{@link #maxSessionsPerHost}: 拒绝<br>
+ * 拒绝的连接在会话表中只记录拒绝(不缓存数据, 不计入连接数量), 直到FIN/RST/超时, 连接中途负载下降也不会接受;
+ * 之后的包只有一次查找, 按原因计入{@link com.github.lxp000.pacp4j_extend.metrics.DropReason}的SHED_*;
+ * 上限为每个解码器(多线程解码时为每个线程)
+ */
+@Data
+public class AdmissionConfig {
+    /**
+     * 最大连接数量
+     */
+    private int maxSessions = 100_000;
+    /**
+     * 每个客户端地址的最大连接数量
+     */
+    private int maxSessionsPerHost = 1_000;
+    /**
+     * 新连接只保存首部的负载(0~1)
+     */
+    private double headOnlyThreshold = 0.6;
+    /**
+     * 新连接开始采样的负载(0~1), 之后接受的比例从1线性降到0
+     */
+    private double sampleThreshold = 0.8;
+}
@@ -0,0 +1,144 @@
+package com.github.lxp000.pacp4j_extend.http;
+
+import io.netty.buffer.ByteBuf;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * HTTP字节处理工具<br>
+ * 直接在ByteBuf的下标范围上比较/解析, 不创建中间对象
+ */
+final class HttpBytes {
+    private HttpBytes() {
+    }
+
+    /**
+     * 下标范围转为字符串
+     *
+     * @param buf   源Buf
+     * @param start 开始下标(包含)
+     * @param end   结束下标(不包含)
+     * @return UTF-8字符串
+     */
+    static String string(ByteBuf buf, int start, int end) {
+        return buf.toString(start, end - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 下标范围是否与ASCII字符串相同(忽略大小写)
+     *
+     * @param buf   源Buf
+     * @param start 开始下标(包含)
+     * @param end   结束下标(不包含)
+     * @param ascii 小写ASCII字符串
+     * @return true 相同
+     */
+    static boolean equalsIgnoreCase(ByteBuf buf, int start, int end, String ascii) {
+        if (end - start != ascii.length()) {
+            return false;
+        }
+        for (int i = 0; i < ascii.length(); i++) {
+            if (toLower(buf.getByte(start + i)) != ascii.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 下标范围中是否包含ASCII字符串(忽略大小写)
+     *
+     * @param buf   源Buf
+     * @param start 开始下标(包含)
+     * @param end   结束下标(不包含)
+     * @param ascii 小写ASCII字符串
+     * @return true 包含
+     */
+    static boolean containsIgnoreCase(ByteBuf buf, int start, int end, String ascii) {
+        for (int i = start; i + ascii.length() <= end; i++) {
+            if (equalsIgnoreCase(buf, i, i + ascii.length(), ascii)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 解析十进制数字
+     *
+     * @param buf   源Buf
+     * @param start 开始下标(包含)
+     * @param end   结束下标(不包含)
+     * @return 数字(-1 不是数字或溢出)
+     */
+    static long parseLong(ByteBuf buf, int start, int end) {
+        if (start >= end || end - start > 18) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            byte b = buf.getByte(i);
+            if (b < '0' || b > '9') {
+                return -1;
+            }
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+
+    /**
+     * 下标范围中第一个字节的位置
+     *
+     * @return -1 没有
+     */
+    static int indexOf(ByteBuf buf, int start, int end, byte value) {
+        return start >= end ? -1 : buf.indexOf(start, end, value);
+    }
+
+    /**
+     * URL解码
+     *
+     * @param url url的key或value
+     * @return 解码内容
+     */
+    static String urlDecode(String url) {
+        try {
+            return URLDecoder.decode(url, "UTF-8");
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            return url;
+        }
+    }
+
+    /**
+     * 调用map的put(k,v)方法 => 存如headers和parameters的map
+     * 若同key存在多个value, 将value改为valueList
+     *
+     * @param map   map
+     * @param key   k
+     * @param value v
+     */
+    @SuppressWarnings("unchecked")
+    static void mapPut(Map<String, Object> map, String key, String value) {
+        if (map.containsKey(key)) {
+            if (map.get(key) instanceof List) {
+                ((List<String>) map.get(key)).add(value);
+            } else {
+                List<String> values = new ArrayList<>();
+                values.add(String.valueOf(map.get(key)));
+                values.add(value);
+                map.put(key, values);
+            }
+        } else {
+            map.put(key, value);
+        }
+    }
+
+    private static int toLower(byte b) {
+        return b >= 'A' && b <= 'Z' ? b + ('a' - 'A') : b;
+    }
+}
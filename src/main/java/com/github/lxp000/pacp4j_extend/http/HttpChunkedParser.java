@@ -0,0 +1,242 @@
+package com.github.lxp000.pacp4j_extend.http;
+
+import io.netty.buffer.ByteBuf;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Transfer-Encoding: chunked 解析(状态机)<br>
+ * 长度行/数据/trailer可以在任意位置跨包, 包之间只保留解析状态(数据剩余长度等), 不缓存已收到的数据;
+ * 每个字节只处理一次, 数据部分由调用方直接切片使用<br>
+ * 支持chunk扩展(长度后的;name=value 忽略)和trailer(解析后保存在{@link #getTrailers()}), 行结束兼容单独的\n
+ * <pre>
+ * while (index &lt; end) {
+ *     index = parser.parse(buf, index, end);  // 长度行等, 停在数据开始位置
+ *     int length = parser.data(end - index);   // 本段可用的数据长度
+ *     ...
+ * }
+ * </pre>
+ */
+final class HttpChunkedParser {
+    static final int ERROR = -1;  // 格式错误
+    private static final int MAX_SIZE_DIGITS = 15;
+    private static final int MAX_TRAILER_LENGTH = 8 * 1024;
+
+    private static final int SIZE = 0;  // 长度(十六进制)
+    private static final int EXTENSION = 1;  // 长度之后的扩展(到行结束)
+    private static final int SIZE_LF = 2;  // 长度行的\r之后
+    private static final int DATA = 3;  // 数据
+    private static final int DATA_CR = 4;  // 数据之后的\r
+    private static final int DATA_LF = 5;  // 数据之后的\n
+    private static final int TRAILER_START = 6;  // trailer行开始(或结尾的空行)
+    private static final int TRAILER = 7;  // trailer行
+    private static final int END_LF = 8;  // 结尾空行的\r之后
+    private static final int DONE = 9;
+
+    private int state = SIZE;
+    private long size;  // 当前chunk的长度
+    private int digits;
+    private long remaining;  // 当前chunk未收到的数据长度
+    private byte[] line;  // 跨包的trailer行(只在有trailer时使用)
+    private int lineLength;
+    private int trailerLength;
+    private Map<String, Object> trailers;
+
+    /**
+     * 解析长度行/数据结尾/trailer, 直到遇到数据或结束
+     *
+     * @param buf   数据
+     * @param index 开始位置
+     * @param end   结束位置(不包含)
+     * @return 停止的位置(数据开始位置, 或结束后的位置, 或end), {@link #ERROR}格式错误
+     */
+    int parse(ByteBuf buf, int index, int end) {
+        while (index < end) {
+            if (state == DATA || state == DONE) {
+                return index;
+            }
+            byte b = buf.getByte(index++);
+            switch (state) {
+                case SIZE:
+                    int digit = Character.digit(b, 16);
+                    if (digit >= 0) {
+                        if (++digits > MAX_SIZE_DIGITS) {
+                            return ERROR;
+                        }
+                        size = size << 4 | digit;
+                    } else if (digits == 0) {
+                        return ERROR;
+                    } else if (b == ';' || b == ' ' || b == '\t') {
+                        state = EXTENSION;
+                    } else if (b == '\r') {
+                        state = SIZE_LF;
+                    } else if (b == '\n') {
+                        sizeEnd();
+                    } else {
+                        return ERROR;
+                    }
+                    break;
+                case EXTENSION:
+                    if (b == '\r') {
+                        state = SIZE_LF;
+                    } else if (b == '\n') {
+                        sizeEnd();
+                    }
+                    break;
+                case SIZE_LF:
+                    if (b != '\n') {
+                        return ERROR;
+                    }
+                    sizeEnd();
+                    break;
+                case DATA_CR:
+                    if (b == '\r') {
+                        state = DATA_LF;
+                    } else if (b == '\n') {
+                        state = SIZE;
+                    } else {
+                        return ERROR;
+                    }
+                    break;
+                case DATA_LF:
+                    if (b != '\n') {
+                        return ERROR;
+                    }
+                    state = SIZE;
+                    break;
+                case TRAILER_START:
+                    if (b == '\r') {
+                        state = END_LF;
+                    } else if (b == '\n') {
+                        state = DONE;
+                    } else {
+                        state = TRAILER;
+                        if (!lineAppend(b)) {
+                            return ERROR;
+                        }
+                    }
+                    break;
+                case TRAILER:
+                    if (b == '\n') {
+                        trailerEnd();
+                        state = TRAILER_START;
+                    } else if (!lineAppend(b)) {
+                        return ERROR;
+                    }
+                    break;
+                case END_LF:
+                    if (b != '\n') {
+                        return ERROR;
+                    }
+                    state = DONE;
+                    break;
+                default:
+                    return ERROR;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * 取当前chunk的数据(在{@link #parse(ByteBuf, int, int)}停在数据开始位置后调用)
+     *
+     * @param available 可用的字节数
+     * @return 属于当前chunk的字节数(调用方从停止位置开始使用)
+     */
+    int data(int available) {
+        if (state != DATA) {
+            return 0;
+        }
+        int length = (int) Math.min(remaining, available);
+        remaining -= length;
+        if (remaining == 0) {
+            state = DATA_CR;
+        }
+        return length;
+    }
+
+    /**
+     * 是否已到结尾的空行之后
+     *
+     * @return true 完整
+     */
+    boolean isDone() {
+        return state == DONE;
+    }
+
+    /**
+     * trailer首部行
+     *
+     * @return null 没有trailer
+     */
+    Map<String, Object> getTrailers() {
+        return trailers;
+    }
+
+    /**
+     * 跨包缓存的字节数(未结束的trailer行)
+     *
+     * @return 字节数
+     */
+    int bufferedBytes() {
+        return line == null ? 0 : line.length;
+    }
+
+    private void sizeEnd() {
+        if (size == 0) {
+            state = TRAILER_START;
+        } else {
+            remaining = size;
+            state = DATA;
+        }
+        size = 0;
+        digits = 0;
+    }
+
+    private boolean lineAppend(byte b) {
+        if (++trailerLength > MAX_TRAILER_LENGTH) {
+            return false;
+        }
+        if (line == null) {
+            line = new byte[64];
+        } else if (lineLength == line.length) {
+            line = Arrays.copyOf(line, lineLength * 2);
+        }
+        line[lineLength++] = b;
+        return true;
+    }
+
+    /**
+     * trailer行结束: name: value
+     */
+    private void trailerEnd() {
+        int length = lineLength;
+        if (length > 0 && line[length - 1] == '\r') {
+            length--;
+        }
+        lineLength = 0;
+        int colon = 0;
+        while (colon < length && line[colon] != ':') {
+            colon++;
+        }
+        if (colon == 0 || colon == length) {
+            return;  // 不是name: value 忽略
+        }
+        int valueStart = colon + 1;
+        while (valueStart < length && (line[valueStart] == ' ' || line[valueStart] == '\t')) {
+            valueStart++;
+        }
+        int valueEnd = length;
+        while (valueEnd > valueStart && (line[valueEnd - 1] == ' ' || line[valueEnd - 1] == '\t')) {
+            valueEnd--;
+        }
+        if (trailers == null) {
+            trailers = new HashMap<>();
+        }
+        HttpBytes.mapPut(trailers, new String(line, 0, colon, StandardCharsets.UTF_8),
+                new String(line, valueStart, valueEnd - valueStart, StandardCharsets.UTF_8));
+    }
+}
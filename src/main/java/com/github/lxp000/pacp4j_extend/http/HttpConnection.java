@@ -0,0 +1,60 @@
+package com.github.lxp000.pacp4j_extend.http;
+
+import com.github.lxp000.pacp4j_extend.tcp.FlowKey;
+
+/**
+ * 保存在{@link com.github.lxp000.pacp4j_extend.dispatch.ProtocolDispatcher}连接表中的HTTP连接状态<br>
+ * 由{@link HttpDecoder#openConnection(FlowKey)}创建, 两个方向的流直接保存在连接中:
+ * 解码时不再查找会话表, 也不在会话表的时间轮中计时(超时由分配器的连接表管理)
+ */
+public final class HttpConnection {
+    final FlowKey clientKey;  // 客户端 -> 服务端
+    final FlowKey serverKey;  // 服务端 -> 客户端
+    HttpFlow client;  // null 本方向没有流
+    HttpFlow server;
+
+    HttpConnection(FlowKey clientKey) {
+        this.clientKey = clientKey;
+        this.serverKey = clientKey.reverse();
+    }
+
+    /**
+     * 本方向的流(解码时的key都来自本连接, 先按引用比较)
+     *
+     * @param key 流标识
+     * @return null 没有流
+     */
+    HttpFlow get(FlowKey key) {
+        return isClient(key) ? client : server;
+    }
+
+    /**
+     * 反方向的流
+     *
+     * @param key 流标识
+     * @return null 没有流
+     */
+    HttpFlow reverse(FlowKey key) {
+        return isClient(key) ? server : client;
+    }
+
+    void set(HttpFlow flow) {
+        if (isClient(flow.getKey())) {
+            client = flow;
+        } else {
+            server = flow;
+        }
+    }
+
+    void remove(HttpFlow flow) {
+        if (client == flow) {
+            client = null;
+        } else if (server == flow) {
+            server = null;
+        }
+    }
+
+    private boolean isClient(FlowKey key) {
+        return key == clientKey || key != serverKey && key.equals(clientKey);
+    }
+}
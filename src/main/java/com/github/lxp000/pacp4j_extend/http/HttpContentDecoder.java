@@ -0,0 +1,163 @@
+package com.github.lxp000.pacp4j_extend.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Content-Encoding: gzip/deflate 解压<br>
+ * 每个线程复用{@link Inflater}和输入/输出缓冲, 按8KB分段输入/输出(不一次性复制整个body);
+ * 解压后超出上限时停止(防止压缩炸弹)<br>
+ * deflate兼容zlib格式和裸deflate, gzip支持多个成员拼接(不校验CRC)
+ */
+final class HttpContentDecoder {
+    static final int IDENTITY = 0;
+    static final int GZIP = 1;
+    static final int DEFLATE = 2;
+    private static final int BUFFER_SIZE = 8 * 1024;
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    private static final ThreadLocal<Inflater> ZLIB = ThreadLocal.withInitial(Inflater::new);
+    private static final ThreadLocal<Inflater> RAW = ThreadLocal.withInitial(() -> new Inflater(true));
+    private static final ThreadLocal<byte[]> BUFFERS = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE * 2]);  // 输入 + 输出
+
+    private HttpContentDecoder() {
+    }
+
+    /**
+     * 解压body
+     *
+     * @param packet 请求/响应(出错时设置{@link HttpPacket#getBodyError()})
+     * @param src    压缩的body
+     * @return 解压后的UTF-8字符串(出错时为已解压的部分)
+     */
+    static String decode(HttpPacket packet, ByteBuf src) {
+        ByteBuf out = ByteBufAllocator.DEFAULT.buffer();
+        try {
+            int index = src.readerIndex();
+            int end = src.writerIndex();
+            boolean gzip = packet.contentEncoding == GZIP;
+            while (index < end) {
+                Inflater inflater;
+                if (gzip) {
+                    index = gzipHeader(src, index, end);
+                    if (index < 0) {
+                        packet.setBodyError("invalid gzip header");
+                        break;
+                    }
+                    inflater = RAW.get();
+                } else {
+                    inflater = isZlib(src, index, end) ? ZLIB.get() : RAW.get();
+                }
+                inflater.reset();
+                index = inflate(packet, inflater, src, index, end, out);
+                if (index < 0 || !gzip) {
+                    break;
+                }
+                index += 8;  // CRC32 + ISIZE
+                if (end - index < 2 || src.getUnsignedByte(index) != 0x1F || src.getUnsignedByte(index + 1) != 0x8B) {
+                    break;  // 没有下一个成员
+                }
+            }
+            return out.toString(StandardCharsets.UTF_8);
+        } finally {
+            out.release();
+        }
+    }
+
+    /**
+     * 解压一段deflate数据
+     *
+     * @return 数据结束后的位置, -1 出错
+     */
+    private static int inflate(HttpPacket packet, Inflater inflater, ByteBuf src, int index, int end, ByteBuf out) {
+        byte[] buffer = BUFFERS.get();
+        long limit = packet.decompressLimit;
+        int fed = index;  // 已输入的位置
+        try {
+            while (!inflater.finished()) {
+                if (inflater.needsInput()) {
+                    if (fed == end) {
+                        packet.setBodyError("truncated " + (packet.contentEncoding == GZIP ? "gzip" : "deflate") + " data");
+                        return -1;  // 数据不完整(超出body保存上限)
+                    }
+                    int length = Math.min(BUFFER_SIZE, end - fed);
+                    src.getBytes(fed, buffer, 0, length);
+                    inflater.setInput(buffer, 0, length);
+                    fed += length;
+                }
+                if (inflater.needsDictionary()) {
+                    packet.setBodyError("deflate dictionary not supported");
+                    return -1;
+                }
+                int length = inflater.inflate(buffer, BUFFER_SIZE, BUFFER_SIZE);
+                if (out.readableBytes() + (long) length > limit) {
+                    out.writeBytes(buffer, BUFFER_SIZE, (int) (limit - out.readableBytes()));
+                    packet.setBodyError("decompressed body exceeds " + limit + " bytes");
+                    return -1;
+                }
+                out.writeBytes(buffer, BUFFER_SIZE, length);
+            }
+        } catch (DataFormatException e) {
+            packet.setBodyError("invalid " + (packet.contentEncoding == GZIP ? "gzip" : "deflate") + " data: " + e.getMessage());
+            return -1;
+        }
+        return fed - inflater.getRemaining();
+    }
+
+    /**
+     * 跳过gzip成员头
+     *
+     * @return deflate数据开始位置, -1 不是gzip
+     */
+    private static int gzipHeader(ByteBuf src, int index, int end) {
+        if (end - index < 10 || src.getUnsignedByte(index) != 0x1F || src.getUnsignedByte(index + 1) != 0x8B
+                || src.getUnsignedByte(index + 2) != 8) {
+            return -1;
+        }
+        int flags = src.getUnsignedByte(index + 3);
+        index += 10;
+        if ((flags & FEXTRA) != 0) {
+            if (end - index < 2) {
+                return -1;
+            }
+            index += 2 + src.getUnsignedShortLE(index);
+        }
+        if ((flags & FNAME) != 0) {
+            index = skipZero(src, index, end);
+        }
+        if ((flags & FCOMMENT) != 0) {
+            index = skipZero(src, index, end);
+        }
+        if ((flags & FHCRC) != 0) {
+            index += 2;
+        }
+        return index > end ? -1 : index;
+    }
+
+    private static int skipZero(ByteBuf src, int index, int end) {
+        if (index >= end) {
+            return end + 1;
+        }
+        int zero = src.indexOf(index, end, (byte) 0);
+        return zero == -1 ? end + 1 : zero + 1;
+    }
+
+    /**
+     * zlib头: CM=8 且 (CMF*256 + FLG) % 31 == 0
+     */
+    private static boolean isZlib(ByteBuf src, int index, int end) {
+        if (end - index < 2) {
+            return false;
+        }
+        int cmf = src.getUnsignedByte(index);
+        int flg = src.getUnsignedByte(index + 1);
+        return (cmf & 0x0F) == 8 && (cmf << 8 | flg) % 31 == 0;
+    }
+}
@@ -1,172 +1,512 @@
 package com.github.lxp000.pacp4j_extend.http;
 
 import com.github.lxp000.pacp4j_extend.IDecoder;
+import com.github.lxp000.pacp4j_extend.metrics.DecoderMetrics;
+import com.github.lxp000.pacp4j_extend.metrics.DropReason;
+import com.github.lxp000.pacp4j_extend.tcp.FlowKey;
+import com.github.lxp000.pacp4j_extend.tcp.FrameParser;
+import com.github.lxp000.pacp4j_extend.tcp.TcpReassembler;
+import com.github.lxp000.pacp4j_extend.tcp.TcpSegment;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
-import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.Unpooled;
-import io.netty.util.ReferenceCountUtil;
-import org.pcap4j.packet.IpV4Packet;
 import org.pcap4j.packet.Packet;
-import org.pcap4j.packet.TcpPacket;
 
-import java.io.UnsupportedEncodingException;
-import java.net.URLDecoder;
-import java.nio.charset.StandardCharsets;
-import java.util.*;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * HTTP解码器
  */
 public class HttpDecoder implements IDecoder<HttpPacket> {
-    private static final long timeout = 10_0000;  // ms
-    private final Deque<HttpMessage> messages = new LinkedList<>();
-    private static final ByteBuf HTTP = Unpooled.wrappedBuffer("HTTP/1.1".getBytes(StandardCharsets.UTF_8));
-    private static final ByteBuf line1 = Unpooled.wrappedBuffer("\r\n".getBytes(StandardCharsets.UTF_8));
-    private static final ByteBuf line2 = Unpooled.wrappedBuffer("\r\n\r\n".getBytes(StandardCharsets.UTF_8));
+    private final HttpSessionTable sessions;
+    private final boolean lazy;
+    private final long maxBodyCapture;
+    private final long decompressLimit;  // -1 不解压
+    private final DecoderMetrics metrics;  // null 不统计
+    private final HttpFilter filter;  // null 不过滤
+    private final boolean eventTime;
+    private long clock;  // 事件时间模式的当前时间(ms): 已收到的最大抓包时间
+    private long bodyCapture;  // 当前包所在连接的body保存上限(准入降级的连接为0)
+    private long reportedPending;  // 已计入统计的缓存数量
+    private long reportedBuffered;
+    private long reportedFlows;
+    private final List<HttpListener> listeners = new ArrayList<>();
+    private final List<HttpPacket> batch = new ArrayList<>();  // decode(TcpSegment)的结果
+    private final Consumer<HttpPacket> collector = batch::add;
+    private final TcpSegment frameSegment = new TcpSegment();  // 原始帧解析结果(复用)
+    private HttpHeadParser headParser = new HttpHeadParser(ByteBufAllocator.DEFAULT);  // 单包首部共用, 跨包时交给流
+    private boolean closed;  // 已关闭 不能继续解码
+
+    public HttpDecoder() {
+        this(new HttpDecoderConfig());
+    }
+
+    public HttpDecoder(HttpDecoderConfig config) {
+        this.sessions = new HttpSessionTable(config);
+        this.lazy = config.isLazy();
+        this.maxBodyCapture = config.getMaxBodyCapture();
+        this.decompressLimit = config.isDecompress() ? config.getMaxDecompressedBytes() : -1;
+        this.metrics = config.getMetrics();
+        this.filter = config.getFilter();
+        this.eventTime = config.isEventTime();
+    }
+
+    /**
+     * 注册流式监听(需要在解码开始前注册)
+     *
+     * @param listener 监听
+     */
+    public void addListener(HttpListener listener) {
+        listeners.add(listener);
+    }
 
     /**
      * TCP包 解码HTTP<br>
-     * 1. 首先通过{@link #match(TcpPacket)}判断当前包是新包还是后续包
-     * 2. 若为后续包, 通过{@link #packetAppend(HttpPacket, ByteBuf)}拼接, 直到为完整包时发送
-     * 3. 若为新包, 解析HTTP状态行和头部行
+     * 1. 首先通过{@link TcpReassembler}把本包数据按seqNum排入流中
+     * 2. 若流中有未完整的请求/响应, 通过{@link #packetAppend(HttpPacket, ByteBuf)}拼接, 直到为完整包时发送
+     * 3. 否则为新包, 解析HTTP状态行和头部行<br>
+     * 一个包中有多个完整的请求/响应(keep-alive/pipelining)时只返回第一个, 其他的释放并计入{@link DropReason#SINGLE_RESULT}
+     * (已计入请求/响应数量并通知监听器)
      *
      * @param packet TCP包
      * @return {@link HttpNull} 解码错误(或非完整包) 可以不做处理<br>
      * {@link HttpRequest} 完整的请求<br>
      * {@link HttpResponse} 完整的响应
+     * @deprecated 会丢失同一包中的其他结果, 使用{@link #decode(Packet, Consumer)}
      */
+    @Deprecated
     public HttpPacket decode(Packet packet) {
-        IpV4Packet ipV4Packet = packet.get(IpV4Packet.class);
-        TcpPacket tcpPacket = packet.get(TcpPacket.class);
-        if (tcpPacket != null && tcpPacket.getPayload() != null && tcpPacket.getPayload().getRawData() != null && tcpPacket.getPayload().getRawData().length > 0) {
-            HttpPacket httpPacket = match(tcpPacket);
-            if (httpPacket == null) {  // 未匹配成功, 按照新包解析
-                ByteBuf rawData = Unpooled.wrappedBuffer(tcpPacket.getPayload().getRawData());
-                if (rawData.readableBytes() < 3) {
-                    return new HttpNull();
+        TcpSegment segment = TcpSegment.of(packet);
+        if (segment == null) {
+            drop(DropReason.NOT_TCP);
+            return new HttpNull();
+        }
+        return decode(segment);
+    }
+
+    /**
+     * TCP包 解码HTTP, 本包中所有完整的请求/响应依次交给sink
+     *
+     * @param packet TCP包
+     * @param sink   完整的请求/响应
+     */
+    @Override
+    public void decode(Packet packet, Consumer<? super HttpPacket> sink) {
+        TcpSegment segment = TcpSegment.of(packet);
+        if (segment != null) {
+            decode(segment, sink);
+        } else {
+            drop(DropReason.NOT_TCP);
+        }
+    }
+
+    /**
+     * 带抓包时间的TCP包 解码HTTP, 本包中所有完整的请求/响应依次交给sink<br>
+     * 用于从{@code PcapHandle}读取时传入记录的时间, 事件时间模式下超时按此时间计算
+     *
+     * @param packet    TCP包
+     * @param timestamp 抓包时间(纳秒), 例如{@link TcpSegment#toNanos(java.sql.Timestamp)}({@code handle.getTimestamp()})
+     * @param sink      完整的请求/响应
+     */
+    public void decode(Packet packet, long timestamp, Consumer<? super HttpPacket> sink) {
+        TcpSegment segment = TcpSegment.of(packet);
+        if (segment != null) {
+            segment.setTimestamp(timestamp);
+            decode(segment, sink);
+        } else {
+            drop(DropReason.NOT_TCP);
+            advance(timestamp);
+        }
+    }
+
+    /**
+     * 原始帧 解码HTTP, 本帧中所有完整的请求/响应依次交给sink<br>
+     * 由{@link FrameParser}按偏移量定位链路层/IP/TCP头部, 不创建pcap4j的包对象, payload为帧的切片(不复制);
+     * 帧的内容在解码后不能修改(未完整的请求/响应保留切片)
+     *
+     * @param frame     原始帧(position到limit)
+     * @param linkType  链路类型(例如{@code handle.getDlt().value()})
+     * @param timestamp 抓包时间(纳秒, 0 未知)
+     * @param sink      完整的请求/响应
+     */
+    public void decode(ByteBuffer frame, int linkType, long timestamp, Consumer<? super HttpPacket> sink) {
+        if (FrameParser.parse(frame, linkType, frameSegment)) {
+            frameSegment.setTimestamp(timestamp);
+            decode(frameSegment, sink);
+        } else {
+            drop(DropReason.NOT_TCP);
+            advance(timestamp);  // 事件时间模式下不是TCP的帧也推进时间
+        }
+    }
+
+    /**
+     * 原始帧 解码HTTP, 与{@link #decode(ByteBuffer, int, long, Consumer)}相同
+     *
+     * @param frame     原始帧(例如{@code RawPacketListener}收到的数组)
+     * @param linkType  链路类型
+     * @param timestamp 抓包时间(纳秒, 0 未知)
+     * @param sink      完整的请求/响应
+     */
+    public void decode(byte[] frame, int linkType, long timestamp, Consumer<? super HttpPacket> sink) {
+        decode(ByteBuffer.wrap(frame), linkType, timestamp, sink);
+    }
+
+    /**
+     * TCP报文段 解码HTTP<br>
+     * 与{@link #decode(Packet)}相同, 报文段可以由{@link com.github.lxp000.pacp4j_extend.tcp.FrameParser}直接从原始帧解析
+     *
+     * @param segment TCP报文段(可以复用, 解码器只保留payload)
+     * @return {@link HttpNull} 解码错误(或非完整包) 可以不做处理<br>
+     * {@link HttpRequest} 完整的请求<br>
+     * {@link HttpResponse} 完整的响应
+     * @deprecated 会丢失同一报文段中的其他结果, 使用{@link #decode(TcpSegment, Consumer)}
+     */
+    @Deprecated
+    public HttpPacket decode(TcpSegment segment) {
+        decode(segment, collector);
+        if (batch.isEmpty()) {
+            return new HttpNull();
+        }
+        HttpPacket result = batch.get(0);
+        for (int i = 1; i < batch.size(); i++) {
+            batch.get(i).release();  // 只返回第一个
+            drop(DropReason.SINGLE_RESULT);
+        }
+        batch.clear();
+        return result;
+    }
+
+    /**
+     * TCP报文段 解码HTTP, 本报文段中所有完整的请求/响应依次交给sink<br>
+     * 数据先经过流的{@link TcpReassembler}按seqNum排序(重传丢弃 乱序缓存), 再按连续的字节流解析HTTP;
+     * SYN开始新的流, FIN(之前的数据都已收到)/RST立即删除流的缓存
+     *
+     * @param segment TCP报文段(可以复用, 解码器只保留payload)
+     * @param sink    完整的请求/响应
+     */
+    public void decode(TcpSegment segment, Consumer<? super HttpPacket> sink) {
+        if (closed) {
+            throw new IllegalStateException("decoder closed");
+        }
+        decode(segment, segment.flowKey(), sink);
+    }
+
+    /**
+     * 连接分配给HTTP({@link com.github.lxp000.pacp4j_extend.dispatch.ProtocolDispatcher}), 创建保存两个方向的流的连接状态
+     *
+     * @param clientKey 客户端 -> 服务端方向的流
+     * @return 连接状态(由分配器保存)
+     */
+    public HttpConnection openConnection(FlowKey clientKey) {
+        return new HttpConnection(clientKey);
+    }
+
+    /**
+     * 解码分配器连接中的报文段, 与{@link #decode(TcpSegment, Consumer)}相同,
+     * 但流保存在连接中: 不计算流标识, 不查找会话表, 超时由分配器管理
+     *
+     * @param connection {@link #openConnection(FlowKey)}创建的连接
+     * @param segment    TCP报文段
+     * @param fromClient true 客户端 -> 服务端
+     * @param sink       完整的请求/响应
+     */
+    public void decode(HttpConnection connection, TcpSegment segment, boolean fromClient, Consumer<? super HttpPacket> sink) {
+        if (closed) {
+            throw new IllegalStateException("decoder closed");
+        }
+        sessions.use(connection);
+        try {
+            decode(segment, fromClient ? connection.clientKey : connection.serverKey, sink);
+        } finally {
+            sessions.use(null);
+        }
+    }
+
+    /**
+     * 分配器的连接结束, 删除连接中两个方向的流并释放缓存(未完整的请求/响应不再发送)
+     *
+     * @param connection {@link #openConnection(FlowKey)}创建的连接
+     */
+    public void closeConnection(HttpConnection connection) {
+        sessions.close(connection);
+        if (metrics != null) {
+            reportGauges();
+        }
+    }
+
+    private void decode(TcpSegment segment, FlowKey flowKey, Consumer<? super HttpPacket> sink) {
+        if (metrics == null) {
+            decodeSegment(segment, flowKey, sink);
+            return;
+        }
+        long start = System.nanoTime();
+        decodeSegment(segment, flowKey, sink);
+        metrics.packet(System.nanoTime() - start);
+        reportGauges();
+    }
+
+    private void decodeSegment(TcpSegment segment, FlowKey flowKey, Consumer<? super HttpPacket> sink) {
+        long timestamp = segment.getTimestamp();
+        long time;
+        if (eventTime) {
+            if (timestamp > 0) {
+                clock = Math.max(clock, timestamp / 1_000_000);  // 乱序的时间不回退
+            }
+            time = clock;
+        } else {
+            time = System.currentTimeMillis();
+        }
+        if (timestamp <= 0) {
+            timestamp = time * 1_000_000;  // 没有抓包时间
+        }
+        sessions.expire(time);  // 超时缓存删除
+        ByteBuf payload = segment.getPayload() == null ? Unpooled.EMPTY_BUFFER : segment.getPayload();
+        if (!payload.isReadable() && metrics != null) {
+            metrics.emptySegment();  // 控制包 不是丢弃
+        }
+        if (segment.hasFlag(TcpSegment.RST)) {
+            sessions.reset(flowKey);  // 连接中断 两个方向都删除
+            return;
+        }
+        HttpFlow flow = sessions.get(flowKey);
+        if (flow == null && filter != null && !filter.matchesFlow(flowKey)) {
+            flow = sessions.ignore(flowKey, time);  // 连接不符合过滤条件
+        }
+        int admission = HttpSessionTable.ADMIT;
+        if (flow == null) {
+            admission = sessions.admit(flowKey, segment);
+            if (admission >= HttpSessionTable.REFUSE_CAPACITY) {
+                flow = sessions.refuse(flowKey, time, admission);  // 记住拒绝 连接中途不再接受
+            }
+        }
+        if (flow != null && flow.getRefusal() != 0) {
+            if (payload.isReadable()) {
+                int refusal = flow.getRefusal();
+                drop(refusal == HttpSessionTable.REFUSE_CAPACITY ? DropReason.SHED_CAPACITY
+                    : refusal == HttpSessionTable.REFUSE_HOST ? DropReason.SHED_HOST : DropReason.SHED_SAMPLED);
+            }
+            if (segment.hasFlag(TcpSegment.FIN)) {
+                sessions.close(flow);
+            }
+            return;
+        }
+        bodyCapture = (flow != null ? flow.isHeadOnly() : admission == HttpSessionTable.HEAD_ONLY) ? 0 : maxBodyCapture;
+        if (flow != null && flow.isIgnored()) {
+            if (payload.isReadable()) {
+                drop(DropReason.FILTERED);
+            }
+            if (segment.hasFlag(TcpSegment.FIN)) {
+                sessions.close(flow);
+            }
+            return;
+        }
+        if (segment.hasFlag(TcpSegment.SYN)) {
+            if (flow != null) {
+                admission = flow.isHeadOnly() ? HttpSessionTable.HEAD_ONLY : HttpSessionTable.ADMIT;
+                sessions.close(flow);  // 端口复用的新连接
+            }
+            HttpFlow opened = sessions.open(flowKey, time);
+            opened.getReassembler().start(segment.getSeqNum() + 1);
+            sessions.admitted(opened, admission, segment);
+            return;
+        }
+        if (flow == null) {  // 没有流(连接中途开始抓包): 本包作为流的开始
+            if (payload.isReadable()) {
+                stream(flowKey, segment, payload.slice(), segment.getSeqNum(), time, timestamp, sink);
+                flow = sessions.get(flowKey);
+                if (flow != null) {
+                    sessions.admitted(flow, admission, segment);
+                    if (!flow.getReassembler().isStarted()) {
+                        flow.getReassembler().start(segment.getSeqNum() + payload.readableBytes());
+                    }
                 }
-                int bodyIndex = ByteBufUtil.indexOf(line2, rawData);  // body前面\r\n\r\n的位置
-                if (bodyIndex == -1) {
-                    return new HttpNull();
+            }
+        } else {
+            sessions.open(flowKey, time);  // 重新计时
+            TcpReassembler reassembler = flow.getReassembler();
+            int offset = reassembler.offer(segment.getSeqNum(), payload);
+            if (offset == TcpReassembler.NONE && payload.isReadable()) {
+                drop(DropReason.RETRANSMISSION);
+            } else if (offset == TcpReassembler.BUFFERED) {
+                drop(DropReason.OUT_OF_ORDER);
+            } else if (offset >= 0 && offset < payload.readableBytes()) {
+                stream(flowKey, segment, payload.slice(payload.readerIndex() + offset, payload.readableBytes() - offset),
+                        (segment.getSeqNum() + offset) & 0xFFFFFFFFL, time, timestamp, sink);
+            }
+            if (reassembler.isOverflow()) {  // 缺口的数据已丢失 未完整的请求/响应无法恢复
+                if (flow.getPending() != null || flow.getParser() != null) {
+                    drop(DropReason.GAP);
                 }
-                int headersIndex = ByteBufUtil.indexOf(line1, rawData);  // HTTP头部行前面\r\n的位置
-                ByteBuf statusLine = rawData.slice(0, headersIndex);  // HTTP状态行
-                readStatusLine(statusLine);
-                List<ByteBuf> httpLines = split(rawData.slice(0, bodyIndex),  // body前的内容  现在rawData为 "\r\nBODY"
-                        line1, 2);  // [0]为HTTP状态行和首部行 [1]为HTTP实体
-                httpPacket = readStatusLine(httpLines.get(0));  // 解析HTTP状态行
-                if (httpPacket instanceof HttpNull) {
-                    return new HttpNull();  // 此处已经完成拼包匹配 若还是未解析出HTTP协议 说明这个包是错的
+                sessions.discardPartial(flow);
+                reassembler.skipGap();
+            }
+            ByteBuf data;
+            while ((data = reassembler.poll()) != null) {
+                try {
+                    stream(flowKey, segment, data, (reassembler.nextSeq() - data.readableBytes()) & 0xFFFFFFFFL, time, timestamp, sink);
+                } finally {
+                    data.release();
                 }
-                httpPacket.setPacketTime(new Date());
-                httpPacket.setAckNum(tcpPacket.getHeader().getAcknowledgmentNumberAsLong());
-                if (httpLines.size() == 2) {
-                    List<ByteBuf> headerLines = split(httpLines.get(1), line1);  // HTTP首部行
-                    httpPacket.setHeaders(readHeaderLines(headerLines));  // 解析HTTP首部行
+            }
+            sessions.updateBuffered(flow);
+        }
+        if (flow != null && segment.hasFlag(TcpSegment.FIN)) {
+            flow.getReassembler().finish(segment.getSeqNum() + payload.readableBytes());
+        }
+        if (flow != null && flow.getReassembler().isFinished()) {
+            HttpPacket pending = flow.getPendingPacket();
+            if (pending != null && pending.closeDelimited) {  // body到连接结束的响应已完整
+                if (pending.bodyBuf == null && maxBodyCapture != 0) {
+                    pending.bodyBuf = Unpooled.EMPTY_BUFFER;
                 }
+                pending.setComplete(true);
+                sessions.remove(flow.getPending());
+                emit(pending, sink);
+            }
+            sessions.finish(flow);  // 本方向不会再有数据
+        }
+    }
 
-                packetAppend(httpPacket, rawData.slice(bodyIndex + line2.readableBytes(),
-                        rawData.readableBytes() - bodyIndex - line2.readableBytes()));
-                // 其他TCP参数
-                if (httpPacket instanceof HttpRequest) {
-                    HttpRequest httpRequest = (HttpRequest) httpPacket;
-                    httpRequest.setPacketTime(new Date());
-                    if (ipV4Packet != null) {
-                        httpRequest.setSrcHost(ipV4Packet.getHeader().getSrcAddr().getHostAddress());
-                        httpRequest.setDstHost(ipV4Packet.getHeader().getDstAddr().getHostAddress());
-                    }
-                    httpRequest.setPort(tcpPacket.getHeader().getDstPort().valueAsInt());
-                } else if (httpPacket instanceof HttpResponse) {
-                    HttpResponse httpResponse = (HttpResponse) httpPacket;
-                    httpResponse.setSeqNum(tcpPacket.getHeader().getSequenceNumberAsLong());
+    /**
+     * 解码流中连续的数据, 直到数据用完(一段数据中可以有多个请求/响应)<br>
+     * 1. 流有未完整的请求/响应时, 通过{@link #append(HttpFlow, ByteBuf)}拼接, 直到为完整包时发送
+     * 2. 否则为新的请求/响应, 解析HTTP状态行和头部行
+     *
+     * @param flowKey 本包的流
+     * @param segment TCP报文段
+     * @param data    连续的数据
+     * @param seqNum  data的seqNum
+     * @param time      当前时间(ms, 用于超时)
+     * @param timestamp 抓包时间(纳秒)
+     * @param sink      完整的请求/响应
+     */
+    private void stream(FlowKey flowKey, TcpSegment segment, ByteBuf data, long seqNum, long time, long timestamp,
+                        Consumer<? super HttpPacket> sink) {
+        int start = data.readerIndex();
+        while (data.isReadable()) {
+            HttpFlow flow = sessions.get(flowKey);
+            HttpPacket httpPacket;
+            if (flow != null && flow.getPending() != null) {
+                httpPacket = append(flow, data);
+                if (httpPacket == null) {
+                    return;  // 不完整 数据已用完
                 }
-                httpPacket = match(httpPacket);
-                if (httpPacket.isComplete()) {  // 初始完整的请求/响应 可以发送
-                    return httpPacket;
+                emit(httpPacket, sink);  // 是请求/响应的后续(且已拼接完整) 可以发送
+                continue;
+            }
+            long headSeqNum = (seqNum + data.readerIndex() - start) & 0xFFFFFFFFL;
+            httpPacket = readHead(flowKey, segment, data, headSeqNum, time);  // 解析HTTP状态行和首部行 data移到body开始位置
+            if (httpPacket == null) {
+                return;  // 首部不完整(已缓存) 或不是HTTP
+            }
+            httpPacket.setTimestamp(timestamp);
+            // 其他TCP参数
+            if (httpPacket instanceof HttpRequest) {
+                HttpRequest httpRequest = (HttpRequest) httpPacket;
+                httpRequest.setSrcHost(segment.getSrcHost());
+                httpRequest.setDstHost(segment.getDstHost());
+                httpRequest.setPort(segment.getDstPort());
+                if (filter != null && !filter.matchesRequest(httpRequest)) {
+                    ignore(httpRequest);
                 }
-            } else if (!(httpPacket instanceof HttpNull)) {  // 是请求/响应的后续(且已拼接完整) 可以发送
-                return httpPacket;
+            }
+            httpPacket = match(flowKey, httpPacket, data, time);
+            if (httpPacket.isComplete()) {
+                emit(httpPacket, sink);  // 初始完整的请求/响应 可以发送
             }
         }
-        return new HttpNull();
     }
 
     /**
-     * tcp包匹配<br>
-     * 解析HTTP包前调用, 匹配请求/响应的后续(响应匹配请求 需要解析完再匹配)<br>
-     * 主要处理后续包的拼接(第二个及之后的包)
+     * 拼接后续数据<br>
+     * 主要处理后续包的拼接(第二个及之后的包), 流中未完整的请求/响应直接接收连续的数据
      *
-     * @param tcpPacket tcp包
-     * @return null 未匹配成功 等待后续解析<br>
-     * {@link HttpNull} 匹配失败或者不是完整包(已拼接本包数据) 无需处理<br>
-     * {@link HttpRequest} 匹配为请求(并是完整包) 可以发送<br>
-     * {@link HttpResponse} 匹配为响应(并是完整包) 可以发送<br>
+     * @param flow 本方向的流
+     * @param data 连续的数据(readerIndex移到本请求/响应结束的位置)
+     * @return null 不是完整包(已拼接全部数据) 无需处理<br>
+     * {@link HttpRequest} 请求(并是完整包) 可以发送<br>
+     * {@link HttpResponse} 响应(并是完整包) 可以发送<br>
      */
-    private HttpPacket match(TcpPacket tcpPacket) {
-        long time = System.currentTimeMillis();
-        Iterator<HttpMessage> iterator = messages.iterator();
-        while (iterator.hasNext()) {
-            HttpMessage message = iterator.next();
-            if (time - message.getTime() < timeout) {
-                if (message.getHttpRequest() != null && Objects.equals(tcpPacket.getHeader().getAcknowledgmentNumberAsLong(), message.getHttpRequest().getAckNum())) {  // 是请求后续
-                    packetAppend(message.getHttpRequest(), Unpooled.wrappedBuffer(tcpPacket.getPayload().getRawData()));  // 拼接请求 并判断完整
-                    if (message.getHttpRequest().isComplete()) {
-                        return message.getHttpRequest();  // 请求完整 发送
-                    } else {
-                        return new HttpNull();
-                    }
-                } else if (message.getHttpResponse() != null && Objects.equals(tcpPacket.getHeader().getAcknowledgmentNumberAsLong(), message.getHttpResponse().getAckNum())) {  // 是响应后续
-                    packetAppend(message.getHttpResponse(), Unpooled.wrappedBuffer(tcpPacket.getPayload().getRawData()));  // 拼接响应 判断完整
-                    if (message.getHttpResponse().isComplete()) {
-                        iterator.remove();
-                        return message.getHttpResponse();  // 响应完整 发送
-                    } else {
-                        return new HttpNull();
-                    }
-                }
-            } else {
-                iterator.remove();  // 超时缓存删除
-            }
+    private HttpPacket append(HttpFlow flow, ByteBuf data) {
+        HttpMessage message = flow.getPending();
+        HttpPacket httpPacket = flow.getPendingPacket();
+        data.skipBytes(packetAppend(httpPacket, data));  // 拼接请求/响应 并判断完整
+        if (!httpPacket.isComplete()) {
+            sessions.updateBuffered(flow);
+            drop(DropReason.PARTIAL_BODY);
+            return null;
+        }
+        if (httpPacket instanceof HttpResponse) {
+            sessions.remove(message);  // 响应完整 清除缓存
+        } else {
+            sessions.complete(flow);  // 请求完整 等待响应
         }
-        return null;
+        return httpPacket;  // 请求/响应完整 发送
     }
 
     /**
-     * 匹配请求/响应<br>
-     * 调用{@link #match(TcpPacket)}之后, 若判断为第一个包, 进行解析, 解析后调用此方法<br>
+     * 匹配请求/响应, 并拼接首部之后的body<br>
+     * 流中没有未完整的请求/响应时, 解析新的请求/响应, 解析后调用此方法<br>
      * 请求:<br>
-     * 无论是否完整, 添加进缓存, 等待后续包在{@link #match(TcpPacket)}中处理<br>
+     * 无论是否完整, 添加进缓存, 等待后续数据在{@link #append(HttpFlow, ByteBuf)}中处理<br>
      * 响应:<br>
+     * 没有请求: 跳过body后丢弃<br>
      * 完整包: 清除请求的缓存并发送<br>
-     * 不完整: 存入缓存等待后续包在{@link #match(TcpPacket)}中处理
+     * 不完整: 存入缓存等待后续数据在{@link #append(HttpFlow, ByteBuf)}中处理
      *
+     * @param flowKey    本包的流
      * @param httpPacket 第一次请求/响应
+     * @param body       首部之后的数据(readerIndex移到本请求/响应结束的位置)
+     * @param time       当前时间
      * @return 请求/响应
      */
-    private HttpPacket match(HttpPacket httpPacket) {
-        long time = System.currentTimeMillis();
+    private HttpPacket match(FlowKey flowKey, HttpPacket httpPacket, ByteBuf body, long time) {
         if (httpPacket instanceof HttpRequest) {  // 是起始请求
-            httpPacket.setTimeId(httpPacket.getPacketTime().getTime());
-            messages.addLast(new HttpMessage(time, (HttpRequest) httpPacket, null));  // 不管请求是否完整 都要缓存
+            httpPacket.setTimeId(Math.floorDiv(httpPacket.getTimestamp(), 1_000_000));
+            head(httpPacket);
+            body.skipBytes(packetAppend(httpPacket, body));
+            HttpMessage message = sessions.addRequest(flowKey, (HttpRequest) httpPacket, time);  // 不管请求是否完整 都要缓存
             if (httpPacket.isComplete()) {
                 return httpPacket;  // 请求完整 发送
             }
+            sessions.updateBuffered(sessions.get(flowKey));
+            drop(DropReason.PARTIAL_BODY);
         } else if (httpPacket instanceof HttpResponse) {  // 是起始响应
             HttpResponse httpResponse = (HttpResponse) httpPacket;
-            Iterator<HttpMessage> iterator = messages.iterator();
-            while (iterator.hasNext()) {
-                HttpMessage message = iterator.next();
-                if (time - message.getTime() < timeout) {
-                    if (message.getHttpRequest() != null && Objects.equals(httpResponse.getSeqNum(), message.getHttpRequest().getAckNum())) {  // 找到请求
-                        httpResponse.setTimeId(message.getHttpRequest().getTimeId());  // 设置时间ID
-                        if (httpResponse.isComplete()) {
-                            iterator.remove();  // 响应完整 清除缓存
-                            return httpResponse;  // 响应完整 发送
-                        } else {
-                            message.setHttpResponse(httpResponse);  // 响应不完整 存入缓存(因为是起始响应) 不发送
-                        }
-                    }
+            HttpMessage message = sessions.pollRequest(flowKey, httpResponse.getSeqNum(), time);
+            if (message == null) {  // 没有请求: 与过滤的响应相同, 只按长度跳过body(不能当作下一个首部解析), 不发送
+                ignore(httpResponse);
+                body.skipBytes(packetAppend(httpResponse, body));
+                drop(DropReason.UNMATCHED_RESPONSE);
+                if (!httpResponse.isComplete()) {
+                    sessions.addPendingResponse(flowKey, new HttpMessage(time, null, httpResponse, flowKey.reverse()), time);
+                    sessions.updateBuffered(sessions.get(flowKey));
+                }
+            } else {  // 找到请求
+                httpResponse.setTimeId(message.getHttpRequest().getTimeId());  // 设置时间ID
+                httpResponse.request = message.getHttpRequest();
+                if (message.getHttpRequest().headMethod) {
+                    httpResponse.closeDelimited = false;  // HEAD的响应没有body
+                }
+                if (message.getHttpRequest().ignored || filter != null && !filter.matchesResponse(httpResponse)) {
+                    ignore(httpResponse);
+                }
+                head(httpResponse);
+                body.skipBytes(packetAppend(httpResponse, body));
+                if (httpResponse.isComplete()) {
+                    sessions.remove(message);  // 响应完整 清除缓存
+                    return httpResponse;  // 响应完整 发送
+                } else {
+                    message.setHttpResponse(httpResponse);  // 响应不完整 存入缓存(因为是起始响应) 不发送
+                    sessions.addPendingResponse(flowKey, message, time);
+                    sessions.updateBuffered(sessions.get(flowKey));
+                    drop(DropReason.PARTIAL_BODY);
                 }
             }
         }
@@ -174,246 +514,334 @@ public class HttpDecoder implements IDecoder<HttpPacket> {
     }
 
     /**
-     * 解析HTTP状态行
-     * 请求 POST /req/test?name=%E5%90%8D%E7%A7%B0&id=1,2,3&type=a&type=b HTTP/1.1
-     * 响应 HTTP/1.1 200
-     *
-     * @param statusLine HTTP状态行
-     * @return http包(HttpRequest 或 HttpResponse)
+     * 删除超时缓存<br>
+     * 解码时会自动调用, 没有新包时可以定时调用以回收空闲的缓存(需要与{@link #decode(Packet)}在同一线程);
+     * 事件时间模式下按最后一个包的时间, 时间不会前进
      */
-    private HttpPacket readStatusLine(ByteBuf statusLine) {
-        if (statusLine != null) {
-            List<ByteBuf> split = split(statusLine, Unpooled.wrappedBuffer(new byte[]{' '}));
-
-            if (split.size() == 3 && ByteBufUtil.equals(split.get(2), HTTP)) {
-                // 是请求
-                HttpRequest httpRequest = new HttpRequest();
-                httpRequest.setHttpMethod(split.get(0).toString(StandardCharsets.UTF_8));
-                List<ByteBuf> urlSplit = split(split.get(1), Unpooled.wrappedBuffer(new byte[]{'?'}), 2);
-                httpRequest.setPath(urlSplit.get(0).toString(StandardCharsets.UTF_8));
-                if (urlSplit.size() == 2) {
-                    // 有问号 => 有参数
-                    Map<String, Object> parameters = new HashMap<>();
-                    for (ByteBuf keyEqValue : split(urlSplit.get(1), Unpooled.wrappedBuffer(new byte[]{'&'}))) {
-                        List<ByteBuf> keyValueSplit = split(keyEqValue, Unpooled.wrappedBuffer(new byte[]{'='}), 2);
-                        String key = urlDecode(keyValueSplit.get(0).toString(StandardCharsets.UTF_8));
-                        if (keyValueSplit.size() == 2) {
-                            for (ByteBuf value : split(keyValueSplit.get(1), Unpooled.wrappedBuffer(new byte[]{','}))) {
-                                mapPut(parameters, key, urlDecode(value.toString(StandardCharsets.UTF_8)));
-                            }
-                        }
-                    }
-                    httpRequest.setParameters(parameters);
-                }
-                return httpRequest;
-            } else if (split.size() >= 2 && ByteBufUtil.equals(split.get(0), (HTTP))) {
-                // 是响应
-                HttpResponse httpResponse = new HttpResponse();
-                httpResponse.setResCode(Integer.parseInt(split.get(1).toString(StandardCharsets.UTF_8)));
-                return httpResponse;
-            }
+    @Override
+    public void expire() {
+        sessions.expire(eventTime ? clock : System.currentTimeMillis());
+        if (metrics != null) {
+            reportGauges();
         }
-        return new HttpNull();
     }
 
     /**
-     * URL解码
+     * 事件时间推进到抓包时间并删除超时缓存, 与收到该时间的包时相同(不解码)<br>
+     * 只解码部分连接的包时, 其他包的时间通过此方法推进, 超时与解码所有包相同
      *
-     * @param url url的key或value
-     * @return 解码内容
+     * @param timestamp 抓包时间(纳秒, 0 未知)
      */
-    private String urlDecode(String url) {
-        try {
-            return URLDecoder.decode(url, "UTF-8");
-        } catch (UnsupportedEncodingException e) {
-            return url;
+    public void advance(long timestamp) {
+        if (eventTime && timestamp > 0) {
+            clock = Math.max(clock, timestamp / 1_000_000);
         }
+        expire();
     }
 
     /**
-     * 解析HTTP首部行
-     * 可能有多个key
-     *
-     * @param headerLines HTTP首部行
-     * @return 1个key => value为String; 多个key => value为List
+     * 删除所有流和缓存(释放未完整包的ByteBuf), 之后可以继续解码
      */
-    private Map<String, Object> readHeaderLines(List<ByteBuf> headerLines) {
-        if (headerLines != null && headerLines.size() > 0) {
-            Map<String, Object> headers = new HashMap<>();
-            for (ByteBuf headerLine : headerLines) {
-                List<ByteBuf> split = split(headerLine, Unpooled.wrappedBuffer(new byte[]{':', ' '}), 2);
-                if (split.size() == 2) {
-                    mapPut(headers, split.get(0).toString(StandardCharsets.UTF_8), split.get(1).toString(StandardCharsets.UTF_8));
-                }
-            }
-            return headers;
+    public void reset() {
+        sessions.clear();
+        if (metrics != null) {
+            reportGauges();
         }
-        return null;
     }
 
     /**
-     * 调用map的put(k,v)方法 => 存如headers和parameters的map
-     * 若同key存在多个value, 将value改为valueList
+     * 关闭解码器: 删除所有流并释放缓存(未完整的请求/响应不再发送), 之后解码抛出{@link IllegalStateException}<br>
+     * 已交给使用方的请求/响应由使用方释放({@link HttpPacket#release()}); 需要继续解码时使用{@link #reset()}
+     */
+    @Override
+    public void close() {
+        closed = true;
+        reset();
+        headParser.reset();
+    }
+
+    /**
+     * 会话持有的ByteBuf数量(未完整的请求/响应、跨包的首部、乱序数据), 关闭后为0<br>
+     * 用于检查缓存是否都已释放(配合-Dio.netty.leakDetection.level=paranoid)
      *
-     * @param map   map
-     * @param key   k
-     * @param value v
+     * @return 数量
      */
-    public void mapPut(Map<String, Object> map, String key, String value) {
-        if (map.containsKey(key)) {
-            if (map.get(key) instanceof List) {
-                ((List) map.get(key)).add(value);
-            } else {
-                List<String> values = new ArrayList<>();
-                values.add(String.valueOf(map.get(key)));
-                values.add(value);
-                map.put(key, values);
+    public int outstandingBuffers() {
+        return sessions.bufferCount() + headParser.bufferCount();
+    }
+
+    /**
+     * 会话表中的连接(有未完整的请求/响应, 或等待FIN/RST/超时)
+     *
+     * @return 与方向无关的流标识({@link FlowKey#canonical()})
+     */
+    public Set<FlowKey> connections() {
+        return sessions.connections();
+    }
+
+    /**
+     * 等待响应的请求数量
+     *
+     * @return 数量
+     */
+    public int pendingCount() {
+        return sessions.size();
+    }
+
+    /**
+     * 所有缓存的body字节数
+     *
+     * @return 字节数
+     */
+    public long bufferedBytes() {
+        return sessions.getBufferedBytes();
+    }
+
+    /**
+     * 解析HTTP状态行和首部行<br>
+     * 本流有跨包的首部时从中断的位置继续解析, 否则用共用的解析器;
+     * 首部不完整时解析器交给流保存, 等待本流的下一个包<br>
+     * ackNum/seqNum取首部第一个包的值(响应通过seqNum匹配请求)
+     *
+     * @param flowKey 本包的流
+     * @param segment TCP报文段
+     * @param rawData 连续的数据(解析成功后readerIndex移到body开始位置)
+     * @param seqNum  rawData的seqNum
+     * @param time    当前时间
+     * @return http包(HttpRequest 或 HttpResponse), null为首部不完整或不是HTTP
+     */
+    private HttpPacket readHead(FlowKey flowKey, TcpSegment segment, ByteBuf rawData, long seqNum, long time) {
+        HttpFlow flow = sessions.get(flowKey);
+        HttpHeadParser parser = flow == null || flow.getParser() == null ? headParser : flow.getParser();
+        if (parser != headParser) {
+            seqNum = flow.getHeadSeqNum();
+        }
+        int bodyIndex = parser.parse(rawData);
+        if (bodyIndex == HttpHeadParser.NEED_MORE) {
+            flow = sessions.open(flowKey, time);
+            if (parser == headParser) {
+                flow.setParser(parser);
+                flow.setHeadSeqNum(seqNum);
+                headParser = new HttpHeadParser(ByteBufAllocator.DEFAULT);
             }
-        } else {
-            map.put(key, value);
+            sessions.updateBuffered(flow);
+            drop(DropReason.PARTIAL_HEAD);
+            return null;
+        }
+        if (parser != headParser) {  // 跨包的首部结束(或不是HTTP) 从流中移除
+            sessions.detachParser(flow);
+        }
+        if (bodyIndex == HttpHeadParser.ERROR) {
+            drop(DropReason.PARSE_ERROR);
+            return null;
+        }
+        HttpPacket httpPacket = parser.take();
+        httpPacket.setAckNum(segment.getAckNum());
+        httpPacket.decompressLimit = decompressLimit;
+        if (httpPacket instanceof HttpResponse) {
+            ((HttpResponse) httpPacket).setSeqNum(seqNum);
         }
+        rawData.readerIndex(bodyIndex);
+        return httpPacket;
     }
 
     /**
-     * 将body内容拼接到请求或响应中<br>
-     * 若完整包, {@link HttpPacket#complete} 为 true 不可再添加<br>
+     * 发送完整的请求/响应<br>
+     * 普通模式下转为字符串并释放缓存, 视图模式下由使用方访问时转换并调用{@link HttpPacket#release()}
      *
-     * @param packet httpPacket
-     * @param append 拼接内容
-     * @param <T>    {@link HttpRequest}/{@link HttpResponse}
+     * @param httpPacket 完整的请求/响应
+     * @param sink       完整的请求/响应
      */
-    private <T extends HttpPacket> void packetAppend(T packet, ByteBuf append) {
-        if (checkTransferEncodingChunked(packet)) {  // Transfer-Encoding: chunked
-            ByteBuf cacheBuf = (ByteBuf) packet.getHeaders().getOrDefault("Body-Cache", ByteBufAllocator.DEFAULT.buffer());
-            cacheBuf = ByteBufAllocator.DEFAULT.compositeBuffer().addComponents(true, cacheBuf, append);
-            while (cacheBuf.readableBytes() > 0) {
-                int splitIndex = ByteBufUtil.indexOf(line1, cacheBuf);  // 第一个\r\n的位置
-                int length = Integer.parseInt(cacheBuf.slice(0, splitIndex).toString(StandardCharsets.UTF_8), 0x10);
-                if (length == 0) {  // 结束
-                    packet.getHeaders().remove("Body-Cache");
-                    ByteBuf dataBuf = (ByteBuf) packet.getHeaders().remove("Body-Data");
-                    packet.setBody(dataBuf.toString(StandardCharsets.UTF_8));
-                    ReferenceCountUtil.safeRelease(cacheBuf);
-                    packet.setComplete(true);
-                    return;
-                } else if (cacheBuf.readableBytes() - splitIndex - line1.readableBytes() > length) {  // 第一个\r\n后的实际长度大于 第一段数据的应有长度
-                    ByteBuf dataBuf = cacheBuf.slice(splitIndex + line1.readableBytes(), length);
-                    cacheBuf = cacheBuf.slice(splitIndex + line1.readableBytes() * 2 + length,
-                            cacheBuf.readableBytes() - splitIndex - line1.readableBytes() * 2 - length);
-                    packet.getHeaders().put("Body-Cache", cacheBuf);
-                    packet.getHeaders().put("Body-Data", packet.getHeaders().containsKey("Body-Data") ?
-                            ByteBufAllocator.DEFAULT.compositeBuffer().addComponents(true, (ByteBuf) packet.getHeaders().get("Body-Data"), dataBuf) : dataBuf);
-                } else {  // 第一个\r\n后的实际长度小于 第一段数据的应有长度 => 等待下一个包
-                    packet.getHeaders().put("Body-Cache", cacheBuf);
-                    break;
-                }
-            }
+    private void emit(HttpPacket httpPacket, Consumer<? super HttpPacket> sink) {
+        if (httpPacket.ignored) {
+            httpPacket.release();
+            boolean unmatched = httpPacket instanceof HttpResponse && ((HttpResponse) httpPacket).request == null;
+            drop(unmatched ? DropReason.UNMATCHED_RESPONSE : DropReason.FILTERED);
             return;
         }
-        int length = checkContentLengthInt(packet);
-        if (length > 0) {  // 是Content-Length类型
-            ByteBuf dataBuf = (ByteBuf) packet.getHeaders().getOrDefault("Body", ByteBufAllocator.DEFAULT.buffer());
-            dataBuf = ByteBufAllocator.DEFAULT.compositeBuffer().addComponents(true, dataBuf, append);
-            if (dataBuf.readableBytes() < length) {
-                packet.getHeaders().put("Body", dataBuf);
+        if (!lazy) {
+            httpPacket.materialize();
+        }
+        HttpRequest request = httpPacket instanceof HttpResponse ? ((HttpResponse) httpPacket).request : null;
+        if (request != null) {
+            HttpResponse response = (HttpResponse) httpPacket;
+            response.request = null;  // 只保留需要的字段, 响应不持有请求
+            response.setSrcHost(request.getDstHost());
+            response.setPort(request.getPort());
+            response.setRequestMethod(request.getHttpMethod());
+            response.setRequestPath(request.getPath());
+            response.setRequestTimestamp(request.getTimestamp());
+        }
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).onComplete(httpPacket);
+            if (request != null) {
+                listeners.get(i).onExchange(request, (HttpResponse) httpPacket);
+            }
+        }
+        if (metrics != null) {
+            if (httpPacket instanceof HttpRequest) {
+                metrics.request();
             } else {
-                packet.setComplete(true);
-                packet.setBody(dataBuf.toString(StandardCharsets.UTF_8));
-                ReferenceCountUtil.safeRelease(dataBuf);
-                packet.getHeaders().remove("Body");
+                metrics.response();
             }
+        }
+        sink.accept(httpPacket);
+    }
+
+    /**
+     * 不符合过滤条件的请求/响应: 释放首部, 之后只按长度跳过body
+     *
+     * @param httpPacket 请求/响应
+     */
+    private void ignore(HttpPacket httpPacket) {
+        httpPacket.ignored = true;
+        httpPacket.release();
+    }
+
+    private void drop(DropReason reason) {
+        if (metrics != null) {
+            metrics.drop(reason);
+        }
+    }
+
+    /**
+     * 把本解码器的缓存数量变化计入统计
+     */
+    private void reportGauges() {
+        long pending = sessions.size();
+        long buffered = sessions.getBufferedBytes();
+        long flows = sessions.flowCount();
+        metrics.gauges(pending - reportedPending, buffered - reportedBuffered, flows - reportedFlows);
+        reportedPending = pending;
+        reportedBuffered = buffered;
+        reportedFlows = flows;
+    }
+
+    private void head(HttpPacket httpPacket) {
+        if (httpPacket.ignored) {
             return;
         }
-        packet.setComplete(true); // 默认完整
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).onHead(httpPacket);
+        }
     }
 
     /**
-     * 切分ByteBuf<br>
-     * String[] result = longData.split(shortData, count);<br>
-     * List result = split(longData, shortData, count);
+     * body片段到达<br>
+     * 计入body长度, 交给流式监听, 并在{@link HttpDecoderConfig#getMaxBodyCapture()}以内保存切片(不复制, 准入降级的连接不保存);
+     * chunked的数据复制到一个可增长的缓存
      *
-     * @param longData  源Buf
-     * @param shortData 切分Buf
-     * @param count     切分数量
-     * @return 切分
+     * @param packet httpPacket
+     * @param chunk  body片段
      */
-    private List<ByteBuf> split(ByteBuf longData, ByteBuf shortData, int count) {
-        int indexOf;
-        List<ByteBuf> bufList = new ArrayList<>();
-        while ((indexOf = ByteBufUtil.indexOf(shortData, longData)) != -1) {
-            if (count != -1 && bufList.size() == count - 1) {
-                break;
+    private void body(HttpPacket packet, ByteBuf chunk) {
+        packet.setBodyLength(packet.getBodyLength() + chunk.readableBytes());
+        if (packet.ignored) {
+            return;
+        }
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).onBodyChunk(packet, chunk.duplicate());
+        }
+        long captured = packet.bodyBuf == null ? 0 : packet.bodyBuf.readableBytes();
+        int length = bodyCapture < 0 ? chunk.readableBytes() : (int) Math.min(chunk.readableBytes(), Math.max(0, bodyCapture - captured));
+        if (length == 0) {
+            return;
+        }
+        if (packet.isChunked()) {  // chunk数量不定 复制到一个可增长的缓存(不按chunk增加组件)
+            if (packet.bodyBuf == null) {
+                packet.bodyBuf = ByteBufAllocator.DEFAULT.buffer(length);
             }
-            bufList.add(longData.slice(0, indexOf));
-            longData = longData.slice(indexOf + shortData.readableBytes(), longData.readableBytes() - indexOf - shortData.readableBytes());
+            packet.bodyBuf.writeBytes(chunk, chunk.readerIndex(), length);
+            return;
+        }
+        ByteBuf part = chunk.retainedSlice(chunk.readerIndex(), length);
+        if (packet.bodyBuf == null) {
+            packet.bodyBuf = part;
+        } else if (packet.bodyBuf instanceof CompositeByteBuf) {
+            ((CompositeByteBuf) packet.bodyBuf).addComponent(true, part);
+        } else {
+            packet.bodyBuf = ByteBufAllocator.DEFAULT.compositeBuffer(Integer.MAX_VALUE).addComponents(true, packet.bodyBuf, part);
         }
-        bufList.add(longData);
-        return bufList;
     }
 
     /**
-     * 切分ByteBuf<br>
-     * String[] result = longData.split(shortData);<br>
-     * List result = split(longData, shortData);
+     * 调用map的put(k,v)方法 => 存如headers和parameters的map
+     * 若同key存在多个value, 将value改为valueList
      *
-     * @param longData  源Buf
-     * @param shortData 切分Buf
-     * @return 切分
+     * @param map   map
+     * @param key   k
+     * @param value v
      */
-    private List<ByteBuf> split(ByteBuf longData, ByteBuf shortData) {
-        return split(longData, shortData, -1);
+    public void mapPut(Map<String, Object> map, String key, String value) {
+        HttpBytes.mapPut(map, key, value);
     }
 
     /**
-     * 检查是否是"Transfer-Encoding: Chunked"
+     * 将body内容拼接到请求或响应中<br>
+     * 若完整包, {@link HttpPacket#complete} 为 true 不可再添加<br>
+     * body片段通过{@link #body(HttpPacket, ByteBuf)}处理<br>
+     * 只使用属于本请求/响应的数据, 之后的数据(keep-alive的下一个请求/响应)留给调用方
      *
-     * @param httpPacket http包
-     * @return true 是chunked类型/false 不是chunked类型
+     * @param packet httpPacket
+     * @param append 拼接内容
+     * @param <T>    {@link HttpRequest}/{@link HttpResponse}
+     * @return 使用的字节数(从append的readerIndex开始)
      */
-    private boolean checkTransferEncodingChunked(HttpPacket httpPacket) {
-        if (httpPacket.getHeaders() != null && httpPacket.getHeaders().containsKey("Transfer-Encoding")) {
-            Object obj = httpPacket.getHeaders().get("Transfer-Encoding");
-            if (obj instanceof List) {
-                for (Object value : (List) obj) {
-                    if (value.equals("chunked")) {
-                        return true;
-                    }
+    private <T extends HttpPacket> int packetAppend(T packet, ByteBuf append) {
+        if (packet.isChunked()) {  // Transfer-Encoding: chunked
+            if (packet.chunkedParser == null) {
+                packet.chunkedParser = new HttpChunkedParser();
+            }
+            HttpChunkedParser parser = packet.chunkedParser;
+            int start = append.readerIndex();
+            int end = append.writerIndex();
+            int index = start;
+            while (index < end && !parser.isDone()) {
+                index = parser.parse(append, index, end);  // 长度行/数据结尾/trailer 停在数据开始位置
+                if (index == HttpChunkedParser.ERROR) {  // 格式错误 无法找到结束位置: 以已收到的body结束, 丢弃本段剩余数据
+                    drop(DropReason.PARSE_ERROR);
+                    chunkedEnd(packet);
+                    return end - start;
                 }
-            } else {
-                return obj.equals("chunked");
+                int length = parser.data(end - index);
+                if (length > 0) {
+                    body(packet, append.slice(index, length));
+                    index += length;
+                }
+            }
+            if (parser.isDone()) {
+                packet.setTrailers(parser.getTrailers());
+                chunkedEnd(packet);
+            }
+            return index - start;
+        }
+        long length = packet.getContentLength();
+        if (length > 0) {  // 是Content-Length类型
+            int size = (int) Math.min(length - packet.getBodyLength(), append.readableBytes());
+            body(packet, append.slice(append.readerIndex(), size));
+            if (packet.getBodyLength() == length) {
+                packet.setComplete(true);
             }
+            return size;
         }
-        return false;
+        if (packet.closeDelimited) {  // body到连接结束 收到FIN时完整
+            body(packet, append.slice());
+            return append.readableBytes();
+        }
+        packet.setComplete(true); // 默认完整
+        return 0;
     }
 
     /**
-     * 检查是否是"Content-Length: [int]"
+     * chunked结束(或格式错误)
      *
-     * @param httpPacket http包
-     * @return 返回长度(小于0说明不是Content - Length类型)
+     * @param packet httpPacket
      */
-    private int checkContentLengthInt(HttpPacket httpPacket) {
-        if (httpPacket.getHeaders() != null && httpPacket.getHeaders().containsKey("Content-Length")) {
-            Object obj = httpPacket.getHeaders().get("Content-Length");
-            if (obj instanceof List) {
-                for (Object value : (List) obj) {
-                    try {
-                        int length = Integer.parseInt(String.valueOf(value));
-                        if (length >= 0) {
-                            return length;
-                        }
-                    } catch (NumberFormatException ignore) {
-                        // 无法转换为数字不做处理 等待下一个
-                    }
-                }
-            } else {
-                try {
-                    return Integer.parseInt(String.valueOf(obj));
-                } catch (NumberFormatException ignore) {
-                    // 无法转换为数字 说明不是Content-Length类型
-                }
-            }
+    private void chunkedEnd(HttpPacket packet) {
+        packet.chunkedParser = null;
+        if (packet.bodyBuf == null && bodyCapture != 0) {
+            packet.bodyBuf = Unpooled.EMPTY_BUFFER;
         }
-        return -1;
+        packet.setComplete(true);
     }
-}
\ No newline at end of file
+}
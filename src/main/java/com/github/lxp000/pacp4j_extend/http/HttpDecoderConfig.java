@@ -0,0 +1,58 @@
+package com.github.lxp000.pacp4j_extend.http;
+
+import com.github.lxp000.pacp4j_extend.metrics.DecoderMetrics;
+import lombok.Data;
+
+/**
+ * HTTP解码器配置
+ */
+@Data
+public class HttpDecoderConfig {
+    /**
+     * 未完整的请求/响应缓存超时时间(ms)
+     */
+    private long timeout = 100_000;
+    /**
+     * 事件时间模式: 超时按抓包时间({@link com.github.lxp000.pacp4j_extend.tcp.TcpSegment#getTimestamp()})计算, 不读取系统时间;
+     * 用于离线回放(不受回放速度影响, 同样的输入结果相同), 没有抓包时间的包沿用上一个包的时间
+     */
+    private boolean eventTime;
+    /**
+     * 所有缓存中body的最大字节数, 超出时从最早的一组请求/响应开始删除
+     */
+    private long maxBufferedBytes = 256L * 1024 * 1024;
+    /**
+     * 每个流乱序数据的最大缓存字节数, 超出时认为缺口的数据已丢失(抓包丢包), 跳过缺口继续解析
+     */
+    private int maxReorderBytes = 1024 * 1024;
+    /**
+     * 每个请求/响应保存body的最大字节数(-1 不限制), 超出的部分只计入{@link HttpPacket#getBodyLength()}不保存;
+     * 通过{@link HttpListener}流式处理大body时可以设为0
+     */
+    private long maxBodyCapture = -1;
+    /**
+     * 视图模式: 首部行/路径参数/body保存为抓包数据的切片, 访问时才转为字符串,
+     * 使用完后需要调用{@link HttpPacket#release()}
+     */
+    private boolean lazy;
+    /**
+     * 解压Content-Encoding: gzip/deflate的body(访问{@link HttpPacket#getBody()}时解压)
+     */
+    private boolean decompress;
+    /**
+     * 解压后body的最大字节数, 超出时停止解压并设置{@link HttpPacket#getBodyError()}
+     */
+    private long maxDecompressedBytes = 64L * 1024 * 1024;
+    /**
+     * 解码统计(null 不统计), 多个解码器可以共用同一个
+     */
+    private DecoderMetrics metrics;
+    /**
+     * 过滤条件(null 不过滤)
+     */
+    private HttpFilter filter;
+    /**
+     * 新连接的准入控制(null 不限制)
+     */
+    private AdmissionConfig admission;
+}
@@ -0,0 +1,316 @@
+package com.github.lxp000.pacp4j_extend.http;
+
+import com.github.lxp000.pacp4j_extend.tcp.FlowKey;
+import io.netty.buffer.ByteBuf;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Locale;
+
+/**
+ * 解码过滤条件({@link HttpDecoderConfig#setFilter(HttpFilter)})<br>
+ * 同一类条件之间为或, 不同类条件之间为与, 没有设置的类不限制:
+ * <pre>
+ * new HttpFilter()
+ *         .host("10.0.0.1").port(80, 8080)  // 连接的任一端
+ *         .method("GET", "POST")
+ *         .pathPrefix("/api/").pathGlob("/static/**&#47;*.js")
+ *         .status(200, 299)
+ *         .requestHeader("X-Request-Id");
+ * </pre>
+ * 条件在解码前转为字节/整数, 直接与抓包数据比较, 不创建字符串:<br>
+ * 1. 地址/端口: 连接的第一个包检查, 不匹配的流在会话表中标记为忽略, 之后的包只有一次查找<br>
+ * 2. 请求方式/路径/请求首部: 首部解析后检查, 不匹配的请求和它的响应只按长度跳过body(不保存, 不回调, 不发送)<br>
+ * 3. 响应码/响应首部: 只过滤响应(请求完整时已经发送)
+ */
+public class HttpFilter {
+    private long[] hosts = new long[0];  // 每2个为一个地址 [高64位, 低64位]
+    private BitSet ports;
+    private byte[][] methods = new byte[0][];
+    private byte[][] pathPrefixes = new byte[0][];
+    private byte[][] pathGlobs = new byte[0][];
+    private int[] statusRanges = new int[0];  // 每2个为一个范围 [min, max]
+    private String[] requestHeaders = new String[0];  // 小写
+    private String[] responseHeaders = new String[0];
+
+    /**
+     * 连接任一端的地址
+     *
+     * @param addresses IP地址
+     * @return this
+     */
+    public HttpFilter host(String... addresses) {
+        for (String address : addresses) {
+            try {
+                host(InetAddress.getByName(address));
+            } catch (UnknownHostException e) {
+                throw new IllegalArgumentException("unknown host: " + address, e);
+            }
+        }
+        return this;
+    }
+
+    public HttpFilter host(InetAddress address) {
+        byte[] bytes = address.getAddress();
+        long high = FlowKey.addressHigh(bytes);
+        long low = FlowKey.addressLow(bytes);
+        if (!containsHost(high, low)) {
+            hosts = Arrays.copyOf(hosts, hosts.length + 2);
+            hosts[hosts.length - 2] = high;
+            hosts[hosts.length - 1] = low;
+        }
+        return this;
+    }
+
+    /**
+     * 连接任一端的端口
+     *
+     * @param ports 端口
+     * @return this
+     */
+    public HttpFilter port(int... ports) {
+        if (this.ports == null) {
+            this.ports = new BitSet(65536);
+        }
+        for (int port : ports) {
+            if (port < 0 || port > 65535) {
+                throw new IllegalArgumentException("port out of range: " + port);
+            }
+            this.ports.set(port);
+        }
+        return this;
+    }
+
+    /**
+     * 请求方式(区分大小写)
+     *
+     * @param methods GET/POST等
+     * @return this
+     */
+    public HttpFilter method(String... methods) {
+        this.methods = append(this.methods, methods);
+        return this;
+    }
+
+    /**
+     * 路径前缀(不含参数)
+     *
+     * @param prefixes 前缀
+     * @return this
+     */
+    public HttpFilter pathPrefix(String... prefixes) {
+        this.pathPrefixes = append(this.pathPrefixes, prefixes);
+        return this;
+    }
+
+    /**
+     * 路径通配(不含参数): * 匹配一段中的任意字符(不含/), ** 匹配任意字符, ? 匹配一个字符
+     *
+     * @param globs 通配
+     * @return this
+     */
+    public HttpFilter pathGlob(String... globs) {
+        this.pathGlobs = append(this.pathGlobs, globs);
+        return this;
+    }
+
+    /**
+     * 响应码范围
+     *
+     * @param min 最小(包含)
+     * @param max 最大(包含)
+     * @return this
+     */
+    public HttpFilter status(int min, int max) {
+        statusRanges = Arrays.copyOf(statusRanges, statusRanges.length + 2);
+        statusRanges[statusRanges.length - 2] = min;
+        statusRanges[statusRanges.length - 1] = max;
+        return this;
+    }
+
+    /**
+     * 请求中有此首部(忽略大小写)
+     *
+     * @param names 首部名
+     * @return this
+     */
+    public HttpFilter requestHeader(String... names) {
+        requestHeaders = appendLower(requestHeaders, names);
+        return this;
+    }
+
+    /**
+     * 响应中有此首部(忽略大小写)
+     *
+     * @param names 首部名
+     * @return this
+     */
+    public HttpFilter responseHeader(String... names) {
+        responseHeaders = appendLower(responseHeaders, names);
+        return this;
+    }
+
+    /**
+     * 连接(地址/端口)是否匹配, 与方向无关
+     *
+     * @param key 流标识
+     * @return true 匹配
+     */
+    boolean matchesFlow(FlowKey key) {
+        if (hosts.length > 0 && !containsHost(key.getSrcAddrHigh(), key.getSrcAddrLow())
+                && !containsHost(key.getDstAddrHigh(), key.getDstAddrLow())) {
+            return false;
+        }
+        return ports == null || ports.get(key.getSrcPort()) || ports.get(key.getDstPort());
+    }
+
+    /**
+     * 地址条件一般只有几个, 顺序比较(只在连接的第一个包检查)
+     */
+    private boolean containsHost(long high, long low) {
+        for (int i = 0; i < hosts.length; i += 2) {
+            if (hosts[i] == high && hosts[i + 1] == low) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 请求是否匹配(在首部切片上比较)
+     *
+     * @param request 首部解析后的请求
+     * @return true 匹配
+     */
+    boolean matchesRequest(HttpRequest request) {
+        ByteBuf head = request.head;
+        if (methods.length > 0 && !anyEquals(methods, head, 0, request.methodEnd)) {
+            return false;
+        }
+        if (pathPrefixes.length > 0 || pathGlobs.length > 0) {
+            boolean matched = false;
+            for (byte[] prefix : pathPrefixes) {
+                if (startsWith(head, request.pathStart, request.pathEnd, prefix)) {
+                    matched = true;
+                    break;
+                }
+            }
+            for (int i = 0; !matched && i < pathGlobs.length; i++) {
+                matched = glob(pathGlobs[i], 0, head, request.pathStart, request.pathEnd);
+            }
+            if (!matched) {
+                return false;
+            }
+        }
+        return hasHeaders(request, requestHeaders);
+    }
+
+    /**
+     * 响应是否匹配
+     *
+     * @param response 首部解析后的响应
+     * @return true 匹配
+     */
+    boolean matchesResponse(HttpResponse response) {
+        if (statusRanges.length > 0) {
+            int status = response.getResCode() == null ? -1 : response.getResCode();
+            boolean matched = false;
+            for (int i = 0; i < statusRanges.length; i += 2) {
+                if (status >= statusRanges[i] && status <= statusRanges[i + 1]) {
+                    matched = true;
+                    break;
+                }
+            }
+            if (!matched) {
+                return false;
+            }
+        }
+        return hasHeaders(response, responseHeaders);
+    }
+
+    /**
+     * 有任一首部(没有条件时为true)
+     */
+    private static boolean hasHeaders(HttpPacket packet, String[] names) {
+        if (names.length == 0) {
+            return true;
+        }
+        for (int i = 0; i < packet.headerCount; i++) {
+            int field = i * 4;
+            for (String name : names) {
+                if (HttpBytes.equalsIgnoreCase(packet.head, packet.headerFields[field], packet.headerFields[field + 1], name)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean anyEquals(byte[][] values, ByteBuf buf, int start, int end) {
+        for (byte[] value : values) {
+            if (value.length == end - start && startsWith(buf, start, end, value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean startsWith(ByteBuf buf, int start, int end, byte[] prefix) {
+        if (end - start < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buf.getByte(start + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 通配匹配(*遇到/回溯, **任意回溯)
+     */
+    private static boolean glob(byte[] pattern, int p, ByteBuf buf, int start, int end) {
+        while (p < pattern.length) {
+            byte c = pattern[p];
+            if (c == '*') {
+                boolean any = p + 1 < pattern.length && pattern[p + 1] == '*';
+                int next = any ? p + 2 : p + 1;
+                for (int i = start; i <= end; i++) {
+                    if (glob(pattern, next, buf, i, end)) {
+                        return true;
+                    }
+                    if (i < end && !any && buf.getByte(i) == '/') {
+                        return false;
+                    }
+                }
+                return false;
+            }
+            if (start == end || c != '?' && buf.getByte(start) != c) {
+                return false;
+            }
+            p++;
+            start++;
+        }
+        return start == end;
+    }
+
+    private static byte[][] append(byte[][] values, String[] added) {
+        byte[][] result = Arrays.copyOf(values, values.length + added.length);
+        for (int i = 0; i < added.length; i++) {
+            result[values.length + i] = added[i].getBytes(StandardCharsets.UTF_8);
+        }
+        return result;
+    }
+
+    private static String[] appendLower(String[] values, String[] added) {
+        String[] result = Arrays.copyOf(values, values.length + added.length);
+        for (int i = 0; i < added.length; i++) {
+            result[values.length + i] = added[i].toLowerCase(Locale.ROOT);
+        }
+        return result;
+    }
+}
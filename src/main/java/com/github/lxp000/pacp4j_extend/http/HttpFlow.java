@@ -0,0 +1,56 @@
+package com.github.lxp000.pacp4j_extend.http;
+
+import com.github.lxp000.pacp4j_extend.tcp.FlowKey;
+import com.github.lxp000.pacp4j_extend.tcp.TcpReassembler;
+import com.github.lxp000.pacp4j_extend.util.TimerWheel;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * TCP单向流(4元组+方向)的会话状态<br>
+ * 从SYN(或中途抓包时第一个HTTP包)开始, 到FIN/RST/超时结束
+ */
+@Getter
+@Setter
+class HttpFlow {
+    private final FlowKey key;
+    private final TcpReassembler reassembler;  // 按seqNum排序数据
+    private HttpConnection connection;  // 分配器的连接(null 在会话表的流表中)
+    private boolean closed;  // 已删除
+    private boolean finished;  // 收到FIN(之前的数据都已收到)
+    private boolean ignored;  // 不符合过滤条件 之后的包直接跳过
+    private boolean headOnly;  // 准入降级: 只保存首部
+    private int refusal;  // 准入拒绝的原因(HttpSessionTable.REFUSE_*, 0 未拒绝) 之后的包直接跳过
+    private boolean counted;  // 计入准入控制的连接数量(连接第一个方向的流)
+    private FlowKey host;  // 计数的客户端地址
+    private HttpMessage pending;  // 本方向未完整的请求/响应所在的一组
+    /**
+     * 请求方向: 等待响应的一组请求/响应(按请求顺序)<br>
+     * 同一连接上的响应按请求顺序返回(keep-alive/pipelining) => 反方向的响应从队首配对
+     */
+    private final Deque<HttpMessage> exchanges = new ArrayDeque<>();
+    private HttpHeadParser parser;  // 跨包的首部(解析中)
+    private long headSeqNum;  // 跨包的首部第一个包的seqNum
+    private TimerWheel.Timeout<HttpFlow> timeout;  // 超时计时(最后活动时间 + 超时时间)
+    private long bufferedBytes;  // 缓存的字节数
+
+    HttpFlow(FlowKey key, TcpReassembler reassembler) {
+        this.key = key;
+        this.reassembler = reassembler;
+    }
+
+    /**
+     * 本方向未完整的请求/响应
+     *
+     * @return 请求(本方向为请求方向)/响应
+     */
+    HttpPacket getPendingPacket() {
+        if (pending == null) {
+            return null;
+        }
+        return key.equals(pending.getFlowKey()) ? pending.getHttpRequest() : pending.getHttpResponse();
+    }
+}
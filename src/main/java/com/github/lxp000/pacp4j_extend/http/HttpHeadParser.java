@@ -0,0 +1,417 @@
+package com.github.lxp000.pacp4j_extend.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.util.ReferenceCountUtil;
+
+import java.util.Arrays;
+
+/**
+ * HTTP状态行和首部行解析(状态机)<br>
+ * 逐字节只处理一次, 解析过程中只记录下标, 不创建字符串/切片<br>
+ * 首部跨多个TCP包时, 把已收到的部分复制到缓存中, 下一个包从中断的位置继续解析<br>
+ * 第一个单词不是请求方式/HTTP版本, 或出现控制字符时立即判定为非HTTP, 不会缓存<br>
+ * 以空白开始的行是上一个首部值的续行(obs-fold)
+ */
+final class HttpHeadParser {
+    static final int NEED_MORE = -1;  // 首部不完整 等待下一个包
+    static final int ERROR = -2;  // 不是HTTP
+    private static final int MAX_HEAD_LENGTH = 64 * 1024;
+    private static final int MAX_TOKEN_LENGTH = 16;
+    private static final String HTTP_1_1 = "http/1.1";
+    private static final String HTTP_1_0 = "http/1.0";
+    private static final String CONTENT_LENGTH = "content-length";
+    private static final String TRANSFER_ENCODING = "transfer-encoding";
+    private static final String CHUNKED = "chunked";
+    private static final String CONTENT_ENCODING = "content-encoding";
+
+    private static final int START_LINE = 0;  // 状态行
+    private static final int START_LINE_LF = 1;  // 状态行的\r之后
+    private static final int LINE_START = 2;  // 首部行开始
+    private static final int NAME = 3;  // 首部名
+    private static final int VALUE_SPACE = 4;  // 冒号后的空白
+    private static final int VALUE = 5;  // 首部值
+    private static final int LINE_LF = 6;  // 首部行的\r之后
+    private static final int HEAD_LF = 7;  // 空行的\r之后
+
+    private final ByteBufAllocator allocator;
+    private ByteBuf cache;  // 跨包的首部(只在首部不完整时使用)
+    private int state;
+    private int start = -1;  // 首部开始位置(-1 未开始)
+    private int position;  // 下一个要解析的位置
+    private int space1;
+    private int space2;
+    private int question;
+    private boolean extraSpace;  // 状态行有两个以上空格
+    private int lineEnd;  // 状态行结束位置
+    private int nameStart;
+    private int colon;
+    private int valueStart;
+    private int valueEnd;
+    private int[] fields = new int[16 * 4];  // 每个首部行4个下标
+    private int count;
+    private boolean fieldLine;  // 上一行是首部(可以有续行)
+    private boolean folded;  // 有续行
+    private long contentLength;
+    private boolean chunked;
+    private int contentEncoding;  // HttpContentDecoder.GZIP/DEFLATE
+    private HttpPacket packet;  // 解析完成的结果
+
+    HttpHeadParser(ByteBufAllocator allocator) {
+        this.allocator = allocator;
+        clear();
+    }
+
+    /**
+     * 解析(可以连续调用, 从上次中断的位置继续)
+     *
+     * @param data 本包数据(readerIndex开始)
+     * @return 首部结束后的位置(data中的下标, 之后为body), 或{@link #NEED_MORE}/{@link #ERROR}
+     */
+    int parse(ByteBuf data) {
+        ByteBuf buf;
+        int dataOffset;  // data.readerIndex()在buf中的位置
+        if (cache == null) {
+            buf = data;
+            dataOffset = data.readerIndex();
+            if (start < 0) {
+                start = data.readerIndex();
+                position = start;
+            }
+        } else {
+            dataOffset = cache.writerIndex();
+            cache.writeBytes(data, data.readerIndex(), data.readableBytes());
+            buf = cache;
+        }
+        int result = run(buf, buf.writerIndex());
+        if (result == ERROR) {
+            reset();
+            return ERROR;
+        }
+        if (result == NEED_MORE) {
+            if (position - start > MAX_HEAD_LENGTH) {
+                reset();
+                return ERROR;
+            }
+            if (cache == null) {  // 第一次不完整 复制到缓存
+                cache = allocator.buffer(Math.max(256, buf.writerIndex() - start));
+                cache.writeBytes(buf, start, buf.writerIndex() - start);
+                shift(-start);
+            }
+            return NEED_MORE;
+        }
+        packet = newPacket(buf, result);
+        int consumed = data.readerIndex() + result - dataOffset;
+        ReferenceCountUtil.safeRelease(cache);  // 首部切片仍持有缓存
+        cache = null;
+        clear();
+        return consumed;
+    }
+
+    /**
+     * 取出解析完成的HTTP包(持有首部切片)
+     *
+     * @return {@link HttpRequest}/{@link HttpResponse}
+     */
+    HttpPacket take() {
+        HttpPacket result = packet;
+        packet = null;
+        return result;
+    }
+
+    /**
+     * 是否正在解析跨包的首部
+     *
+     * @return true 有缓存
+     */
+    boolean isPending() {
+        return cache != null;
+    }
+
+    /**
+     * 缓存的字节数
+     *
+     * @return 字节数
+     */
+    int bufferedBytes() {
+        return cache == null ? 0 : cache.readableBytes();
+    }
+
+    /**
+     * 持有的ByteBuf数量(跨包的首部 + 正在解析的请求/响应)
+     *
+     * @return 数量
+     */
+    int bufferCount() {
+        return (cache == null ? 0 : 1) + (packet == null ? 0 : packet.bufferCount());
+    }
+
+    /**
+     * 放弃正在解析的首部并释放缓存
+     */
+    void reset() {
+        ReferenceCountUtil.safeRelease(cache);
+        cache = null;
+        if (packet != null) {
+            packet.release();
+            packet = null;
+        }
+        clear();
+    }
+
+    private void clear() {
+        state = START_LINE;
+        start = -1;
+        space1 = -1;
+        space2 = -1;
+        question = -1;
+        extraSpace = false;
+        count = 0;
+        fieldLine = false;
+        folded = false;
+        contentLength = -1;
+        chunked = false;
+        contentEncoding = HttpContentDecoder.IDENTITY;
+    }
+
+    /**
+     * 状态机
+     *
+     * @return 首部结束后的位置(buf中的下标)/NEED_MORE/ERROR
+     */
+    private int run(ByteBuf buf, int end) {
+        while (position < end) {
+            int i = position++;
+            byte b = buf.getByte(i);
+            switch (state) {
+                case START_LINE:
+                    if (b == '\r' || b == '\n') {
+                        lineEnd = i;
+                        if (b == '\n') {
+                            if (!checkStartLine(buf)) {
+                                return ERROR;
+                            }
+                            state = LINE_START;
+                        } else {
+                            state = START_LINE_LF;
+                        }
+                    } else if (b == ' ') {
+                        if (space1 == -1) {
+                            space1 = i;
+                        } else if (space2 == -1) {
+                            space2 = i;
+                        } else {
+                            extraSpace = true;
+                        }
+                    } else if (b < 0x20 || b == 0x7F) {
+                        return ERROR;
+                    } else if (space1 == -1 && (i - start >= MAX_TOKEN_LENGTH || !isTokenChar(b))) {
+                        return ERROR;  // 第一个单词不是请求方式/HTTP版本
+                    } else if (b == '?' && space2 == -1 && space1 != -1 && question == -1) {
+                        question = i;
+                    }
+                    break;
+                case START_LINE_LF:
+                    if (b != '\n' || !checkStartLine(buf)) {
+                        return ERROR;
+                    }
+                    state = LINE_START;
+                    break;
+                case LINE_START:
+                    if (b == '\r') {
+                        state = HEAD_LF;
+                    } else if (b == '\n') {
+                        return position;
+                    } else if ((b == ' ' || b == '\t') && fieldLine) {
+                        count--;  // 续行 继续上一个首部值
+                        nameStart = fields[count * 4];
+                        colon = fields[count * 4 + 1];
+                        valueStart = fields[count * 4 + 2];
+                        valueEnd = fields[count * 4 + 3];
+                        folded = true;
+                        state = VALUE;
+                    } else if (b < 0x20 && b != '\t') {
+                        return ERROR;
+                    } else {
+                        nameStart = i;
+                        colon = -1;
+                        state = NAME;
+                    }
+                    break;
+                case NAME:
+                    if (b == ':') {
+                        colon = i;
+                        state = VALUE_SPACE;
+                    } else if (b == '\r') {
+                        fieldLine = false;
+                        state = LINE_LF;  // 没有冒号的行 忽略
+                    } else if (b == '\n') {
+                        fieldLine = false;
+                        state = LINE_START;
+                    } else if (b < 0x20 && b != '\t') {
+                        return ERROR;
+                    }
+                    break;
+                case VALUE_SPACE:
+                    if (b == ' ' || b == '\t') {
+                        break;
+                    }
+                    valueStart = i;
+                    valueEnd = i;
+                    state = VALUE;
+                    position = i;  // 不是空白 回退一个字节按首部值重新处理
+                    break;
+                case VALUE:
+                    if (b == '\r' || b == '\n') {
+                        addField(buf);
+                        state = b == '\r' ? LINE_LF : LINE_START;
+                    } else if (b < 0x20 && b != '\t') {
+                        return ERROR;
+                    } else if (b != ' ' && b != '\t') {
+                        valueEnd = i + 1;
+                    }
+                    break;
+                case LINE_LF:
+                    if (b != '\n') {
+                        return ERROR;
+                    }
+                    state = LINE_START;
+                    break;
+                case HEAD_LF:
+                    if (b != '\n') {
+                        return ERROR;
+                    }
+                    return position;
+                default:
+                    return ERROR;
+            }
+        }
+        return NEED_MORE;
+    }
+
+    /**
+     * 检查状态行<br>
+     * 请求 POST /req/test?name=%E5%90%8D%E7%A7%B0&id=1,2,3&type=a&type=b HTTP/1.1<br>
+     * 响应 HTTP/1.1 200
+     */
+    private boolean checkStartLine(ByteBuf buf) {
+        if (space1 == -1) {
+            return false;
+        }
+        if (isRequest(buf)) {
+            return true;
+        }
+        return isVersion(buf, start, space1)
+                && HttpBytes.parseLong(buf, space1 + 1, space2 == -1 ? lineEnd : space2) >= 0;
+    }
+
+    private boolean isRequest(ByteBuf buf) {
+        return space2 != -1 && !extraSpace && space1 > start && space2 > space1 + 1
+                && isVersion(buf, space2 + 1, lineEnd);
+    }
+
+    /**
+     * HTTP/1.1 或 HTTP/1.0
+     */
+    private static boolean isVersion(ByteBuf buf, int from, int to) {
+        return HttpBytes.equalsIgnoreCase(buf, from, to, HTTP_1_1) || HttpBytes.equalsIgnoreCase(buf, from, to, HTTP_1_0);
+    }
+
+    private void addField(ByteBuf buf) {
+        if (count * 4 == fields.length) {
+            fields = Arrays.copyOf(fields, fields.length * 2);
+        }
+        fields[count * 4] = nameStart;
+        fields[count * 4 + 1] = colon;
+        fields[count * 4 + 2] = valueStart;
+        fields[count * 4 + 3] = valueEnd;
+        count++;
+        fieldLine = true;
+        if (contentLength < 0 && HttpBytes.equalsIgnoreCase(buf, nameStart, colon, CONTENT_LENGTH)) {
+            contentLength = HttpBytes.parseLong(buf, valueStart, valueEnd);
+        } else if (HttpBytes.equalsIgnoreCase(buf, nameStart, colon, TRANSFER_ENCODING)
+                && HttpBytes.containsIgnoreCase(buf, valueStart, valueEnd, CHUNKED)) {
+            chunked = true;
+        } else if (HttpBytes.equalsIgnoreCase(buf, nameStart, colon, CONTENT_ENCODING)) {
+            if (HttpBytes.equalsIgnoreCase(buf, valueStart, valueEnd, "gzip") || HttpBytes.equalsIgnoreCase(buf, valueStart, valueEnd, "x-gzip")) {
+                contentEncoding = HttpContentDecoder.GZIP;
+            } else if (HttpBytes.equalsIgnoreCase(buf, valueStart, valueEnd, "deflate")) {
+                contentEncoding = HttpContentDecoder.DEFLATE;
+            }
+        }
+    }
+
+    /**
+     * 创建HTTP包, 下标转为相对首部切片
+     *
+     * @param buf     数据
+     * @param headEnd 首部结束后的位置
+     * @return 请求/响应
+     */
+    private HttpPacket newPacket(ByteBuf buf, int headEnd) {
+        HttpPacket httpPacket;
+        if (isRequest(buf)) {
+            HttpRequest httpRequest = new HttpRequest();
+            httpRequest.methodEnd = space1 - start;
+            httpRequest.pathStart = space1 + 1 - start;
+            httpRequest.pathEnd = (question == -1 ? space2 : question) - start;
+            httpRequest.queryEnd = space2 - start;  // 有问号 => 有参数(queryEnd > pathEnd)
+            httpRequest.headMethod = HttpBytes.equalsIgnoreCase(buf, start, space1, "head");
+            httpPacket = httpRequest;
+        } else {
+            HttpResponse httpResponse = new HttpResponse();
+            int status = (int) HttpBytes.parseLong(buf, space1 + 1, space2 == -1 ? lineEnd : space2);
+            httpResponse.setResCode(status);
+            // HTTP/1.0 没有长度的响应: body到连接结束(1xx/204/304没有body)
+            httpResponse.closeDelimited = contentLength < 0 && !chunked && HttpBytes.equalsIgnoreCase(buf, start, space1, HTTP_1_0)
+                    && status >= 200 && status != 204 && status != 304;
+            httpPacket = httpResponse;
+        }
+        int[] headerFields = Arrays.copyOf(fields, count * 4);
+        for (int i = 0; i < headerFields.length; i++) {
+            headerFields[i] -= start;
+        }
+        httpPacket.head = buf.retainedSlice(start, headEnd - start);
+        httpPacket.headerFields = headerFields;
+        httpPacket.headerCount = count;
+        httpPacket.folded = folded;
+        httpPacket.setContentLength(contentLength);
+        httpPacket.setChunked(chunked);
+        httpPacket.contentEncoding = contentEncoding;
+        return httpPacket;
+    }
+
+    /**
+     * 所有下标平移(首部复制到缓存时)
+     */
+    private void shift(int offset) {
+        start += offset;
+        position += offset;
+        if (space1 != -1) {
+            space1 += offset;
+        }
+        if (space2 != -1) {
+            space2 += offset;
+        }
+        if (question != -1) {
+            question += offset;
+        }
+        lineEnd += offset;
+        nameStart += offset;
+        colon += offset;
+        valueStart += offset;
+        valueEnd += offset;
+        for (int i = 0; i < count * 4; i++) {
+            fields[i] += offset;
+        }
+    }
+
+    /**
+     * 请求方式/HTTP版本允许的字符
+     */
+    private static boolean isTokenChar(byte b) {
+        return b >= 'A' && b <= 'Z' || b >= 'a' && b <= 'z' || b >= '0' && b <= '9'
+                || b == '-' || b == '_' || b == '.' || b == '/' || b == '!' || b == '#' || b == '$' || b == '%'
+                || b == '&' || b == '\'' || b == '*' || b == '+' || b == '^' || b == '`' || b == '|' || b == '~';
+    }
+}
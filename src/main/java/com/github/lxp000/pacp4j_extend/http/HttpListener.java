@@ -0,0 +1,50 @@
+package com.github.lxp000.pacp4j_extend.http;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * HTTP流式监听<br>
+ * 通过{@link HttpDecoder#addListener(HttpListener)}注册, 在解码线程中依次回调:<br>
+ * 1. {@link #onHead(HttpPacket)} 状态行和首部行解析完成(响应已找到请求)<br>
+ * 2. {@link #onBodyChunk(HttpPacket, ByteBuf)} 每段body数据到达时(0到多次)<br>
+ * 3. {@link #onComplete(HttpPacket)} 请求/响应完整<br>
+ * 4. {@link #onExchange(HttpRequest, HttpResponse)} 响应完整时与配对的请求一起(在响应的onComplete之后)<br>
+ * 大body只需要流式处理时, 设置{@link HttpDecoderConfig#setMaxBodyCapture(long)}为0, 解码器不保存body<br>
+ * 未完整就被删除(超时/连接中断/丢包)的请求/响应不会回调{@link #onComplete(HttpPacket)}
+ */
+public interface HttpListener {
+    /**
+     * 首部解析完成
+     *
+     * @param packet 请求/响应(还没有body)
+     */
+    default void onHead(HttpPacket packet) {
+    }
+
+    /**
+     * body片段到达(chunked时为去掉长度行的数据)
+     *
+     * @param packet 请求/响应
+     * @param chunk  body片段, 只在回调中有效, 需要保存时自行复制
+     */
+    default void onBodyChunk(HttpPacket packet, ByteBuf chunk) {
+    }
+
+    /**
+     * 请求/响应完整(与{@link HttpDecoder#decode(org.pcap4j.packet.Packet)}返回的是同一个对象)
+     *
+     * @param packet 请求/响应
+     */
+    default void onComplete(HttpPacket packet) {
+    }
+
+    /**
+     * 一组请求/响应完整(响应不持有请求, 需要整个请求时在此处理)<br>
+     * 视图模式下请求可能已被使用方释放, 只能访问已解析过的字段(可以在请求的{@link #onComplete(HttpPacket)}中访问需要的字段)
+     *
+     * @param request  配对的请求
+     * @param response 完整的响应
+     */
+    default void onExchange(HttpRequest request, HttpResponse response) {
+    }
+}
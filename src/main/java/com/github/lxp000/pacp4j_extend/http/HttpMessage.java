@@ -1,14 +1,25 @@
 package com.github.lxp000.pacp4j_extend.http;
 
-import lombok.AllArgsConstructor;
+import com.github.lxp000.pacp4j_extend.tcp.FlowKey;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Data
-@AllArgsConstructor
 @NoArgsConstructor
 public class HttpMessage {
     private Long time;
     private HttpRequest httpRequest;
     private HttpResponse httpResponse;
+    private FlowKey flowKey;  // 请求方向的流
+
+    public HttpMessage(Long time, HttpRequest httpRequest, HttpResponse httpResponse, FlowKey flowKey) {
+        this.time = time;
+        this.httpRequest = httpRequest;
+        this.httpResponse = httpResponse;
+        this.flowKey = flowKey;
+    }
+
+    public HttpMessage(Long time, HttpRequest httpRequest, HttpResponse httpResponse) {
+        this(time, httpRequest, httpResponse, null);
+    }
 }
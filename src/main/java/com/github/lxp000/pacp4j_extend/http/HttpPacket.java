@@ -1,21 +1,205 @@
 package com.github.lxp000.pacp4j_extend.http;
 
 import com.github.lxp000.pacp4j_extend.IPacket;
-import lombok.Data;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.util.ReferenceCountUtil;
+import lombok.*;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.regex.Pattern;
 
+/**
+ * HTTP包<br>
+ * 视图模式({@link HttpDecoderConfig#isLazy()})下, 首部行和body保存为抓包数据的切片,
+ * {@link #getHeaders()}/{@link #getBody()}等在第一次访问时才转为字符串, 使用完后需要调用{@link #release()}<br>
+ * 普通模式下解码完成时已全部转为字符串并释放
+ */
 @Data
 public abstract class HttpPacket implements IPacket {
+    private static final Pattern OBS_FOLD = Pattern.compile("[ \t]*\r?\n[ \t]+");  // 首部值的续行
     protected boolean complete;  // 包是否完整
     protected Date packetTime;  // 抓包时间
+    protected long timestamp;  // 抓包时间(纳秒): 首部第一个字节所在的包
     protected Long timeId;  // 请求时间id
     /**
-     * ackNum相同 => 是同一条请求/响应
-     * 请求的ackNum与响应的seqNum相同 => 对应一组
+     * 首部第一个包的ackNum
+     * 同一连接上按请求顺序配对响应, 请求的ackNum不超过响应的seqNum => 可以对应一组
      */
     protected Long ackNum;
     protected Map<String, Object> headers;  // 请求头
     protected String body;  // 请求体
+    protected long contentLength = -1;  // Content-Length(-1 没有)
+    protected boolean chunked;  // Transfer-Encoding: chunked
+    protected long bodyLength;  // body总字节数(包括超出保存上限未保存的部分)
+    protected Map<String, Object> trailers;  // chunked结尾的trailer(没有为null)
+    protected String bodyError;  // body解压失败的原因(超出上限/数据错误, null 正常)
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    ByteBuf head;  // 状态行和首部行(不含最后的\r\n\r\n)
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    int[] headerFields;  // 每个首部行4个下标: name开始, name结束, value开始, value结束
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    int headerCount;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    ByteBuf bodyBuf;  // body(拼接中或完整)
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    HttpChunkedParser chunkedParser;  // chunked解析状态(未完整时)
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    boolean closeDelimited;  // body到连接结束(HTTP/1.0 没有长度的响应), 收到FIN时完整
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    boolean folded;  // 首部值有续行(obs-fold), 转为字符串时换行和缩进替换为一个空格
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    boolean ignored;  // 不符合过滤条件: 只按长度跳过body, 不保存不发送
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    int contentEncoding;  // Content-Encoding(HttpContentDecoder.GZIP/DEFLATE)
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    long decompressLimit = -1;  // 解压后的最大字节数(-1 不解压)
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    byte[] encodedBody;  // 普通模式下未访问过的压缩body
+
+    /**
+     * 抓包时间, 第一次访问时由{@link #getTimestamp()}转换
+     *
+     * @return 毫秒精度的时间
+     */
+    public Date getPacketTime() {
+        if (packetTime == null && timestamp != 0) {
+            packetTime = new Date(Math.floorDiv(timestamp, 1_000_000));
+        }
+        return packetTime;
+    }
+
+    /**
+     * 首部行, 视图模式下第一次访问时解析
+     *
+     * @return 1个key => value为String; 多个key => value为List
+     */
+    public Map<String, Object> getHeaders() {
+        if (headers == null && head != null && headerCount > 0) {
+            Map<String, Object> headers = new HashMap<>();
+            for (int i = 0; i < headerCount; i++) {
+                int field = i * 4;
+                String value = HttpBytes.string(head, headerFields[field + 2], headerFields[field + 3]);
+                if (folded) {
+                    value = OBS_FOLD.matcher(value).replaceAll(" ");
+                }
+                HttpBytes.mapPut(headers, HttpBytes.string(head, headerFields[field], headerFields[field + 1]), value);
+            }
+            this.headers = headers;
+        }
+        return headers;
+    }
+
+    /**
+     * body, 第一次访问时转为字符串<br>
+     * 启用解压({@link HttpDecoderConfig#isDecompress()})时, gzip/deflate的body在此时解压
+     *
+     * @return UTF-8字符串(没有body为null)
+     */
+    public String getBody() {
+        if (body == null && complete) {
+            if (bodyBuf != null) {
+                body = isEncoded() ? HttpContentDecoder.decode(this, bodyBuf) : bodyBuf.toString(StandardCharsets.UTF_8);
+            } else if (encodedBody != null) {
+                body = HttpContentDecoder.decode(this, Unpooled.wrappedBuffer(encodedBody));
+                encodedBody = null;
+            }
+        }
+        return body;
+    }
+
+    /**
+     * 解析所有字段并释放缓存(普通模式解码完成时调用)<br>
+     * 压缩的body复制后保留, 访问{@link #getBody()}时才解压
+     */
+    public void materialize() {
+        getHeaders();
+        if (isEncoded() && body == null && bodyBuf != null) {
+            encodedBody = ByteBufUtil.getBytes(bodyBuf);
+        } else {
+            getBody();
+        }
+        release();
+    }
+
+    private boolean isEncoded() {
+        return contentEncoding != HttpContentDecoder.IDENTITY && decompressLimit >= 0;
+    }
+
+    /**
+     * 释放首部行和body的缓存<br>
+     * 之后只能访问已经解析过的字段
+     */
+    public void release() {
+        ReferenceCountUtil.safeRelease(head);
+        ReferenceCountUtil.safeRelease(bodyBuf);
+        head = null;
+        bodyBuf = null;
+        chunkedParser = null;
+    }
+
+    /**
+     * 持有的ByteBuf数量(首部行 + body)
+     *
+     * @return 数量(已释放为0)
+     */
+    int bufferCount() {
+        return (head == null ? 0 : 1) + (bodyBuf == null || bodyBuf == Unpooled.EMPTY_BUFFER ? 0 : 1);
+    }
+
+    /**
+     * 未完整包缓存的body字节数
+     *
+     * @return 字节数(完整包为0)
+     */
+    long bufferedBytes() {
+        long bytes = 0;
+        if (!complete) {
+            if (bodyBuf != null) {
+                bytes += bodyBuf.readableBytes();
+            }
+            if (chunkedParser != null) {
+                bytes += chunkedParser.bufferedBytes();
+            }
+        }
+        return bytes;
+    }
 }
@@ -1,9 +1,9 @@
 package com.github.lxp000.pacp4j_extend.http;
 
 import com.github.lxp000.pacp4j_extend.IRequest;
-import lombok.Data;
-import lombok.EqualsAndHashCode;
+import lombok.*;
 
+import java.util.HashMap;
 import java.util.Map;
 
 @EqualsAndHashCode(callSuper = true)
@@ -15,4 +15,87 @@ public class HttpRequest extends HttpPacket implements IRequest<HttpRequest, Htt
     protected String path;  // 访问路径
     protected Map<String, Object> parameters;  // 路径参数
     protected String httpMethod;  // 请求方式
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    int methodEnd;  // 请求方式 [0, methodEnd)
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    int pathStart;  // 访问路径 [pathStart, pathEnd)
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    int pathEnd;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    int queryEnd;  // 路径参数 [pathEnd + 1, queryEnd), 没有问号时等于pathEnd
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    boolean headMethod;  // HEAD请求: 响应没有body
+
+    public String getHttpMethod() {
+        if (httpMethod == null && head != null) {
+            httpMethod = HttpBytes.string(head, 0, methodEnd);
+        }
+        return httpMethod;
+    }
+
+    public String getPath() {
+        if (path == null && head != null) {
+            path = HttpBytes.string(head, pathStart, pathEnd);
+        }
+        return path;
+    }
+
+    /**
+     * 路径参数, 视图模式下第一次访问时解析
+     * 请求 POST /req/test?name=%E5%90%8D%E7%A7%B0&id=1,2,3&type=a&type=b HTTP/1.1
+     *
+     * @return 1个key => value为String; 多个key => value为List(没有问号为null)
+     */
+    public Map<String, Object> getParameters() {
+        if (parameters == null && head != null && queryEnd > pathEnd) {
+            Map<String, Object> parameters = new HashMap<>();
+            int start = pathEnd + 1;
+            while (start <= queryEnd) {
+                int end = HttpBytes.indexOf(head, start, queryEnd, (byte) '&');
+                if (end == -1) {
+                    end = queryEnd;
+                }
+                int eq = HttpBytes.indexOf(head, start, end, (byte) '=');
+                if (eq != -1) {
+                    String key = HttpBytes.urlDecode(HttpBytes.string(head, start, eq));
+                    int valueStart = eq + 1;
+                    while (valueStart <= end) {
+                        int valueEnd = HttpBytes.indexOf(head, valueStart, end, (byte) ',');
+                        if (valueEnd == -1) {
+                            valueEnd = end;
+                        }
+                        HttpBytes.mapPut(parameters, key, HttpBytes.urlDecode(HttpBytes.string(head, valueStart, valueEnd)));
+                        valueStart = valueEnd + 1;
+                    }
+                }
+                start = end + 1;
+            }
+            this.parameters = parameters;
+        }
+        return parameters;
+    }
+
+    @Override
+    public void materialize() {
+        getHttpMethod();
+        getPath();
+        getParameters();
+        super.materialize();
+    }
 }
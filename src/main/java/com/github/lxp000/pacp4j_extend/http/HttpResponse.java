@@ -1,12 +1,26 @@
 package com.github.lxp000.pacp4j_extend.http;
 
 import com.github.lxp000.pacp4j_extend.IResponse;
-import lombok.Data;
-import lombok.EqualsAndHashCode;
+import lombok.*;
 
 @EqualsAndHashCode(callSuper = true)
 @Data
 public class HttpResponse extends HttpPacket implements IResponse<HttpRequest, HttpResponse> {
     protected Long seqNum;  // 和请求ackNum对应同一组
     protected Integer resCode;  // 响应码
+    protected String srcHost;  // 响应地址(请求的目标地址)
+    protected Integer port;  // 端口
+    /**
+     * 配对的请求的请求方式/路径/抓包时间(纳秒), 发送时从请求复制, 响应不持有请求<br>
+     * 视图模式下请求在响应之前已被使用方释放且未访问过时为null
+     */
+    protected String requestMethod;
+    protected String requestPath;
+    protected long requestTimestamp;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    HttpRequest request;  // 配对的请求(解码中), 发送后清除
 }
@@ -0,0 +1,611 @@
+package com.github.lxp000.pacp4j_extend.http;
+
+import com.github.lxp000.pacp4j_extend.metrics.DecoderMetrics;
+import com.github.lxp000.pacp4j_extend.tcp.FlowKey;
+import com.github.lxp000.pacp4j_extend.tcp.TcpReassembler;
+import com.github.lxp000.pacp4j_extend.tcp.TcpSegment;
+import com.github.lxp000.pacp4j_extend.util.TimerWheel;
+import io.netty.buffer.ByteBufAllocator;
+
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * HTTP会话表<br>
+ * 以流(4元组+方向)为key保存{@link HttpFlow}, 后续数据和请求/响应配对都是O(1)查找:<br>
+ * 1. 后续数据: 本方向的流 -> 未完整的请求/响应<br>
+ * 2. 响应配对: 反方向的流 -> 等待响应的请求队列(FIFO, 通过seqNum/ackNum校验)<br>
+ * 流保留到FIN/RST(用于重组时判断重传), 每个流在{@link TimerWheel}中计时, 超过超时时间没有新包时删除;
+ * 流持有未完整包/跨包首部/乱序数据的ByteBuf, 在完整(交给使用方)或删除流(FIN/RST/超时/超出缓存上限/{@link #clear()})时释放;
+ * 缓存超出{@link HttpDecoderConfig#getMaxBufferedBytes()}时从最早开始缓存的流开始删除;
+ * 设置了{@link HttpDecoderConfig#getAdmission()}时新连接先经过准入控制({@link #admit(FlowKey, TcpSegment)})<br>
+ * 通过分配器解码时({@link #use(HttpConnection)}), 流保存在分配器的连接中, 不进入流表和时间轮
+ */
+class HttpSessionTable {
+    private static final int WHEEL_SIZE = 512;
+    static final int ADMIT = 0;
+    static final int HEAD_ONLY = 1;  // 接受, 只保存首部
+    static final int REFUSE_CAPACITY = 2;
+    static final int REFUSE_HOST = 3;
+    static final int REFUSE_SAMPLED = 4;
+    private final long timeout;  // ms
+    private final long maxBufferedBytes;
+    private final int maxReorderBytes;
+    private final DecoderMetrics metrics;
+    private final AdmissionConfig admission;
+    /**
+     * 准入控制计数的连接数量(每个客户端地址, 键为{@link #clientHost(FlowKey, TcpSegment)}), 值为单元素数组 避免装箱
+     */
+    private final Map<FlowKey, int[]> hostSessions = new HashMap<>();
+    private int sessionCount;
+    private final Map<FlowKey, HttpFlow> flows = new HashMap<>();
+    private final Set<HttpFlow> connectionFlows = new HashSet<>();  // 保存在分配器连接中的流
+    private HttpConnection connection;  // 当前包所属的分配器连接(null 使用流表)
+    private final TimerWheel<HttpFlow> wheel;
+    /**
+     * 有缓存的流(按开始缓存的顺序)
+     */
+    private final LinkedHashSet<HttpFlow> buffering = new LinkedHashSet<>();
+    private long bufferedBytes;
+    private int exchangeCount;
+
+    HttpSessionTable(HttpDecoderConfig config) {
+        this.timeout = config.getTimeout();
+        this.maxBufferedBytes = config.getMaxBufferedBytes();
+        this.maxReorderBytes = config.getMaxReorderBytes();
+        this.metrics = config.getMetrics();
+        this.admission = config.getAdmission();
+        // 时间轮转一圈约为2倍超时时间, 每个流到期前最多被检查一次
+        this.wheel = new TimerWheel<>(Math.max(1, timeout / (WHEEL_SIZE / 2)), WHEEL_SIZE);
+    }
+
+    /**
+     * 之后的查找和创建使用分配器的连接(解码一个报文段期间)
+     *
+     * @param connection 分配器的连接, null 使用流表
+     */
+    void use(HttpConnection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * 查找流
+     *
+     * @param key 流标识
+     * @return null 没有缓存
+     */
+    HttpFlow get(FlowKey key) {
+        return connection != null ? connection.get(key) : flows.get(key);
+    }
+
+    /**
+     * 查找反方向的流
+     *
+     * @param key 本方向的流标识
+     * @return null 没有缓存
+     */
+    private HttpFlow reverse(FlowKey key) {
+        return connection != null ? connection.reverse(key) : flows.get(key.reverse());
+    }
+
+    private HttpFlow reverse(HttpFlow flow) {
+        return flow.getConnection() != null ? flow.getConnection().reverse(flow.getKey()) : flows.get(flow.getKey().reverse());
+    }
+
+    /**
+     * 查找或创建流, 并重新计时
+     *
+     * @param key  流标识
+     * @param time 当前时间
+     * @return 流
+     */
+    HttpFlow open(FlowKey key, long time) {
+        if (connection != null) {  // 超时由分配器的连接表管理
+            HttpFlow flow = connection.get(key);
+            if (flow == null) {
+                flow = new HttpFlow(key, new TcpReassembler(ByteBufAllocator.DEFAULT, maxReorderBytes));
+                flow.setConnection(connection);
+                connection.set(flow);
+                connectionFlows.add(flow);
+            }
+            return flow;
+        }
+        HttpFlow flow = flows.get(key);
+        if (flow == null) {
+            flow = new HttpFlow(key, new TcpReassembler(ByteBufAllocator.DEFAULT, maxReorderBytes));
+            flow.setTimeout(wheel.schedule(flow, time + timeout));
+            flows.put(key, flow);
+        } else {
+            wheel.reschedule(flow.getTimeout(), time + timeout);
+        }
+        return flow;
+    }
+
+    /**
+     * 新连接的准入判断(本方向没有流时调用), 只判断不创建流<br>
+     * 反方向已有流时沿用连接的结果(接受/降级/拒绝); 拒绝的连接由{@link #refuse(FlowKey, long, int)}记住, 直到FIN/RST/超时
+     *
+     * @param key     流标识
+     * @param segment 本包(判断客户端)
+     * @return {@link #ADMIT}/{@link #HEAD_ONLY}/REFUSE_*
+     */
+    int admit(FlowKey key, TcpSegment segment) {
+        if (admission == null) {
+            return ADMIT;
+        }
+        HttpFlow reverse = reverse(key);
+        if (reverse != null) {
+            return reverse.getRefusal() != 0 ? reverse.getRefusal() : reverse.isHeadOnly() ? HEAD_ONLY : ADMIT;
+        }
+        int max = admission.getMaxSessions();
+        if (sessionCount >= max) {
+            return REFUSE_CAPACITY;
+        }
+        int[] count = hostSessions.get(clientHost(key, segment));
+        if (count != null && count[0] >= admission.getMaxSessionsPerHost()) {
+            return REFUSE_HOST;
+        }
+        double load = (double) sessionCount / max;
+        double sampleThreshold = admission.getSampleThreshold();
+        if (load >= sampleThreshold) {
+            // 接受的比例从1线性降到0, 按连接哈希(与方向无关)选择, 同一连接的结果不变
+            double rate = sampleThreshold >= 1 ? 0 : (1 - load) / (1 - sampleThreshold);
+            return (key.flowHash() >>> 16) < rate * 65536 ? HEAD_ONLY : REFUSE_SAMPLED;
+        }
+        return load >= admission.getHeadOnlyThreshold() ? HEAD_ONLY : ADMIT;
+    }
+
+    /**
+     * 客户端地址(按地址限制连接数量): SYN的发送方, 没有SYN(中途抓包)时端口较大的一端
+     *
+     * @param key     流标识
+     * @param segment 本包
+     * @return 只有地址的标识
+     */
+    static FlowKey clientHost(FlowKey key, TcpSegment segment) {
+        boolean fromClient;
+        if (segment.hasFlag(TcpSegment.SYN)) {
+            fromClient = !segment.hasFlag(TcpSegment.ACK);
+        } else {
+            fromClient = key.getSrcPort() >= key.getDstPort();  // 服务端通常为较小的固定端口
+        }
+        return fromClient ? key.source() : key.destination();
+    }
+
+    /**
+     * 准入的新连接已创建流, 记录结果并计数(连接只在第一个方向的流上计数一次)
+     *
+     * @param flow     新创建的流
+     * @param decision {@link #admit(FlowKey, TcpSegment)}的结果
+     * @param segment  本包(判断客户端)
+     */
+    void admitted(HttpFlow flow, int decision, TcpSegment segment) {
+        if (admission == null || flow.isCounted()) {
+            return;
+        }
+        flow.setHeadOnly(decision == HEAD_ONLY);
+        if (reverse(flow) != null) {
+            return;
+        }
+        flow.setCounted(true);
+        flow.setHost(clientHost(flow.getKey(), segment));
+        sessionCount++;
+        hostSessions.computeIfAbsent(flow.getHost(), k -> new int[1])[0]++;
+        if (metrics != null) {
+            metrics.admission(flow.isHeadOnly());
+        }
+    }
+
+    /**
+     * 标记流为忽略(不符合过滤条件), 之后的包直接跳过, 直到FIN/RST/超时
+     *
+     * @param key  流标识
+     * @param time 当前时间
+     * @return 流
+     */
+    HttpFlow ignore(FlowKey key, long time) {
+        HttpFlow flow = open(key, time);
+        flow.setIgnored(true);
+        return flow;
+    }
+
+    /**
+     * 记住拒绝的连接(本方向), 之后的包直接跳过, 直到FIN/RST/超时; 不持有缓存, 不计入准入的连接数量<br>
+     * 避免连接中途负载下降时被接受(只能解码到不完整的请求/响应)
+     *
+     * @param key     流标识
+     * @param time    当前时间
+     * @param refusal 拒绝的原因(REFUSE_*)
+     * @return 流
+     */
+    HttpFlow refuse(FlowKey key, long time, int refusal) {
+        HttpFlow flow = open(key, time);
+        flow.setRefusal(refusal);
+        return flow;
+    }
+
+    /**
+     * 缓存起始请求(无论是否完整)
+     *
+     * @param key     请求方向的流
+     * @param request 请求
+     * @param time    缓存时间
+     * @return 请求所在的一组
+     */
+    HttpMessage addRequest(FlowKey key, HttpRequest request, long time) {
+        HttpFlow flow = open(key, time);
+        expireExchanges(flow, time);
+        HttpMessage message = new HttpMessage(time, request, null, key);
+        flow.getExchanges().addLast(message);
+        exchangeCount++;
+        if (!request.isComplete()) {
+            flow.setPending(message);
+        }
+        return message;
+    }
+
+    /**
+     * 通过响应找到请求(取出等待响应的第一个请求)<br>
+     * 请求的ackNum是发送请求时已收到的响应位置:<br>
+     * 1. 下一个请求的ackNum比第一个大且不超过本响应的seqNum => 第一个请求的响应已经过去(没有抓到), 跳过<br>
+     * 2. 第一个请求的ackNum超过本响应的seqNum => 本响应在请求之前(请求没有抓到), 没有对应的请求
+     *
+     * @param key    响应方向的流
+     * @param seqNum 响应的seqNum
+     * @param time   当前时间
+     * @return null 没有对应的请求
+     */
+    HttpMessage pollRequest(FlowKey key, long seqNum, long time) {
+        HttpFlow flow = reverse(key);
+        if (flow == null) {
+            return null;
+        }
+        expireExchanges(flow, time);
+        Deque<HttpMessage> exchanges = flow.getExchanges();
+        while (exchanges.size() > 1) {
+            Iterator<HttpMessage> iterator = exchanges.iterator();
+            long ackNum = iterator.next().getHttpRequest().getAckNum();
+            long nextAckNum = iterator.next().getHttpRequest().getAckNum();
+            if ((int) (nextAckNum - ackNum) <= 0 || (int) (seqNum - nextAckNum) < 0) {
+                break;
+            }
+            exchanges.pollFirst();
+            exchangeCount--;
+        }
+        HttpMessage message = exchanges.peekFirst();
+        if (message == null || (int) (seqNum - message.getHttpRequest().getAckNum()) < 0) {
+            return null;
+        }
+        exchanges.pollFirst();
+        exchangeCount--;
+        return message;
+    }
+
+    /**
+     * 缓存未完整的起始响应
+     *
+     * @param key     响应方向的流
+     * @param message 响应所在的一组
+     * @param time    当前时间
+     */
+    void addPendingResponse(FlowKey key, HttpMessage message, long time) {
+        open(key, time).setPending(message);
+    }
+
+    /**
+     * 后续包拼接完整
+     *
+     * @param flow 本方向的流
+     */
+    void complete(HttpFlow flow) {
+        flow.setPending(null);
+        updateBuffered(flow);
+    }
+
+    /**
+     * 跨包的首部解析结束, 从流中移除解析器
+     *
+     * @param flow 本方向的流
+     */
+    void detachParser(HttpFlow flow) {
+        flow.setParser(null);
+        updateBuffered(flow);
+    }
+
+    /**
+     * 丢弃流中未完整的请求/响应和跨包的首部(数据有缺口 无法继续拼接)
+     *
+     * @param flow 本方向的流
+     */
+    void discardPartial(HttpFlow flow) {
+        if (flow.getPending() != null) {
+            flow.getPendingPacket().release();  // 请求仍在队列中等待响应(保持配对顺序)
+            flow.setPending(null);
+        }
+        if (flow.getParser() != null) {
+            flow.getParser().reset();
+            flow.setParser(null);
+        }
+        updateBuffered(flow);
+    }
+
+    /**
+     * 本方向收到FIN(之前的数据都已收到)<br>
+     * 本方向未完整的请求/响应不会再完整, 反方向等待本方向响应的请求也不会再有响应;
+     * 两个方向都结束或没有等待响应的请求时立即删除流
+     *
+     * @param flow 本方向的流
+     */
+    void finish(HttpFlow flow) {
+        if (flow.isFinished()) {
+            return;
+        }
+        flow.setFinished(true);
+        discardPartial(flow);
+        flow.getReassembler().reset();
+        HttpFlow reverse = reverse(flow);
+        if (reverse != null) {
+            exchangeCount -= reverse.getExchanges().size();
+            reverse.getExchanges().clear();
+        }
+        if (flow.getExchanges().isEmpty() || reverse != null && reverse.isFinished()) {
+            close(flow);
+        }
+        if (reverse != null && reverse.isFinished()) {
+            close(reverse);
+        }
+    }
+
+    /**
+     * 连接中断(RST), 删除两个方向的流
+     *
+     * @param key 任一方向的流标识
+     */
+    void reset(FlowKey key) {
+        HttpFlow flow = get(key);
+        if (flow != null) {
+            close(flow);
+        }
+        flow = reverse(key);
+        if (flow != null) {
+            close(flow);
+        }
+    }
+
+    /**
+     * 重新统计流缓存的字节数(未完整包的body + 跨包的首部 + 乱序数据), 超出上限时从最早开始缓存的流开始删除
+     *
+     * @param flow 流
+     */
+    void updateBuffered(HttpFlow flow) {
+        if (flow.isClosed()) {
+            return;
+        }
+        long bytes = 0;
+        HttpPacket packet = flow.getPendingPacket();
+        if (packet != null) {
+            bytes += packet.bufferedBytes();
+        }
+        if (flow.getParser() != null) {
+            bytes += flow.getParser().bufferedBytes();
+        }
+        bytes += flow.getReassembler().bufferedBytes();
+        bufferedBytes += bytes - flow.getBufferedBytes();
+        flow.setBufferedBytes(bytes);
+        if (bytes > 0) {
+            buffering.add(flow);
+        } else {
+            buffering.remove(flow);
+        }
+        Iterator<HttpFlow> iterator = buffering.iterator();
+        while (bufferedBytes > maxBufferedBytes && iterator.hasNext()) {
+            HttpFlow oldest = iterator.next();
+            iterator.remove();
+            close(oldest);
+            if (metrics != null) {
+                metrics.eviction();
+            }
+        }
+    }
+
+    /**
+     * 删除一组请求/响应的缓存<br>
+     * 请求已由{@link #pollRequest(FlowKey, long, long)}从等待响应的队列中取出, 这里只清除未完整包的缓存
+     *
+     * @param message 一组请求/响应
+     */
+    void remove(HttpMessage message) {
+        FlowKey key = message.getFlowKey();
+        HttpFlow requestFlow = get(key);
+        if (requestFlow != null) {
+            if (requestFlow.getPending() == message) {  // 响应在请求完整之前结束 请求不会再发送, 只保留已收到的部分
+                message.getHttpRequest().materialize();
+                requestFlow.setPending(null);
+                updateBuffered(requestFlow);
+            }
+        }
+        HttpFlow responseFlow = reverse(key);
+        if (responseFlow != null && responseFlow.getPending() == message) {
+            responseFlow.setPending(null);
+            updateBuffered(responseFlow);
+        }
+    }
+
+    /**
+     * 删除超时的流<br>
+     * 只检查时间轮中经过的槽, 没有新包时也可以调用以回收空闲的缓存
+     *
+     * @param time 当前时间
+     */
+    void expire(long time) {
+        wheel.advance(time, this::expireFlow);
+    }
+
+    private void expireFlow(HttpFlow flow) {
+        close(flow);
+        if (metrics != null) {
+            metrics.expiration();
+        }
+    }
+
+    /**
+     * 删除流及其所有缓存, 并释放未完整包的ByteBuf
+     *
+     * @param flow 流
+     */
+    void close(HttpFlow flow) {
+        if (flow.isClosed()) {
+            return;
+        }
+        flow.setClosed(true);
+        if (flow.getConnection() != null) {
+            flow.getConnection().remove(flow);
+            connectionFlows.remove(flow);
+        } else {
+            flows.remove(flow.getKey());
+            wheel.cancel(flow.getTimeout());
+        }
+        buffering.remove(flow);
+        bufferedBytes -= flow.getBufferedBytes();
+        flow.setBufferedBytes(0);
+        HttpPacket packet = flow.getPendingPacket();
+        if (packet != null) {
+            packet.release();
+            flow.setPending(null);
+        }
+        if (flow.getParser() != null) {
+            flow.getParser().reset();
+            flow.setParser(null);
+        }
+        flow.getReassembler().reset();
+        exchangeCount -= flow.getExchanges().size();
+        flow.getExchanges().clear();
+        if (flow.isCounted()) {
+            flow.setCounted(false);
+            sessionCount--;
+            FlowKey host = flow.getHost();
+            int[] count = hostSessions.get(host);
+            if (count != null && --count[0] == 0) {
+                hostSessions.remove(host);
+            }
+        }
+    }
+
+    /**
+     * 删除分配器连接中的两个方向的流
+     *
+     * @param connection 分配器的连接
+     */
+    void close(HttpConnection connection) {
+        if (connection.client != null) {
+            close(connection.client);
+        }
+        if (connection.server != null) {
+            close(connection.server);
+        }
+    }
+
+    /**
+     * 删除所有流(包括分配器连接中的流), 释放所有缓存
+     */
+    void clear() {
+        for (HttpFlow flow : new ArrayList<>(flows.values())) {
+            close(flow);
+        }
+        for (HttpFlow flow : new ArrayList<>(connectionFlows)) {
+            close(flow);
+        }
+    }
+
+    /**
+     * 等待响应的请求数量
+     *
+     * @return 数量
+     */
+    int size() {
+        return exchangeCount;
+    }
+
+    /**
+     * 流数量
+     *
+     * @return 数量
+     */
+    int flowCount() {
+        return flows.size() + connectionFlows.size();
+    }
+
+    /**
+     * 流持有的ByteBuf数量
+     *
+     * @return 数量
+     */
+    int bufferCount() {
+        return bufferCount(flows.values()) + bufferCount(connectionFlows);
+    }
+
+    private static int bufferCount(Iterable<HttpFlow> flows) {
+        int count = 0;
+        for (HttpFlow flow : flows) {
+            HttpPacket packet = flow.getPendingPacket();
+            if (packet != null) {
+                count += packet.bufferCount();
+            }
+            if (flow.getParser() != null) {
+                count += flow.getParser().bufferCount();
+            }
+            count += flow.getReassembler().bufferCount();
+        }
+        return count;
+    }
+
+    /**
+     * 有流的连接
+     *
+     * @return 与方向无关的流标识({@link FlowKey#canonical()})
+     */
+    Set<FlowKey> connections() {
+        Set<FlowKey> connections = new HashSet<>();
+        for (FlowKey key : flows.keySet()) {
+            connections.add(key.canonical());
+        }
+        for (HttpFlow flow : connectionFlows) {
+            connections.add(flow.getKey().canonical());
+        }
+        return connections;
+    }
+
+    /**
+     * 准入控制计数的连接数量
+     *
+     * @return 数量
+     */
+    int sessionCount() {
+        return sessionCount;
+    }
+
+    long getBufferedBytes() {
+        return bufferedBytes;
+    }
+
+    /**
+     * 删除流中超时未响应的请求(按请求顺序 只检查最早的)
+     */
+    private void expireExchanges(HttpFlow flow, long time) {
+        Iterator<HttpMessage> iterator = flow.getExchanges().iterator();
+        while (iterator.hasNext()) {
+            HttpMessage message = iterator.next();
+            if (time - message.getTime() < timeout || flow.getPending() == message) {
+                break;
+            }
+            iterator.remove();
+            exchangeCount--;
+        }
+    }
+}
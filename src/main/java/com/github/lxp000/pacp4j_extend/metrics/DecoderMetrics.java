@@ -0,0 +1,279 @@
+package com.github.lxp000.pacp4j_extend.metrics;
+
+import lombok.Data;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 解码统计<br>
+ * 通过{@link com.github.lxp000.pacp4j_extend.http.HttpDecoderConfig#setMetrics(DecoderMetrics)}启用(默认不统计, 解码器中只多一次null判断),
+ * 多个解码器(如{@link com.github.lxp000.pacp4j_extend.pipeline.ShardedDecoder}的每个线程)可以共用一个实例, 结果为所有解码器的合计<br>
+ * 计数器为{@link LongAdder}(按线程分散累加), 解码线程之间不竞争同一个变量;
+ * 缓存的数量由各解码器每次解码后按变化量累加<br>
+ * 读取: {@link #snapshot()} 或注册到JMX({@link #register(String)})
+ */
+public final class DecoderMetrics implements DecoderMetricsMXBean {
+    private static final DropReason[] REASONS = DropReason.values();
+
+    private final LongAdder packets = new LongAdder();
+    private final LongAdder emptySegments = new LongAdder();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder responses = new LongAdder();
+    private final LongAdder[] drops = new LongAdder[REASONS.length];
+    private final LongAdder pendingRequests = new LongAdder();
+    private final LongAdder bufferedBytes = new LongAdder();
+    private final LongAdder flows = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder admittedSessions = new LongAdder();
+    private final LongAdder headOnlySessions = new LongAdder();
+    private final LatencyHistogram decodeLatency = new LatencyHistogram();
+
+    public DecoderMetrics() {
+        for (int i = 0; i < drops.length; i++) {
+            drops[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * 收到一个包
+     *
+     * @param nanos 解码耗时(ns)
+     */
+    public void packet(long nanos) {
+        packets.increment();
+        decodeLatency.record(nanos);
+    }
+
+    /**
+     * 收到一个没有数据的报文段(ACK/SYN/FIN等控制包, 不是丢弃)
+     */
+    public void emptySegment() {
+        emptySegments.increment();
+    }
+
+    public void request() {
+        requests.increment();
+    }
+
+    public void response() {
+        responses.increment();
+    }
+
+    public void drop(DropReason reason) {
+        drops[reason.ordinal()].increment();
+    }
+
+    public void eviction() {
+        evictions.increment();
+    }
+
+    public void expiration() {
+        expirations.increment();
+    }
+
+    /**
+     * 接受一个新连接
+     *
+     * @param headOnly 降级为只保存首部(不保存body)
+     */
+    public void admission(boolean headOnly) {
+        admittedSessions.increment();
+        if (headOnly) {
+            headOnlySessions.increment();
+        }
+    }
+
+    /**
+     * 解码器的缓存变化量
+     *
+     * @param pendingRequests 等待响应的请求数量
+     * @param bufferedBytes   缓存的字节数
+     * @param flows           流数量
+     */
+    public void gauges(long pendingRequests, long bufferedBytes, long flows) {
+        if (pendingRequests != 0) {
+            this.pendingRequests.add(pendingRequests);
+        }
+        if (bufferedBytes != 0) {
+            this.bufferedBytes.add(bufferedBytes);
+        }
+        if (flows != 0) {
+            this.flows.add(flows);
+        }
+    }
+
+    public long getDrops(DropReason reason) {
+        return drops[reason.ordinal()].sum();
+    }
+
+    public LatencyHistogram getDecodeLatency() {
+        return decodeLatency;
+    }
+
+    /**
+     * 当前的统计结果(各项分别读取, 解码同时进行时各项之间不保证一致)
+     *
+     * @return 快照
+     */
+    public Snapshot snapshot() {
+        Snapshot snapshot = new Snapshot();
+        snapshot.setPackets(getPackets());
+        snapshot.setEmptySegments(getEmptySegments());
+        snapshot.setRequests(getRequests());
+        snapshot.setResponses(getResponses());
+        Map<DropReason, Long> drops = new EnumMap<>(DropReason.class);
+        for (DropReason reason : REASONS) {
+            drops.put(reason, getDrops(reason));
+        }
+        snapshot.setDrops(Collections.unmodifiableMap(drops));
+        snapshot.setPendingRequests(getPendingRequests());
+        snapshot.setBufferedBytes(getBufferedBytes());
+        snapshot.setFlows(getFlows());
+        snapshot.setEvictions(getEvictions());
+        snapshot.setExpirations(getExpirations());
+        snapshot.setAdmittedSessions(getAdmittedSessions());
+        snapshot.setHeadOnlySessions(getHeadOnlySessions());
+        snapshot.setDecodeLatencyMean(decodeLatency.mean());
+        snapshot.setDecodeLatencyP50(decodeLatency.quantile(0.5));
+        snapshot.setDecodeLatencyP99(decodeLatency.quantile(0.99));
+        snapshot.setDecodeLatencyP999(decodeLatency.quantile(0.999));
+        snapshot.setDecodeLatencyMax(decodeLatency.max());
+        return snapshot;
+    }
+
+    /**
+     * 注册到平台MBeanServer
+     *
+     * @param name 名称(区分多个实例)
+     * @return ObjectName(用于注销)
+     * @throws JMException 名称已注册等
+     */
+    public ObjectName register(String name) throws JMException {
+        ObjectName objectName = new ObjectName("com.github.lxp000.pacp4j_extend:type=DecoderMetrics,name=" + ObjectName.quote(name));
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        server.registerMBean(this, objectName);
+        return objectName;
+    }
+
+    @Override
+    public long getPackets() {
+        return packets.sum();
+    }
+
+    @Override
+    public long getEmptySegments() {
+        return emptySegments.sum();
+    }
+
+    @Override
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    @Override
+    public long getResponses() {
+        return responses.sum();
+    }
+
+    @Override
+    public Map<String, Long> getDrops() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (DropReason reason : REASONS) {
+            result.put(reason.name(), getDrops(reason));
+        }
+        return result;
+    }
+
+    @Override
+    public long getPendingRequests() {
+        return pendingRequests.sum();
+    }
+
+    @Override
+    public long getBufferedBytes() {
+        return bufferedBytes.sum();
+    }
+
+    @Override
+    public long getFlows() {
+        return flows.sum();
+    }
+
+    @Override
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public long getExpirations() {
+        return expirations.sum();
+    }
+
+    @Override
+    public long getAdmittedSessions() {
+        return admittedSessions.sum();
+    }
+
+    @Override
+    public long getHeadOnlySessions() {
+        return headOnlySessions.sum();
+    }
+
+    @Override
+    public double getDecodeLatencyMean() {
+        return decodeLatency.mean();
+    }
+
+    @Override
+    public long getDecodeLatencyP50() {
+        return decodeLatency.quantile(0.5);
+    }
+
+    @Override
+    public long getDecodeLatencyP99() {
+        return decodeLatency.quantile(0.99);
+    }
+
+    @Override
+    public long getDecodeLatencyP999() {
+        return decodeLatency.quantile(0.999);
+    }
+
+    @Override
+    public long getDecodeLatencyMax() {
+        return decodeLatency.max();
+    }
+
+    /**
+     * 统计结果
+     */
+    @Data
+    public static class Snapshot {
+        private long packets;
+        private long emptySegments;
+        private long requests;
+        private long responses;
+        private Map<DropReason, Long> drops;
+        private long pendingRequests;
+        private long bufferedBytes;
+        private long flows;
+        private long evictions;
+        private long expirations;
+        private long admittedSessions;
+        private long headOnlySessions;
+        private double decodeLatencyMean;  // ns
+        private long decodeLatencyP50;
+        private long decodeLatencyP99;
+        private long decodeLatencyP999;
+        private long decodeLatencyMax;
+    }
+}
@@ -0,0 +1,81 @@
+package com.github.lxp000.pacp4j_extend.metrics;
+
+import java.util.Map;
+
+/**
+ * 解码统计的JMX接口(jconsole/VisualVM中查看), 见{@link DecoderMetrics}
+ */
+public interface DecoderMetricsMXBean {
+    /**
+     * 收到的TCP包数量(不是TCP的包只计入{@link DropReason#NOT_TCP})
+     */
+    long getPackets();
+
+    /**
+     * 其中没有数据的报文段数量(ACK/SYN/FIN等控制包)
+     */
+    long getEmptySegments();
+
+    /**
+     * 解码出的完整请求数量
+     */
+    long getRequests();
+
+    /**
+     * 解码出的完整响应数量
+     */
+    long getResponses();
+
+    /**
+     * 各原因的丢弃/等待次数({@link DropReason})
+     */
+    Map<String, Long> getDrops();
+
+    /**
+     * 等待响应的请求数量
+     */
+    long getPendingRequests();
+
+    /**
+     * 缓存的字节数(未完整包的body + 跨包的首部 + 乱序数据)
+     */
+    long getBufferedBytes();
+
+    /**
+     * 会话表中的流数量
+     */
+    long getFlows();
+
+    /**
+     * 缓存超出上限被删除的流数量
+     */
+    long getEvictions();
+
+    /**
+     * 超时被删除的流数量
+     */
+    long getExpirations();
+
+    /**
+     * 准入控制接受的新连接数量(拒绝的连接按包计入{@link DropReason}的SHED_*)
+     */
+    long getAdmittedSessions();
+
+    /**
+     * 其中降级为只保存首部的连接数量
+     */
+    long getHeadOnlySessions();
+
+    /**
+     * 每个包的平均解码耗时(ns)
+     */
+    double getDecodeLatencyMean();
+
+    long getDecodeLatencyP50();
+
+    long getDecodeLatencyP99();
+
+    long getDecodeLatencyP999();
+
+    long getDecodeLatencyMax();
+}
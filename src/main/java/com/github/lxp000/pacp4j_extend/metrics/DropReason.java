@@ -0,0 +1,60 @@
+package com.github.lxp000.pacp4j_extend.metrics;
+
+/**
+ * 数据没有解码出请求/响应(结果为HttpNull)的原因
+ */
+public enum DropReason {
+    /**
+     * 不是TCP包
+     */
+    NOT_TCP,
+    /**
+     * 重复的数据(重传)
+     */
+    RETRANSMISSION,
+    /**
+     * 乱序的数据(已缓存, 等待缺口补上)
+     */
+    OUT_OF_ORDER,
+    /**
+     * 首部不完整(已缓存, 等待后续数据)
+     */
+    PARTIAL_HEAD,
+    /**
+     * body不完整(已缓存, 等待后续数据)
+     */
+    PARTIAL_BODY,
+    /**
+     * 不是HTTP或首部解析失败
+     */
+    PARSE_ERROR,
+    /**
+     * 响应没有对应的请求(请求没有抓到或已超时)
+     */
+    UNMATCHED_RESPONSE,
+    /**
+     * 不符合过滤条件(连接已忽略, 或请求/响应只跳过不发送)
+     */
+    FILTERED,
+    /**
+     * 乱序缓存超出上限, 跳过缺口时丢弃的未完整请求/响应
+     */
+    GAP,
+    /**
+     * 连接数量达到上限, 新连接的包不处理({@link com.github.lxp000.pacp4j_extend.http.AdmissionConfig})
+     */
+    SHED_CAPACITY,
+    /**
+     * 同一地址的连接数量达到上限, 新连接的包不处理
+     */
+    SHED_HOST,
+    /**
+     * 负载较高时按比例采样, 未选中的新连接的包不处理
+     */
+    SHED_SAMPLED,
+    /**
+     * 单结果的{@link com.github.lxp000.pacp4j_extend.http.HttpDecoder#decode(org.pcap4j.packet.Packet)}只返回第一个,
+     * 同一包中其他完整的请求/响应释放(已计入请求/响应数量并通知监听器, 但使用方收不到)
+     */
+    SINGLE_RESULT
+}
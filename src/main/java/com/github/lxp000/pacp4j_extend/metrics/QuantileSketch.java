@@ -0,0 +1,113 @@
+package com.github.lxp000.pacp4j_extend.metrics;
+
+import java.util.Arrays;
+
+/**
+ * 可合并的分位数统计<br>
+ * 与{@link LatencyHistogram}相同的分桶(2的幂分段, 每段8个桶, 相对误差不超过12.5%), 计数为long数组,
+ * 内存固定(最多488个桶, 按记录的最大值分配), 多个统计可以按桶相加合并<br>
+ * 单线程记录, 多线程使用时由调用方同步
+ */
+public final class QuantileSketch {
+    private long[] counts = new long[0];
+    private long count;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max;
+
+    /**
+     * 记录一个值
+     *
+     * @param value 值(负数按0记录)
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        int index = LatencyHistogram.index(value);
+        if (index >= counts.length) {
+            counts = Arrays.copyOf(counts, index + 1);
+        }
+        counts[index]++;
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * 合并另一个统计
+     *
+     * @param other 统计
+     */
+    public void merge(QuantileSketch other) {
+        if (other.counts.length > counts.length) {
+            counts = Arrays.copyOf(counts, other.counts.length);
+        }
+        for (int i = 0; i < other.counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * 分位数(所在桶的上界, 不超过最大值)
+     *
+     * @param quantile 0~1
+     * @return 没有记录为0
+     */
+    public long quantile(double quantile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(LatencyHistogram.upperBound(i), max);
+            }
+        }
+        return max;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public long sum() {
+        return sum;
+    }
+
+    /**
+     * @return 没有记录为0
+     */
+    public long min() {
+        return count == 0 ? 0 : min;
+    }
+
+    public long max() {
+        return max;
+    }
+
+    public double mean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    public QuantileSketch copy() {
+        QuantileSketch copy = new QuantileSketch();
+        copy.merge(this);
+        return copy;
+    }
+
+    public void reset() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+}
@@ -0,0 +1,74 @@
+package com.github.lxp000.pacp4j_extend.pcap;
+
+import com.github.lxp000.pacp4j_extend.http.HttpDecoder;
+import com.github.lxp000.pacp4j_extend.http.HttpPacket;
+import com.github.lxp000.pacp4j_extend.tcp.FrameParser;
+import com.github.lxp000.pacp4j_extend.tcp.TcpSegment;
+import org.pcap4j.core.NotOpenException;
+import org.pcap4j.core.PcapHandle;
+import org.pcap4j.core.PcapNativeException;
+import org.pcap4j.core.RawPacketListener;
+
+import java.util.function.Consumer;
+
+/**
+ * 在线抓包解码<br>
+ * 通过{@link RawPacketListener}接收原始帧 -> {@link FrameParser}按偏移量解析 -> {@link HttpDecoder#decode(byte[], int, long, Consumer)},
+ * 不创建pcap4j的包对象(不需要packetfactory逐层构造, 也不重复复制payload), 帧带有抓包时间
+ * <pre>
+ * PcapHandle handle = nif.openLive(65536, PromiscuousMode.PROMISCUOUS, 10);
+ * handle.setFilter("tcp port 80", BpfCompileMode.OPTIMIZE);
+ * LiveCaptureDecoder.loop(handle, -1, new HttpDecoder(), packet -&gt; ...);
+ * </pre>
+ * 解码和回调都在抓包线程中(与{@code PcapHandle.loop}相同)
+ */
+public final class LiveCaptureDecoder {
+    private LiveCaptureDecoder() {
+    }
+
+    /**
+     * 持续抓包解码, 直到抓够数量或{@link PcapHandle#breakLoop()}
+     *
+     * @param handle   已打开的抓包
+     * @param count    抓包数量(-1 不限制)
+     * @param decoder  HTTP解码器
+     * @param callback 完整的请求/响应
+     * @throws PcapNativeException 抓包失败
+     * @throws InterruptedException {@link PcapHandle#breakLoop()}中断
+     * @throws NotOpenException    抓包已关闭
+     */
+    public static void loop(PcapHandle handle, int count, HttpDecoder decoder, Consumer<? super HttpPacket> callback)
+            throws PcapNativeException, InterruptedException, NotOpenException {
+        handle.loop(count, listener(handle, decoder, callback));
+    }
+
+    /**
+     * 处理一批已到达的包(最多等待一次读取超时), 用于在自己的循环中穿插其他工作
+     *
+     * @param handle   已打开的抓包
+     * @param count    最多处理的数量(-1 一个缓冲区的全部)
+     * @param decoder  HTTP解码器
+     * @param callback 完整的请求/响应
+     * @return 处理的包数量
+     * @throws PcapNativeException 抓包失败
+     * @throws InterruptedException {@link PcapHandle#breakLoop()}中断
+     * @throws NotOpenException    抓包已关闭
+     */
+    public static int dispatch(PcapHandle handle, int count, HttpDecoder decoder, Consumer<? super HttpPacket> callback)
+            throws PcapNativeException, InterruptedException, NotOpenException {
+        return handle.dispatch(count, listener(handle, decoder, callback));
+    }
+
+    /**
+     * 原始帧监听: 链路类型在开始时读取一次, 抓包时间在回调中读取
+     *
+     * @param handle   已打开的抓包
+     * @param decoder  HTTP解码器
+     * @param callback 完整的请求/响应
+     * @return 可以传给{@code PcapHandle.loop/dispatch}
+     */
+    public static RawPacketListener listener(PcapHandle handle, HttpDecoder decoder, Consumer<? super HttpPacket> callback) {
+        int linkType = handle.getDlt().value();
+        return frame -> decoder.decode(frame, linkType, TcpSegment.toNanos(handle.getTimestamp()), callback);
+    }
+}
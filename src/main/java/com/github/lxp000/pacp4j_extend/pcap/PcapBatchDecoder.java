@@ -0,0 +1,239 @@
+package com.github.lxp000.pacp4j_extend.pcap;
+
+import com.github.lxp000.pacp4j_extend.http.HttpDecoder;
+import com.github.lxp000.pacp4j_extend.http.HttpDecoderConfig;
+import com.github.lxp000.pacp4j_extend.http.HttpPacket;
+import com.github.lxp000.pacp4j_extend.tcp.FlowKey;
+import com.github.lxp000.pacp4j_extend.tcp.FrameParser;
+import com.github.lxp000.pacp4j_extend.tcp.TcpSegment;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 并行解码按时间轮转的多个pcap/pcapng文件<br>
+ * 1. 解码: 每个文件一个fork-join任务, 用新的{@link HttpDecoder}解码, 结果按包序号保存,
+ * 并记录文件结束时会话表中仍有的连接({@link HttpDecoder#connections()})<br>
+ * 2. 拼接: 调用线程按文件顺序用一个拼接解码器, 只解码跨文件的连接(本文件结束时任务中仍有的, 或上一个文件结束时拼接解码器中仍有的)的包,
+ * 其他包只推进时间({@link HttpDecoder#advance(long)}, 超时与顺序解码相同); 这些连接在本文件中的任务结果丢弃, 以拼接结果代替<br>
+ * 3. 合并: 两部分结果按包序号合并, 按文件顺序交给回调<br>
+ * 结果与一个解码器按顺序解码所有文件相同, 前提:<br>
+ * - 事件时间({@link HttpDecoderConfig#setEventTime(boolean)}), 抓包时间跨文件不回退<br>
+ * - 没有跨连接的限制: 缓存上限的删除和准入控制按每个解码器计算<br>
+ * 跨文件的连接在开始的文件中解码两次, 拼接阶段重新读取有跨文件连接的文件, 统计({@link HttpDecoderConfig#getMetrics()})包含拼接的包;
+ * 同时解码的文件不超过并行度的2倍, 未合并的结果保存在内存中
+ */
+public final class PcapBatchDecoder {
+    private PcapBatchDecoder() {
+    }
+
+    /**
+     * 解码目录中的所有文件(按文件名排序)
+     *
+     * @param directory   目录
+     * @param config      解码配置(每个文件和拼接各创建一个解码器)
+     * @param parallelism 并行度
+     * @param callback    完整的请求/响应(调用线程 按顺序)
+     * @return 读取的帧数量
+     * @throws IOException 读取失败
+     */
+    public static long decode(Path directory, HttpDecoderConfig config, int parallelism, Consumer<? super HttpPacket> callback)
+            throws IOException {
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(directory)) {
+            files = stream.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return decode(files, config, pool, callback);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * 按给定顺序解码文件
+     *
+     * @param files    文件(按抓包时间排序)
+     * @param config   解码配置(需要事件时间)
+     * @param pool     解码任务的线程池
+     * @param callback 完整的请求/响应(调用线程 按顺序)
+     * @return 读取的帧数量
+     * @throws IOException 读取失败
+     */
+    public static long decode(List<Path> files, HttpDecoderConfig config, ForkJoinPool pool, Consumer<? super HttpPacket> callback)
+            throws IOException {
+        if (!config.isEventTime()) {
+            throw new IllegalArgumentException("batch decoding requires event time");
+        }
+        int window = Math.max(1, pool.getParallelism() * 2);
+        Deque<FileTask> tasks = new ArrayDeque<>();
+        HttpDecoder stitcher = new HttpDecoder(config);
+        Set<FlowKey> open = Collections.emptySet();  // 拼接解码器中的连接
+        long frames = 0;
+        int submitted = 0;
+        try {
+            for (Path file : files) {
+                while (submitted < files.size() && tasks.size() < window) {
+                    FileTask task = new FileTask(files.get(submitted++), config);
+                    pool.execute(task);
+                    tasks.addLast(task);
+                }
+                FileResult result = join(tasks.pollFirst());
+                frames += result.frames;
+                Set<FlowKey> stitched = new HashSet<>(result.open);
+                stitched.addAll(open);
+                List<Result> replayed = new ArrayList<>();
+                if (!stitched.isEmpty()) {
+                    read(file, stitcher, stitched, replayed);
+                }
+                merge(result.results, stitched, replayed, callback);
+                open = stitcher.connections();
+            }
+        } finally {
+            for (FileTask task : tasks) {
+                task.cancelled = true;  // 出错时未开始的任务不再解码
+            }
+            for (FileTask task : tasks) {  // 等待正在解码的任务, 释放未合并的结果
+                task.quietlyJoin();
+                if (task.isCompletedNormally()) {
+                    for (Result result : task.getRawResult().results) {
+                        result.packet.release();
+                    }
+                }
+            }
+            stitcher.close();
+        }
+        return frames;
+    }
+
+    /**
+     * 按包序号合并任务结果(跨文件的连接除外)和拼接结果
+     */
+    private static void merge(List<Result> decoded, Set<FlowKey> stitched, List<Result> replayed, Consumer<? super HttpPacket> callback) {
+        int index = 0;
+        for (Result result : decoded) {
+            if (stitched.contains(result.connection)) {
+                result.packet.release();
+                continue;
+            }
+            while (index < replayed.size() && replayed.get(index).seq < result.seq) {
+                callback.accept(replayed.get(index++).packet);
+            }
+            callback.accept(result.packet);
+        }
+        while (index < replayed.size()) {
+            callback.accept(replayed.get(index++).packet);
+        }
+    }
+
+    /**
+     * 读取文件并解码
+     *
+     * @param file        文件
+     * @param decoder     解码器
+     * @param connections 解码的连接(null 所有), 其他包只推进时间
+     * @param results     结果(按包序号)
+     * @return 读取的帧数量
+     */
+    private static long read(Path file, HttpDecoder decoder, Set<FlowKey> connections, List<Result> results) throws IOException {
+        TcpSegment segment = new TcpSegment();
+        long[] seq = new long[1];  // TCP包序号
+        try (PcapFileReader reader = new PcapFileReader(file)) {
+            return reader.read((frame, linkType, timestamp) -> {
+                if (!FrameParser.parse(frame, linkType, segment)) {
+                    decoder.advance(timestamp);  // 与PcapFileDecoder相同, 不是TCP的帧也推进时间
+                    return;
+                }
+                long index = seq[0]++;
+                if (connections != null && !connections.contains(segment.flowKey().canonical())) {
+                    decoder.advance(timestamp);
+                    return;
+                }
+                segment.setTimestamp(timestamp);
+                decoder.decode(segment, packet -> results.add(new Result(index, segment.flowKey().canonical(), packet)));
+            });
+        }
+    }
+
+    private static FileResult join(FileTask task) throws IOException {
+        try {
+            return task.join();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * 解码一个文件
+     */
+    private static class FileTask extends RecursiveTask<FileResult> {
+        private static final long serialVersionUID = 1L;
+        private final Path file;
+        private final HttpDecoderConfig config;
+        private volatile boolean cancelled;  // 批量解码出错 不再需要结果
+
+        private FileTask(Path file, HttpDecoderConfig config) {
+            this.file = file;
+            this.config = config;
+        }
+
+        @Override
+        protected FileResult compute() {
+            List<Result> results = new ArrayList<>();
+            if (cancelled) {
+                return new FileResult(0, results, Collections.emptySet());
+            }
+            HttpDecoder decoder = new HttpDecoder(config);
+            try {
+                long frames = read(file, decoder, null, results);
+                return new FileResult(frames, results, decoder.connections());
+            } catch (IOException | RuntimeException e) {
+                for (Result result : results) {  // 已解码的结果不会再交给调用方
+                    result.packet.release();
+                }
+                throw e instanceof IOException ? new UncheckedIOException((IOException) e) : (RuntimeException) e;
+            } finally {
+                decoder.close();  // 跨文件的连接由拼接解码器重新解码
+            }
+        }
+    }
+
+    private static class FileResult {
+        private final long frames;
+        private final List<Result> results;
+        private final Set<FlowKey> open;  // 文件结束时会话表中的连接
+
+        private FileResult(long frames, List<Result> results, Set<FlowKey> open) {
+            this.frames = frames;
+            this.results = results;
+            this.open = open;
+        }
+    }
+
+    private static class Result {
+        private final long seq;  // 包序号
+        private final FlowKey connection;
+        private final HttpPacket packet;
+
+        private Result(long seq, FlowKey connection, HttpPacket packet) {
+            this.seq = seq;
+            this.connection = connection;
+            this.packet = packet;
+        }
+    }
+}
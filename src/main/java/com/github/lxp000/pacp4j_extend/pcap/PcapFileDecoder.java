@@ -0,0 +1,45 @@
+package com.github.lxp000.pacp4j_extend.pcap;
+
+import com.github.lxp000.pacp4j_extend.http.HttpDecoder;
+import com.github.lxp000.pacp4j_extend.http.HttpPacket;
+import com.github.lxp000.pacp4j_extend.tcp.FrameParser;
+import com.github.lxp000.pacp4j_extend.tcp.TcpSegment;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+/**
+ * 离线解码pcap/pcapng文件<br>
+ * {@link PcapFileReader}内存映射读取 -> {@link FrameParser}按偏移量解析 -> {@link HttpDecoder#decode(TcpSegment, Consumer)},
+ * 不创建pcap4j的包对象, 不需要libpcap<br>
+ * 报文段带有记录的抓包时间, 解码器启用事件时间({@link com.github.lxp000.pacp4j_extend.http.HttpDecoderConfig#setEventTime(boolean)})时,
+ * 超时也按抓包时间计算(包括不是TCP的帧), 可以按CPU的最快速度回放, 结果与回放速度无关
+ */
+public final class PcapFileDecoder {
+    private PcapFileDecoder() {
+    }
+
+    /**
+     * 解码文件中的所有HTTP请求/响应
+     *
+     * @param path     pcap/pcapng文件
+     * @param decoder  HTTP解码器(可以连续解码多个文件)
+     * @param callback 完整的请求/响应
+     * @return 读取的帧数量
+     * @throws IOException 读取失败
+     */
+    public static long decode(Path path, HttpDecoder decoder, Consumer<? super HttpPacket> callback) throws IOException {
+        TcpSegment segment = new TcpSegment();
+        try (PcapFileReader reader = new PcapFileReader(path)) {
+            return reader.read((frame, linkType, timestamp) -> {
+                if (FrameParser.parse(frame, linkType, segment)) {
+                    segment.setTimestamp(timestamp);
+                    decoder.decode(segment, callback);
+                } else {
+                    decoder.advance(timestamp);  // 不是TCP的帧也推进事件时间
+                }
+            });
+        }
+    }
+}
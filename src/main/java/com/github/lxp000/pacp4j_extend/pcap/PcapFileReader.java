@@ -0,0 +1,240 @@
+package com.github.lxp000.pacp4j_extend.pcap;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * pcap/pcapng文件读取(纯Java, 不需要libpcap)<br>
+ * 按窗口内存映射文件, 每条记录的帧是映射内存的切片(不复制), 可以读取超过2GB的文件<br>
+ * pcap: 微秒/纳秒精度, 大端/小端<br>
+ * pcapng: SHB/IDB/EPB/SPB/PB, 多section/多接口, if_tsresol时间精度
+ */
+public class PcapFileReader implements Closeable {
+    private static final long WINDOW_SIZE = 256L * 1024 * 1024;  // 每次映射的大小
+    private static final int PCAP_MAGIC_MICROS = 0xA1B2C3D4;
+    private static final int PCAP_MAGIC_NANOS = 0xA1B23C4D;
+    private static final int PCAPNG_SHB = 0x0A0D0D0A;
+    private static final int PCAPNG_BYTE_ORDER_MAGIC = 0x1A2B3C4D;
+    private static final int PCAPNG_IDB = 1;
+    private static final int PCAPNG_PB = 2;
+    private static final int PCAPNG_SPB = 3;
+    private static final int PCAPNG_EPB = 6;
+    private static final int OPTION_IF_TSRESOL = 9;
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private MappedByteBuffer window;  // 当前映射的窗口
+    private ByteBuffer view;  // 窗口的视图 每条记录重设position/limit后交给回调
+    private long windowStart;
+    private long lastTimestamp;
+
+    public PcapFileReader(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.fileSize = channel.size();
+    }
+
+    /**
+     * 按顺序读取所有记录
+     *
+     * @param handler 帧回调(帧只在回调中有效, 帧内容的切片可以保留)
+     * @return 读取的帧数量
+     * @throws IOException 读取失败或不是pcap/pcapng文件
+     */
+    public long read(FrameHandler handler) throws IOException {
+        ByteBuffer header = map(0, 4);
+        if (header == null) {
+            throw new IOException("not a pcap/pcapng file");
+        }
+        int magic = header.order(ByteOrder.BIG_ENDIAN).getInt(index(0));
+        if (magic == PCAPNG_SHB) {
+            return readPcapng(handler);
+        }
+        if (magic == PCAP_MAGIC_MICROS || magic == PCAP_MAGIC_NANOS) {
+            return readPcap(handler, ByteOrder.BIG_ENDIAN, magic == PCAP_MAGIC_NANOS);
+        }
+        if (magic == Integer.reverseBytes(PCAP_MAGIC_MICROS) || magic == Integer.reverseBytes(PCAP_MAGIC_NANOS)) {
+            return readPcap(handler, ByteOrder.LITTLE_ENDIAN, magic == Integer.reverseBytes(PCAP_MAGIC_NANOS));
+        }
+        throw new IOException("not a pcap/pcapng file");
+    }
+
+    private long readPcap(FrameHandler handler, ByteOrder order, boolean nanos) throws IOException {
+        ByteBuffer buffer = map(0, 24);
+        if (buffer == null) {
+            throw new IOException("truncated pcap header");
+        }
+        int linkType = buffer.order(order).getInt(index(20)) & 0xFFFF;  // 高位为FCS信息
+        long count = 0;
+        long offset = 24;
+        while ((buffer = map(offset, 16)) != null) {
+            buffer.order(order);
+            long seconds = buffer.getInt(index(offset)) & 0xFFFFFFFFL;
+            long fraction = buffer.getInt(index(offset + 4)) & 0xFFFFFFFFL;
+            int capturedLength = buffer.getInt(index(offset + 8));
+            if (capturedLength < 0 || map(offset + 16, capturedLength) == null) {
+                break;  // 文件被截断
+            }
+            long timestamp = seconds * 1_000_000_000L + (nanos ? fraction : fraction * 1000);
+            emit(handler, offset + 16, capturedLength, linkType, timestamp);
+            offset += 16 + capturedLength;
+            count++;
+        }
+        return count;
+    }
+
+    private long readPcapng(FrameHandler handler) throws IOException {
+        List<Interface> interfaces = new ArrayList<>();
+        ByteOrder order = ByteOrder.BIG_ENDIAN;
+        long count = 0;
+        long offset = 0;
+        ByteBuffer buffer;
+        while ((buffer = map(offset, 12)) != null) {
+            int type = buffer.order(order).getInt(index(offset));
+            if (type == PCAPNG_SHB) {
+                int byteOrderMagic = buffer.order(ByteOrder.BIG_ENDIAN).getInt(index(offset + 8));
+                order = byteOrderMagic == PCAPNG_BYTE_ORDER_MAGIC ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+                interfaces.clear();  // 新section重新编号接口
+            }
+            int blockLength = buffer.order(order).getInt(index(offset + 4));
+            if (blockLength < 12 || (buffer = map(offset, blockLength)) == null) {
+                break;  // 文件被截断
+            }
+            buffer.order(order);
+            if (type == PCAPNG_IDB && blockLength >= 20) {
+                interfaces.add(readInterface(buffer, offset, blockLength));
+            } else if ((type == PCAPNG_EPB || type == PCAPNG_PB) && blockLength >= 32) {
+                int interfaceId = type == PCAPNG_EPB ? buffer.getInt(index(offset + 8)) : buffer.getShort(index(offset + 8)) & 0xFFFF;
+                long units = (buffer.getInt(index(offset + 12)) & 0xFFFFFFFFL) << 32 | buffer.getInt(index(offset + 16)) & 0xFFFFFFFFL;
+                int capturedLength = Math.min(buffer.getInt(index(offset + 20)), blockLength - 32);
+                if (interfaceId >= 0 && interfaceId < interfaces.size() && capturedLength >= 0) {
+                    Interface nif = interfaces.get(interfaceId);
+                    emit(handler, offset + 28, capturedLength, nif.linkType, nif.toNanos(units));
+                    count++;
+                }
+            } else if (type == PCAPNG_SPB && blockLength >= 16 && !interfaces.isEmpty()) {
+                Interface nif = interfaces.get(0);
+                int capturedLength = Math.min(buffer.getInt(index(offset + 8)), blockLength - 16);
+                if (nif.snapLength > 0) {
+                    capturedLength = Math.min(capturedLength, nif.snapLength);
+                }
+                emit(handler, offset + 12, capturedLength, nif.linkType, lastTimestamp);  // SPB没有时间戳 沿用上一条
+                count++;
+            }
+            offset += blockLength;
+        }
+        return count;
+    }
+
+    private Interface readInterface(ByteBuffer buffer, long offset, int blockLength) {
+        Interface nif = new Interface();
+        nif.linkType = buffer.getShort(index(offset + 8)) & 0xFFFF;
+        nif.snapLength = buffer.getInt(index(offset + 12));
+        long option = offset + 16;
+        long end = offset + blockLength - 4;
+        while (option + 4 <= end) {
+            int code = buffer.getShort(index(option)) & 0xFFFF;
+            int length = buffer.getShort(index(option + 2)) & 0xFFFF;
+            if (code == 0 || option + 4 + length > end) {
+                break;
+            }
+            if (code == OPTION_IF_TSRESOL && length >= 1) {
+                nif.resolution = buffer.get(index(option + 4));
+            }
+            option += 4 + ((length + 3) & ~3);
+        }
+        return nif;
+    }
+
+    private void emit(FrameHandler handler, long offset, int length, int linkType, long timestamp) {
+        int start = index(offset);
+        view.limit(start + length).position(start);
+        lastTimestamp = timestamp;
+        handler.onFrame(view, linkType, timestamp);
+    }
+
+    /**
+     * 确保[offset, offset + length)在当前窗口中, 不在时重新映射
+     *
+     * @return null 超出文件长度
+     */
+    private ByteBuffer map(long offset, int length) throws IOException {
+        if (offset + length > fileSize) {
+            return null;
+        }
+        if (window == null || offset < windowStart || offset + length > windowStart + window.capacity()) {
+            long size = Math.min(Math.max(length, WINDOW_SIZE), fileSize - offset);
+            window = channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+            view = window.duplicate();
+            windowStart = offset;
+        }
+        return window;
+    }
+
+    /**
+     * 文件偏移量转为当前窗口中的下标
+     */
+    private int index(long offset) {
+        return (int) (offset - windowStart);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * pcapng接口信息
+     */
+    private static class Interface {
+        private int linkType;
+        private int snapLength;
+        private byte resolution = 6;  // 默认微秒
+
+        /**
+         * 时间戳转为纳秒
+         *
+         * @param units 时间戳(if_tsresol单位)
+         * @return 纳秒
+         */
+        private long toNanos(long units) {
+            int exponent = resolution & 0x7F;
+            if ((resolution & 0x80) != 0) {  // 2的负幂
+                long divisor = 1L << exponent;
+                return units / divisor * 1_000_000_000L + (units % divisor) * 1_000_000_000L / divisor;
+            }
+            if (exponent <= 9) {
+                long factor = 1;
+                for (int i = exponent; i < 9; i++) {
+                    factor *= 10;
+                }
+                return units * factor;
+            }
+            long divisor = 1;
+            for (int i = 9; i < exponent; i++) {
+                divisor *= 10;
+            }
+            return units / divisor;
+        }
+    }
+
+    /**
+     * 帧回调
+     */
+    @FunctionalInterface
+    public interface FrameHandler {
+        /**
+         * @param frame     原始帧(position到limit), 只在回调中有效
+         * @param linkType  链路类型
+         * @param timestamp 抓包时间(纳秒)
+         */
+        void onFrame(ByteBuffer frame, int linkType, long timestamp);
+    }
+}
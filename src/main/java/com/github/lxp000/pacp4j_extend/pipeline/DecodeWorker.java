@@ -0,0 +1,84 @@
+package com.github.lxp000.pacp4j_extend.pipeline;
+
+import com.github.lxp000.pacp4j_extend.IDecoder;
+import com.github.lxp000.pacp4j_extend.IPacket;
+import com.github.lxp000.pacp4j_extend.util.BoundedQueue;
+import org.pcap4j.packet.Packet;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 解码线程<br>
+ * 独占一个解码器, 从队列中依次取包解码, 完整的请求/响应交给回调; 停止后在本线程关闭解码器
+ *
+ * @param <P> 解码结果
+ */
+class DecodeWorker<P extends IPacket> implements Runnable {
+    private static final long EXPIRE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private final BoundedQueue<Packet> queue;
+    private final IDecoder<P> decoder;
+    private final Consumer<? super P> callback;
+    private final WaitStrategy idle;
+    private final LongAdder errors = new LongAdder();
+    private volatile boolean running = true;
+
+    DecodeWorker(BoundedQueue<Packet> queue, IDecoder<P> decoder, Consumer<? super P> callback, WaitStrategy idle) {
+        this.queue = queue;
+        this.decoder = decoder;
+        this.callback = callback;
+        this.idle = idle;
+    }
+
+    @Override
+    public void run() {
+        long lastExpire = System.nanoTime();
+        int attempt = 0;
+        while (true) {
+            boolean stopped = !running;  // 先读标志再取包: 停止前放入的包都会被取到
+            Packet packet = queue.poll();
+            if (packet == null) {
+                if (stopped) {
+                    decoder.close();  // 已停止且队列已取完 释放会话缓存
+                    break;
+                }
+                long now = System.nanoTime();
+                if (now - lastExpire >= EXPIRE_INTERVAL_NANOS) {  // 空闲时回收超时缓存
+                    decoder.expire();
+                    lastExpire = now;
+                }
+                idle.idle(attempt);
+                if (attempt < Integer.MAX_VALUE) {
+                    attempt++;
+                }
+                continue;
+            }
+            attempt = 0;
+            try {
+                decoder.decode(packet, callback);
+            } catch (Exception e) {
+                errors.increment();
+            }
+        }
+    }
+
+    /**
+     * 停止(队列中剩余的包处理完后退出)
+     */
+    void stop() {
+        running = false;
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    BoundedQueue<Packet> getQueue() {
+        return queue;
+    }
+
+    long getErrors() {
+        return errors.sum();
+    }
+}
@@ -0,0 +1,27 @@
+package com.github.lxp000.pacp4j_extend.pipeline;
+
+/**
+ * 解码队列已满(解码/回调跟不上抓包)时的处理方式<br>
+ * 丢弃的包对解码器来说是抓包丢包: 所在的流出现缺口, 缺口处未完整的请求/响应被丢弃
+ */
+public enum OverflowPolicy {
+    /**
+     * 抓包线程等待队列有空位(不丢包, 但抓包线程阻塞时由内核丢包)
+     */
+    BLOCK,
+    /**
+     * 丢弃新包
+     */
+    DROP_NEWEST,
+    /**
+     * 丢弃队列中最早的包, 放入新包
+     */
+    DROP_OLDEST,
+    /**
+     * 队列超过{@link PipelineConfig#getSampleThreshold()}时按连接采样, 只保留1/{@link PipelineConfig#getSampleRate()}的连接的包;
+     * 队列已满时丢弃新包<br>
+     * 连接是否选中由连接哈希决定(不保存状态), 但只在队列超过阈值期间丢弃: 未选中的连接在负载高时丢包(流出现缺口),
+     * 负载回落后的包仍然解码, 不是整个连接全部保留或全部丢弃
+     */
+    SAMPLE
+}
@@ -0,0 +1,40 @@
+package com.github.lxp000.pacp4j_extend.pipeline;
+
+import lombok.Data;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多线程解码配置({@link ShardedDecoder})
+ */
+@Data
+public class PipelineConfig {
+    /**
+     * 解码线程数量
+     */
+    private int shards = 1;
+    /**
+     * 每个线程的队列容量(向上取2的幂, 创建时分配)
+     */
+    private int queueCapacity = 4096;
+    /**
+     * 队列已满时的处理方式
+     */
+    private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+    /**
+     * {@link OverflowPolicy#SAMPLE}: 保留1/sampleRate的连接
+     */
+    private int sampleRate = 8;
+    /**
+     * {@link OverflowPolicy#SAMPLE}: 队列使用比例超过此值时开始采样
+     */
+    private double sampleThreshold = 0.5;
+    /**
+     * 抓包线程等待队列空位的方式({@link OverflowPolicy#BLOCK})
+     */
+    private WaitStrategy producerWait = WaitStrategy.yielding();
+    /**
+     * 解码线程等待新包的方式
+     */
+    private WaitStrategy consumerWait = WaitStrategy.parking(TimeUnit.MICROSECONDS.toNanos(100));
+}
@@ -0,0 +1,280 @@
+package com.github.lxp000.pacp4j_extend.pipeline;
+
+import com.github.lxp000.pacp4j_extend.IDecoder;
+import com.github.lxp000.pacp4j_extend.IPacket;
+import com.github.lxp000.pacp4j_extend.tcp.FlowKey;
+import com.github.lxp000.pacp4j_extend.util.BoundedQueue;
+import org.pcap4j.core.PacketListener;
+import org.pcap4j.packet.IpPacket;
+import org.pcap4j.packet.Packet;
+import org.pcap4j.packet.TcpPacket;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 多线程解码<br>
+ * 按连接(与方向无关的4元组哈希)把包分配到N个解码线程, 每个线程独占一个解码器,
+ * 线程之间通过有界无锁队列(创建时分配)传递, 同一连接的包按抓包顺序处理<br>
+ * 抓包线程只做分配和入队, 解码和回调都在解码线程中; 解码跟不上时按{@link OverflowPolicy}等待或丢包, 各自计数<br>
+ * 可以直接作为{@link PacketListener}传给{@code PcapHandle.loop}
+ * <pre>
+ * try (ShardedDecoder&lt;HttpPacket&gt; decoder = new ShardedDecoder&lt;&gt;(4, 4096, HttpDecoder::new, packet -&gt; ...)) {
+ *     pcapHandle.loop(-1, decoder);
+ * }
+ * </pre>
+ *
+ * @param <P> 解码结果
+ */
+public class ShardedDecoder<P extends IPacket> implements PacketListener, AutoCloseable {
+    private final DecodeWorker<P>[] workers;
+    private final Thread[] threads;
+    private final OverflowPolicy overflowPolicy;
+    private final int sampleRate;
+    private final int sampleSize;  // 队列超过此数量时开始采样
+    private final WaitStrategy producerWait;
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder blocked = new LongAdder();
+    private final LongAdder droppedNewest = new LongAdder();
+    private final LongAdder droppedOldest = new LongAdder();
+    private final LongAdder sampledOut = new LongAdder();
+    private final LongAdder abandoned = new LongAdder();
+
+    /**
+     * 队列已满时抓包线程等待
+     *
+     * @param shards         解码线程数量
+     * @param queueCapacity  每个线程的队列容量
+     * @param decoderFactory 解码器(每个线程一个)
+     * @param callback       完整的请求/响应回调(在解码线程中调用, 需要线程安全)
+     */
+    public ShardedDecoder(int shards, int queueCapacity, Supplier<? extends IDecoder<P>> decoderFactory, Consumer<? super P> callback) {
+        this(config(shards, queueCapacity), decoderFactory, callback);
+    }
+
+    /**
+     * @param config         线程数量/队列/溢出处理
+     * @param decoderFactory 解码器(每个线程一个)
+     * @param callback       完整的请求/响应回调(在解码线程中调用, 需要线程安全)
+     */
+    @SuppressWarnings("unchecked")
+    public ShardedDecoder(PipelineConfig config, Supplier<? extends IDecoder<P>> decoderFactory, Consumer<? super P> callback) {
+        int shards = config.getShards();
+        if (shards <= 0) {
+            throw new IllegalArgumentException("shards must be positive");
+        }
+        if (config.getSampleRate() <= 0) {
+            throw new IllegalArgumentException("sampleRate must be positive");
+        }
+        this.overflowPolicy = config.getOverflowPolicy();
+        this.sampleRate = config.getSampleRate();
+        this.producerWait = config.getProducerWait();
+        workers = (DecodeWorker<P>[]) new DecodeWorker<?>[shards];
+        threads = new Thread[shards];
+        for (int i = 0; i < shards; i++) {
+            workers[i] = new DecodeWorker<>(new BoundedQueue<>(config.getQueueCapacity()), decoderFactory.get(), callback, config.getConsumerWait());
+            threads[i] = new Thread(workers[i], "decode-shard-" + i);
+        }
+        try {
+            for (Thread thread : threads) {  // 全部创建成功后再启动
+                thread.start();
+            }
+        } catch (RuntimeException | Error e) {
+            for (DecodeWorker<P> worker : workers) {
+                worker.stop();  // 已启动的线程关闭解码器后退出
+            }
+            throw e;
+        }
+        this.sampleSize = (int) (workers[0].getQueue().capacity() * config.getSampleThreshold());
+    }
+
+    private static PipelineConfig config(int shards, int queueCapacity) {
+        PipelineConfig config = new PipelineConfig();
+        config.setShards(shards);
+        config.setQueueCapacity(queueCapacity);
+        return config;
+    }
+
+    @Override
+    public void gotPacket(Packet packet) {
+        submit(packet);
+    }
+
+    /**
+     * 提交一个包(抓包线程调用), 队列已满时按{@link OverflowPolicy}处理
+     *
+     * @param packet 包
+     * @return false 不是TCP包, 已丢弃(新包), 或已关闭(与{@link #close()}同时提交的包可能仍被解码, 或计入{@link #abandoned()})
+     */
+    public boolean submit(Packet packet) {
+        TcpPacket tcpPacket = packet.get(TcpPacket.class);
+        if (tcpPacket == null) {
+            return false;
+        }
+        int flowHash = 0;
+        if (workers.length > 1 || overflowPolicy == OverflowPolicy.SAMPLE) {
+            IpPacket ipPacket = packet.get(IpPacket.class);  // 不创建FlowKey, 直接按首部字段哈希
+            int addressHash = ipPacket == null ? 0
+                    : ipPacket.getHeader().getSrcAddr().hashCode() ^ ipPacket.getHeader().getDstAddr().hashCode();
+            TcpPacket.TcpHeader header = tcpPacket.getHeader();
+            flowHash = FlowKey.flowHash(addressHash, header.getSrcPort().valueAsInt(), header.getDstPort().valueAsInt());
+        }
+        DecodeWorker<P> worker = workers[(flowHash & Integer.MAX_VALUE) % workers.length];
+        BoundedQueue<Packet> queue = worker.getQueue();
+        if (!worker.isRunning()) {
+            return false;
+        }
+        switch (overflowPolicy) {
+            case BLOCK:
+                if (!queue.offer(packet)) {
+                    blocked.increment();
+                    int attempt = 0;
+                    while (!queue.offer(packet)) {
+                        if (!worker.isRunning()) {
+                            return false;
+                        }
+                        producerWait.idle(attempt);
+                        if (attempt < Integer.MAX_VALUE) {
+                            attempt++;
+                        }
+                    }
+                }
+                break;
+            case DROP_OLDEST:
+                while (!queue.offer(packet)) {
+                    if (queue.poll() != null) {
+                        droppedOldest.increment();
+                    }
+                }
+                break;
+            case SAMPLE:
+                if (queue.size() >= sampleSize && ((flowHash * 0x9E3779B9) >>> 16) % sampleRate != 0) {
+                    // 与分配线程使用不同的哈希位, 每个线程都保留1/sampleRate; 是否选中按连接固定, 但只在队列超过阈值时丢弃
+                    sampledOut.increment();
+                    return false;
+                }
+                if (!queue.offer(packet)) {
+                    droppedNewest.increment();
+                    return false;
+                }
+                break;
+            default:
+                if (!queue.offer(packet)) {
+                    droppedNewest.increment();
+                    return false;
+                }
+                break;
+        }
+        if (!worker.isRunning()) {
+            return false;  // 入队时已关闭
+        }
+        accepted.increment();
+        return true;
+    }
+
+    /**
+     * 已放入队列的包数量
+     *
+     * @return 数量
+     */
+    public long accepted() {
+        return accepted.sum();
+    }
+
+    /**
+     * 队列已满需要等待的次数({@link OverflowPolicy#BLOCK})
+     *
+     * @return 次数
+     */
+    public long blocked() {
+        return blocked.sum();
+    }
+
+    /**
+     * 队列已满丢弃的新包数量({@link OverflowPolicy#DROP_NEWEST}/{@link OverflowPolicy#SAMPLE})
+     *
+     * @return 数量
+     */
+    public long droppedNewest() {
+        return droppedNewest.sum();
+    }
+
+    /**
+     * 为放入新包丢弃的最早的包数量({@link OverflowPolicy#DROP_OLDEST})
+     *
+     * @return 数量
+     */
+    public long droppedOldest() {
+        return droppedOldest.sum();
+    }
+
+    /**
+     * 采样丢弃的包数量({@link OverflowPolicy#SAMPLE})
+     *
+     * @return 数量
+     */
+    public long sampledOut() {
+        return sampledOut.sum();
+    }
+
+    /**
+     * 关闭时队列中未解码的包数量(解码线程退出后才放入队列的包)
+     *
+     * @return 数量
+     */
+    public long abandoned() {
+        return abandoned.sum();
+    }
+
+    /**
+     * 所有队列中等待解码的包数量(近似值)
+     *
+     * @return 数量
+     */
+    public int queued() {
+        int queued = 0;
+        for (DecodeWorker<P> worker : workers) {
+            queued += worker.getQueue().size();
+        }
+        return queued;
+    }
+
+    /**
+     * 解码异常的包数量
+     *
+     * @return 数量
+     */
+    public long errors() {
+        long errors = 0;
+        for (DecodeWorker<P> worker : workers) {
+            errors += worker.getErrors();
+        }
+        return errors;
+    }
+
+    /**
+     * 停止所有解码线程, 等待队列中剩余的包处理完(各线程处理完后关闭自己的解码器)<br>
+     * 线程退出后仍留在队列中的包(与关闭同时提交)清除并计入{@link #abandoned()}<br>
+     * 等待时被中断则不再等待并恢复中断标志, 解码线程仍会处理完剩余的包后退出
+     */
+    @Override
+    public void close() {
+        for (DecodeWorker<P> worker : workers) {
+            worker.stop();
+        }
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        for (DecodeWorker<P> worker : workers) {
+            while (worker.getQueue().poll() != null) {
+                abandoned.increment();
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.github.lxp000.pacp4j_extend.pipeline;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 等待方式<br>
+ * 解码线程队列为空, 或抓包线程队列已满({@link OverflowPolicy#BLOCK})时循环调用, 条件满足后重新从0计数
+ */
+@FunctionalInterface
+public interface WaitStrategy {
+    /**
+     * 等待一次
+     *
+     * @param attempt 本次等待中已调用的次数(从0开始)
+     */
+    void idle(int attempt);
+
+    /**
+     * 忙等(延迟最低, 独占一个CPU核)
+     *
+     * @return 等待方式
+     */
+    static WaitStrategy busySpin() {
+        return attempt -> {
+        };
+    }
+
+    /**
+     * 让出CPU
+     *
+     * @return 等待方式
+     */
+    static WaitStrategy yielding() {
+        return attempt -> Thread.yield();
+    }
+
+    /**
+     * 固定休眠
+     *
+     * @param nanos 每次休眠时间(ns)
+     * @return 等待方式
+     */
+    static WaitStrategy parking(long nanos) {
+        return attempt -> LockSupport.parkNanos(nanos);
+    }
+
+    /**
+     * 逐步退让: 先忙等, 再让出CPU, 之后休眠(休眠时间逐步加倍到maxNanos)
+     *
+     * @param maxNanos 最长休眠时间(ns)
+     * @return 等待方式
+     */
+    static WaitStrategy backoff(long maxNanos) {
+        return attempt -> {
+            if (attempt < 100) {
+                return;
+            }
+            if (attempt < 200) {
+                Thread.yield();
+                return;
+            }
+            long nanos = TimeUnit.MICROSECONDS.toNanos(1) << Math.min(attempt - 200, 20);
+            LockSupport.parkNanos(Math.min(nanos, maxNanos));
+        };
+    }
+}
@@ -0,0 +1,19 @@
+package com.github.lxp000.pacp4j_extend.redis;
+
+import com.github.lxp000.pacp4j_extend.IRequest;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Redis命令(客户端 -> 服务端)
+ */
+@Data
+public class RedisCommand implements IRequest<RedisCommand, RedisReply> {
+    private long timestamp;  // 抓包时间(纳秒): 命令第一个字节所在的包
+    private String srcHost;  // 客户端地址
+    private String dstHost;  // 服务端地址
+    private int port;  // 服务端端口
+    private String command;  // 命令名(大写)
+    private List<String> args;  // 参数(不含命令名)
+}
@@ -0,0 +1,236 @@
+package com.github.lxp000.pacp4j_extend.redis;
+
+import com.github.lxp000.pacp4j_extend.IPacket;
+import com.github.lxp000.pacp4j_extend.dispatch.ProtocolDecoder;
+import com.github.lxp000.pacp4j_extend.dispatch.ProtocolDispatcher;
+import com.github.lxp000.pacp4j_extend.tcp.FlowKey;
+import com.github.lxp000.pacp4j_extend.tcp.TcpReassembler;
+import com.github.lxp000.pacp4j_extend.tcp.TcpSegment;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * Redis(RESP)解码器, 注册到{@link ProtocolDispatcher}使用<br>
+ * 每个方向按seqNum重组后解析RESP: 客户端的数组(或inline命令)为{@link RedisCommand},
+ * 服务端的值为{@link RedisReply}, 按命令顺序配对(pipelining); 没有命令等待时的回复(订阅推送等)不发送<br>
+ * 一段数据中的完整值直接在抓包数据上解析, 只有跨包的值复制到缓存
+ */
+public class RedisDecoder implements ProtocolDecoder<RedisSession> {
+    private static final int DEFAULT_MAX_MESSAGE_BYTES = 64 * 1024 * 1024;
+    private static final int DEFAULT_MAX_REORDER_BYTES = 1024 * 1024;
+    private static final int MAX_PENDING_COMMANDS = 10_000;
+
+    private final ByteBufAllocator allocator = ByteBufAllocator.DEFAULT;
+    private final int maxMessageBytes;
+    private final int maxReorderBytes;
+    private final int[] next = new int[1];
+
+    public RedisDecoder() {
+        this(DEFAULT_MAX_MESSAGE_BYTES, DEFAULT_MAX_REORDER_BYTES);
+    }
+
+    /**
+     * @param maxMessageBytes 跨包的值的最大字节数, 超出时本方向停止解析
+     * @param maxReorderBytes 每个方向乱序数据的最大缓存字节数
+     */
+    public RedisDecoder(int maxMessageBytes, int maxReorderBytes) {
+        this.maxMessageBytes = maxMessageBytes;
+        this.maxReorderBytes = maxReorderBytes;
+    }
+
+    @Override
+    public String name() {
+        return "redis";
+    }
+
+    /**
+     * 客户端的命令为RESP数组: *数字\r\n
+     */
+    @Override
+    public boolean sniff(ByteBuf data) {
+        int index = data.readerIndex();
+        return data.readableBytes() >= 4 && data.getByte(index) == '*'
+                && data.getByte(index + 1) >= '0' && data.getByte(index + 1) <= '9';
+    }
+
+    @Override
+    public RedisSession open(FlowKey clientKey) {
+        RedisSession session = new RedisSession(new TcpReassembler(allocator, maxReorderBytes), new TcpReassembler(allocator, maxReorderBytes));
+        session.serverPort = clientKey.getDstPort();
+        return session;
+    }
+
+    @Override
+    public void decode(RedisSession session, TcpSegment segment, boolean fromClient, Consumer<? super IPacket> sink) {
+        RedisSession.Direction direction = fromClient ? session.client : session.server;
+        if (segment.hasFlag(TcpSegment.SYN)) {
+            direction.release();
+            direction.reassembler.start(segment.getSeqNum() + 1);
+            return;
+        }
+        ByteBuf payload = segment.getPayload();
+        if (direction.broken || payload == null || !payload.isReadable()) {
+            return;
+        }
+        if (session.clientHost == null) {
+            session.clientHost = fromClient ? segment.getSrcHost() : segment.getDstHost();
+            session.serverHost = fromClient ? segment.getDstHost() : segment.getSrcHost();
+        }
+        TcpReassembler reassembler = direction.reassembler;
+        int offset = reassembler.offer(segment.getSeqNum(), payload);
+        if (offset >= 0 && offset < payload.readableBytes()) {
+            feed(session, direction, fromClient, payload.slice(payload.readerIndex() + offset, payload.readableBytes() - offset),
+                    segment.getTimestamp(), sink);
+        }
+        if (reassembler.isOverflow()) {
+            broken(session, direction);  // 缺口的数据已丢失 无法找到下一个值的开始
+            return;
+        }
+        ByteBuf data;
+        while (!direction.broken && (data = reassembler.poll()) != null) {
+            try {
+                feed(session, direction, fromClient, data, segment.getTimestamp(), sink);
+            } finally {
+                data.release();
+            }
+        }
+    }
+
+    @Override
+    public void close(RedisSession session) {
+        session.release();
+    }
+
+    /**
+     * 解析连续的数据, 未完整的部分保存到缓存
+     */
+    private void feed(RedisSession session, RedisSession.Direction direction, boolean fromClient, ByteBuf data,
+                      long timestamp, Consumer<? super IPacket> sink) {
+        ByteBuf buf = data;
+        int carried = 0;  // 缓存中上一段数据的字节数
+        if (direction.pending != null) {
+            carried = direction.pending.writerIndex();
+            direction.pending.writeBytes(data);
+            buf = direction.pending;
+        }
+        int index = buf.readerIndex();
+        int end = buf.writerIndex();
+        while (index < end) {
+            boolean inline = fromClient && buf.getByte(index) != '*';
+            int valueEnd = inline ? inlineEnd(buf, index, end) : RespParser.skip(buf, index, end);
+            if (valueEnd == RespParser.INCOMPLETE) {
+                break;
+            }
+            if (valueEnd == RespParser.ERROR) {
+                broken(session, direction);
+                return;
+            }
+            long valueTimestamp = index < carried ? direction.pendingTimestamp : timestamp;
+            if (fromClient) {
+                command(session, buf, index, valueEnd, inline, valueTimestamp, sink);
+            } else {
+                reply(session, buf, index, valueTimestamp, sink);
+            }
+            index = valueEnd;
+        }
+        if (index == end) {
+            if (direction.pending != null) {
+                direction.pending.release();
+                direction.pending = null;
+            }
+            return;
+        }
+        if (direction.pending == null) {
+            direction.pending = allocator.buffer(end - index);
+            direction.pending.writeBytes(buf, index, end - index);
+            direction.pendingTimestamp = timestamp;
+        } else {
+            if (index >= carried) {
+                direction.pendingTimestamp = timestamp;
+            }
+            direction.pending.readerIndex(index);
+            direction.pending.discardReadBytes();
+        }
+        if (direction.pending.readableBytes() > maxMessageBytes) {
+            broken(session, direction);
+        }
+    }
+
+    private void command(RedisSession session, ByteBuf buf, int index, int end, boolean inline, long timestamp,
+                         Consumer<? super IPacket> sink) {
+        List<String> args;
+        if (inline) {
+            args = new ArrayList<>();
+            for (String arg : buf.toString(index, end - index - 2, StandardCharsets.UTF_8).trim().split("\\s+")) {
+                if (!arg.isEmpty()) {
+                    args.add(arg);
+                }
+            }
+        } else {
+            Object value = RespParser.read(buf, index, next);
+            if (!(value instanceof List)) {
+                return;
+            }
+            args = new ArrayList<>(((List<?>) value).size());
+            for (Object arg : (List<?>) value) {
+                args.add(arg == null ? null : arg.toString());
+            }
+        }
+        if (args.isEmpty()) {
+            return;  // 空行
+        }
+        RedisCommand command = new RedisCommand();
+        command.setTimestamp(timestamp);
+        command.setSrcHost(session.clientHost);
+        command.setDstHost(session.serverHost);
+        command.setPort(session.serverPort);
+        String name = args.get(0);
+        command.setCommand(name == null ? null : name.toUpperCase(Locale.ROOT));
+        command.setArgs(args.subList(1, args.size()));
+        if (session.commands.size() >= MAX_PENDING_COMMANDS) {
+            session.commands.poll();  // 一直没有回复 丢弃最早的
+        }
+        session.commands.add(command);
+        sink.accept(command);
+    }
+
+    private void reply(RedisSession session, ByteBuf buf, int index, long timestamp, Consumer<? super IPacket> sink) {
+        byte type = buf.getByte(index);
+        if (type == '>') {
+            return;  // RESP3推送 不是回复
+        }
+        RedisCommand command = session.commands.poll();
+        if (command == null) {
+            return;  // 没有等待回复的命令(订阅消息 或命令没有抓到)
+        }
+        RedisReply reply = new RedisReply();
+        reply.setTimestamp(timestamp);
+        reply.setError(type == '-' || type == '!');
+        reply.setValue(RespParser.read(buf, index, next));
+        reply.request = command;
+        sink.accept(reply);
+    }
+
+    /**
+     * inline命令(一行, 空格分隔)
+     */
+    private static int inlineEnd(ByteBuf buf, int index, int end) {
+        int cr = RespParser.lineEnd(buf, index, end);
+        return cr < 0 ? cr : cr + 2;
+    }
+
+    /**
+     * 本方向无法继续解析: 丢弃缓存, 等待回复的命令不再配对
+     */
+    private static void broken(RedisSession session, RedisSession.Direction direction) {
+        direction.broken = true;
+        direction.release();
+        session.commands.clear();
+    }
+}
@@ -0,0 +1,32 @@
+package com.github.lxp000.pacp4j_extend.redis;
+
+import com.github.lxp000.pacp4j_extend.IResponse;
+import lombok.*;
+
+/**
+ * Redis回复(服务端 -> 客户端), 按命令顺序与{@link RedisCommand}配对
+ */
+@Data
+public class RedisReply implements IResponse<RedisCommand, RedisReply> {
+    private long timestamp;  // 抓包时间(纳秒): 回复第一个字节所在的包
+    private boolean error;  // 错误回复(-ERR ...)
+    /**
+     * 回复的值: String/Long/Double/Boolean/null, 数组为List, 字典为Map; 错误回复为错误信息
+     */
+    private Object value;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    RedisCommand request;  // 配对的命令
+
+    /**
+     * 配对的命令
+     *
+     * @return 命令
+     */
+    public RedisCommand request() {
+        return request;
+    }
+}
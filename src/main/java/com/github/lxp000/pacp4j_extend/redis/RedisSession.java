@@ -0,0 +1,51 @@
+package com.github.lxp000.pacp4j_extend.redis;
+
+import com.github.lxp000.pacp4j_extend.tcp.TcpReassembler;
+import io.netty.buffer.ByteBuf;
+import io.netty.util.ReferenceCountUtil;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Redis连接的状态(保存在分配器的连接表中)
+ */
+final class RedisSession {
+    final Direction client;
+    final Direction server;
+    final Deque<RedisCommand> commands = new ArrayDeque<>();  // 等待回复的命令(按发送顺序)
+    String clientHost;
+    String serverHost;
+    int serverPort;
+
+    RedisSession(TcpReassembler client, TcpReassembler server) {
+        this.client = new Direction(client);
+        this.server = new Direction(server);
+    }
+
+    void release() {
+        client.release();
+        server.release();
+        commands.clear();
+    }
+
+    /**
+     * 单向的数据
+     */
+    static final class Direction {
+        final TcpReassembler reassembler;
+        ByteBuf pending;  // 跨包未完整的值
+        long pendingTimestamp;  // pending第一个字节的抓包时间
+        boolean broken;  // 格式错误或丢包, 之后的数据无法对齐
+
+        Direction(TcpReassembler reassembler) {
+            this.reassembler = reassembler;
+        }
+
+        void release() {
+            ReferenceCountUtil.safeRelease(pending);
+            pending = null;
+            reassembler.reset();
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.github.lxp000.pacp4j_extend.redis;
+
+import io.netty.buffer.ByteBuf;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * RESP(Redis序列化协议)解析, 支持RESP2和RESP3的类型<br>
+ * 先用{@link #skip(ByteBuf, int, int)}确认一个值已完整(只扫描, 不创建对象), 完整后再用{@link #read(ByteBuf, int)}创建值,
+ * 跨包的值等待后续数据时不会重复创建对象<br>
+ * 值: 简单字符串/bulk字符串/错误 => String, 整数 => Long, 浮点 => Double, 布尔 => Boolean, 空值 => null,
+ * 数组/集合/推送 => List, 字典 => Map; 属性(|)跳过
+ */
+final class RespParser {
+    static final int INCOMPLETE = -1;
+    static final int ERROR = -2;
+    private static final int MAX_DEPTH = 32;
+    private static final int MAX_LINE = 64 * 1024;
+
+    private RespParser() {
+    }
+
+    /**
+     * 扫描一个完整的值
+     *
+     * @param buf   数据
+     * @param index 值开始位置
+     * @param end   数据结束位置
+     * @return 值结束后的位置, 或{@link #INCOMPLETE}/{@link #ERROR}
+     */
+    static int skip(ByteBuf buf, int index, int end) {
+        return skip(buf, index, end, 0);
+    }
+
+    private static int skip(ByteBuf buf, int index, int end, int depth) {
+        if (index >= end) {
+            return INCOMPLETE;
+        }
+        if (depth > MAX_DEPTH) {
+            return ERROR;
+        }
+        byte type = buf.getByte(index);
+        int lineEnd = lineEnd(buf, index + 1, end);
+        if (lineEnd < 0) {
+            return lineEnd;
+        }
+        switch (type) {
+            case '+':
+            case '-':
+            case ':':
+            case ',':
+            case '(':
+            case '#':
+            case '_':
+                return lineEnd + 2;
+            case '$':
+            case '!':
+            case '=': {
+                long length = number(buf, index + 1, lineEnd);
+                if (length == -1) {
+                    return lineEnd + 2;  // 空值
+                }
+                if (length < -1 || length > Integer.MAX_VALUE - 2) {
+                    return ERROR;
+                }
+                long valueEnd = lineEnd + 2 + length;
+                if (valueEnd + 2 > end) {
+                    return INCOMPLETE;
+                }
+                return (int) valueEnd + 2;
+            }
+            case '*':
+            case '~':
+            case '>':
+            case '%':
+            case '|': {
+                long count = number(buf, index + 1, lineEnd);
+                if (count == -1) {
+                    return lineEnd + 2;
+                }
+                if (count < -1 || count > Integer.MAX_VALUE / 2) {
+                    return ERROR;
+                }
+                if (type == '%' || type == '|') {
+                    count *= 2;
+                }
+                int next = lineEnd + 2;
+                for (long i = 0; i < count; i++) {
+                    next = skip(buf, next, end, depth + 1);
+                    if (next < 0) {
+                        return next;
+                    }
+                }
+                return type == '|' ? skip(buf, next, end, depth + 1) : next;  // 属性之后是实际的值
+            }
+            default:
+                return ERROR;
+        }
+    }
+
+    /**
+     * 创建已确认完整的值
+     *
+     * @param buf   数据
+     * @param index 值开始位置
+     * @param next  值结束后的位置(输出, next[0])
+     * @return 值
+     */
+    static Object read(ByteBuf buf, int index, int[] next) {
+        byte type = buf.getByte(index);
+        int lineEnd = buf.indexOf(index + 1, buf.writerIndex(), (byte) '\r');
+        next[0] = lineEnd + 2;
+        switch (type) {
+            case '+':
+            case '-':
+                return buf.toString(index + 1, lineEnd - index - 1, StandardCharsets.UTF_8);
+            case ':':
+                return number(buf, index + 1, lineEnd);
+            case ',':
+                return decimal(buf.toString(index + 1, lineEnd - index - 1, StandardCharsets.US_ASCII));
+            case '(':
+                return buf.toString(index + 1, lineEnd - index - 1, StandardCharsets.US_ASCII);  // 大整数
+            case '#':
+                return buf.getByte(index + 1) == 't';
+            case '_':
+                return null;
+            case '$':
+            case '!':
+            case '=': {
+                int length = (int) number(buf, index + 1, lineEnd);
+                if (length < 0) {
+                    return null;
+                }
+                next[0] = lineEnd + 2 + length + 2;
+                return buf.toString(lineEnd + 2, length, StandardCharsets.UTF_8);
+            }
+            case '*':
+            case '~':
+            case '>': {
+                int count = (int) number(buf, index + 1, lineEnd);
+                if (count < 0) {
+                    return null;
+                }
+                List<Object> values = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    values.add(read(buf, next[0], next));
+                }
+                return values;
+            }
+            case '%': {
+                int count = (int) number(buf, index + 1, lineEnd);
+                if (count < 0) {
+                    return null;
+                }
+                Map<Object, Object> map = new LinkedHashMap<>();
+                for (int i = 0; i < count; i++) {
+                    Object key = read(buf, next[0], next);
+                    map.put(key, read(buf, next[0], next));
+                }
+                return map;
+            }
+            case '|': {
+                int count = (int) number(buf, index + 1, lineEnd);
+                for (int i = 0; i < count * 2; i++) {
+                    next[0] = skip(buf, next[0], buf.writerIndex(), 0);
+                }
+                return read(buf, next[0], next);
+            }
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 行结束(\r\n)的\r位置
+     *
+     * @return \r的位置, 或{@link #INCOMPLETE}/{@link #ERROR}(行超长)
+     */
+    static int lineEnd(ByteBuf buf, int index, int end) {
+        int limit = Math.min(end, index + MAX_LINE);
+        int cr = buf.indexOf(index, limit, (byte) '\r');
+        if (cr < 0) {
+            return limit == end ? INCOMPLETE : ERROR;
+        }
+        if (cr + 1 >= end) {
+            return INCOMPLETE;
+        }
+        return buf.getByte(cr + 1) == '\n' ? cr : ERROR;
+    }
+
+    /**
+     * 浮点数(inf/-inf/nan)
+     */
+    private static Double decimal(String value) {
+        switch (value) {
+            case "inf":
+                return Double.POSITIVE_INFINITY;
+            case "-inf":
+                return Double.NEGATIVE_INFINITY;
+            case "nan":
+                return Double.NaN;
+            default:
+                try {
+                    return Double.valueOf(value);
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+        }
+    }
+
+    /**
+     * 十进制整数
+     *
+     * @return 格式错误时为Long.MIN_VALUE
+     */
+    private static long number(ByteBuf buf, int start, int end) {
+        if (start >= end) {
+            return Long.MIN_VALUE;
+        }
+        boolean negative = buf.getByte(start) == '-';
+        int i = negative ? start + 1 : start;
+        if (i >= end || end - i > 18) {
+            return Long.MIN_VALUE;
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = buf.getByte(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return Long.MIN_VALUE;
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+}
@@ -0,0 +1,172 @@
+package com.github.lxp000.pacp4j_extend.sink;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * 交易日志格式<br>
+ * 段文件: 文件头(MAGIC, VERSION) + 记录... + 结束标记, 每条记录为 int长度 + 类型 + 内容;
+ * 长度{@link #END}为写入方正常结束的段, 长度0为预分配未写入的部分(写入中/进程中断), 读取都在此停止;
+ * 每个段独立编码字典, 可以从任一段开始读取<br>
+ * 字典记录: varint编号 + 字符串, 在第一次引用它的交易记录之前写入<br>
+ * 交易记录: 时间(2个long) + 地址/请求方式/首部名(字典编号) + 路径/首部值/body(字符串)<br>
+ * 字符串为 varint(UTF-8长度 + 1) + 内容, 字典编号为 varint(编号 + 1), 0 都表示null
+ */
+final class LogFormat {
+    static final int MAGIC = 0x50585431;  // PXT1
+    static final short VERSION = 1;
+    static final int HEADER_SIZE = 6;
+    static final int END = -1;  // 段结束标记(代替记录长度)
+    static final byte DICTIONARY = 1;
+    static final byte TRANSACTION = 2;
+    static final String SUFFIX = ".tlog";
+
+    private LogFormat() {
+    }
+
+    /**
+     * 段文件名(按编号排序)
+     */
+    static String segmentName(long index) {
+        return String.format("%012d", index) + SUFFIX;
+    }
+
+    /**
+     * 段文件编号
+     *
+     * @return -1 不是段文件
+     */
+    static long segmentIndex(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.endsWith(SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 可增长的写入缓冲(编码一条记录)
+     */
+    static final class Output {
+        byte[] bytes = new byte[4096];
+        int length;
+
+        void reset() {
+            length = 0;
+        }
+
+        void writeByte(int b) {
+            ensure(1);
+            bytes[length++] = (byte) b;
+        }
+
+        void writeInt(int value) {
+            ensure(4);
+            putInt(length, value);
+            length += 4;
+        }
+
+        void putInt(int index, int value) {
+            bytes[index] = (byte) (value >>> 24);
+            bytes[index + 1] = (byte) (value >>> 16);
+            bytes[index + 2] = (byte) (value >>> 8);
+            bytes[index + 3] = (byte) value;
+        }
+
+        void writeLong(long value) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                bytes[length++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeVarint(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[length++] = (byte) (value & 0x7F | 0x80);
+                value >>>= 7;
+            }
+            bytes[length++] = (byte) value;
+        }
+
+        void writeString(String value) {
+            if (value == null) {
+                writeVarint(0);
+                return;
+            }
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(utf8.length + 1L);
+            ensure(utf8.length);
+            System.arraycopy(utf8, 0, bytes, length, utf8.length);
+            length += utf8.length;
+        }
+
+        private void ensure(int size) {
+            if (length + size > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + size));
+            }
+        }
+    }
+
+    /**
+     * 读取(在映射内存上按位置读取)
+     */
+    static final class Input {
+        private final ByteBuffer buffer;
+        private final ByteBuffer view;  // 批量复制字符串
+        private byte[] scratch = new byte[256];
+        private int position;
+
+        Input(ByteBuffer buffer, int position) {
+            this.buffer = buffer;
+            this.view = buffer.duplicate();
+            this.position = position;
+        }
+
+        int position() {
+            return position;
+        }
+
+        byte readByte() {
+            return buffer.get(position++);
+        }
+
+        long readLong() {
+            long value = buffer.getLong(position);
+            position += 8;
+            return value;
+        }
+
+        long readVarint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = buffer.get(position++);
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IllegalStateException("malformed varint at " + position);
+        }
+
+        String readString() {
+            int length = (int) readVarint() - 1;
+            if (length < 0) {
+                return null;
+            }
+            if (length > scratch.length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            view.limit(position + length).position(position);
+            view.get(scratch, 0, length);
+            position += length;
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.github.lxp000.pacp4j_extend.sink;
+
+import lombok.Data;
+
+import java.util.Map;
+
+/**
+ * 一组请求/响应(交易日志中的一条记录)<br>
+ * 首部/路径参数: 1个key => value为String; 多个key => value为List
+ */
+@Data
+public class Transaction {
+    private long requestTime;  // 请求抓包时间(纳秒)
+    private long responseTime;  // 响应抓包时间(纳秒)
+    private String srcHost;
+    private String dstHost;
+    private int port;
+    private String method;
+    private String path;
+    private Map<String, Object> parameters;
+    private Map<String, Object> requestHeaders;
+    private String requestBody;
+    private int status;
+    private Map<String, Object> responseHeaders;
+    private String responseBody;
+}
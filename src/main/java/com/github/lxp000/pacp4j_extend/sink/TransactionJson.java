@@ -0,0 +1,166 @@
+package com.github.lxp000.pacp4j_extend.sink;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 交易日志转为JSON(每条记录一行), 用于临时查看<br>
+ * 不依赖JSON库; 命令行: java ... TransactionJson &lt;段文件目录&gt;
+ */
+public final class TransactionJson {
+    private TransactionJson() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("usage: TransactionJson <log directory>");
+            System.exit(1);
+        }
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        convert(Paths.get(args[0]), out);
+        out.flush();
+    }
+
+    /**
+     * 目录中的所有记录转为JSON, 每条一行
+     *
+     * @param directory 段文件目录
+     * @param out       输出
+     * @return 记录数量
+     * @throws IOException 读取/写入失败
+     */
+    public static long convert(Path directory, Appendable out) throws IOException {
+        StringBuilder builder = new StringBuilder(1024);
+        try {
+            return TransactionLogReader.read(directory, transaction -> {
+                builder.setLength(0);
+                write(transaction, builder);
+                try {
+                    out.append(builder).append('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * 一条记录转为JSON
+     *
+     * @param transaction 记录
+     * @return JSON对象
+     */
+    public static String toJson(Transaction transaction) {
+        StringBuilder builder = new StringBuilder(1024);
+        write(transaction, builder);
+        return builder.toString();
+    }
+
+    private static void write(Transaction transaction, StringBuilder out) {
+        out.append("{\"requestTime\":").append(transaction.getRequestTime());
+        out.append(",\"responseTime\":").append(transaction.getResponseTime());
+        field(out, "srcHost");
+        string(out, transaction.getSrcHost());
+        field(out, "dstHost");
+        string(out, transaction.getDstHost());
+        field(out, "port");
+        out.append(transaction.getPort());
+        field(out, "method");
+        string(out, transaction.getMethod());
+        field(out, "path");
+        string(out, transaction.getPath());
+        field(out, "parameters");
+        map(out, transaction.getParameters());
+        field(out, "requestHeaders");
+        map(out, transaction.getRequestHeaders());
+        field(out, "requestBody");
+        string(out, transaction.getRequestBody());
+        field(out, "status");
+        out.append(transaction.getStatus());
+        field(out, "responseHeaders");
+        map(out, transaction.getResponseHeaders());
+        field(out, "responseBody");
+        string(out, transaction.getResponseBody());
+        out.append('}');
+    }
+
+    private static void field(StringBuilder out, String name) {
+        out.append(",\"").append(name).append("\":");
+    }
+
+    private static void map(StringBuilder out, Map<String, Object> map) {
+        if (map == null) {
+            out.append("null");
+            return;
+        }
+        out.append('{');
+        boolean first = true;
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            if (!first) {
+                out.append(',');
+            }
+            first = false;
+            string(out, entry.getKey());
+            out.append(':');
+            if (entry.getValue() instanceof List) {
+                out.append('[');
+                List<?> values = (List<?>) entry.getValue();
+                for (int i = 0; i < values.size(); i++) {
+                    if (i > 0) {
+                        out.append(',');
+                    }
+                    string(out, (String) values.get(i));
+                }
+                out.append(']');
+            } else {
+                string(out, (String) entry.getValue());
+            }
+        }
+        out.append('}');
+    }
+
+    private static void string(StringBuilder out, String value) {
+        if (value == null) {
+            out.append("null");
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+}
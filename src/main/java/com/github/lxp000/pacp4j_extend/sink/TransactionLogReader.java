@@ -0,0 +1,145 @@
+package com.github.lxp000.pacp4j_extend.sink;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 交易日志顺序读取<br>
+ * 按编号依次内存映射{@link TransactionLogWriter}写入的段文件, 每条记录解码为{@link Transaction};
+ * 读到结束标记({@link TransactionLogWriter}关闭段时写入)停止; 段末尾未写完的记录(写入中/进程中断)忽略
+ */
+public final class TransactionLogReader {
+    private TransactionLogReader() {
+    }
+
+    /**
+     * 读取目录中的所有段
+     *
+     * @param directory 段文件目录
+     * @param handler   每组请求/响应
+     * @return 读取的记录数量
+     * @throws IOException 读取失败或不是交易日志
+     */
+    public static long read(Path directory, Consumer<? super Transaction> handler) throws IOException {
+        List<Path> segments;
+        try (Stream<Path> files = Files.list(directory)) {
+            segments = files.filter(file -> LogFormat.segmentIndex(file) >= 0)
+                    .sorted(Comparator.comparingLong(LogFormat::segmentIndex))
+                    .collect(Collectors.toList());
+        }
+        long count = 0;
+        for (Path segment : segments) {
+            count += readSegment(segment, handler);
+        }
+        return count;
+    }
+
+    /**
+     * 读取一个段文件
+     *
+     * @param file    段文件
+     * @param handler 每组请求/响应
+     * @return 读取的记录数量
+     * @throws IOException 读取失败或不是交易日志
+     */
+    public static long readSegment(Path file, Consumer<? super Transaction> handler) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("segment too large: " + file);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        int limit = buffer.limit();
+        if (limit < LogFormat.HEADER_SIZE || buffer.getInt(0) != LogFormat.MAGIC) {
+            throw new IOException("not a transaction log: " + file);
+        }
+        if (buffer.getShort(4) != LogFormat.VERSION) {
+            throw new IOException("unsupported transaction log version " + buffer.getShort(4) + ": " + file);
+        }
+        String[] dictionary = new String[64];
+        long count = 0;
+        int position = LogFormat.HEADER_SIZE;
+        while (limit - position >= 4) {
+            int length = buffer.getInt(position);
+            if (length == LogFormat.END) {
+                break;  // 段结束
+            }
+            if (length <= 0 || length > limit - position - 4) {
+                break;  // 预分配未写入的部分或未写完
+            }
+            LogFormat.Input input = new LogFormat.Input(buffer, position + 4);
+            byte type = input.readByte();
+            if (type == LogFormat.DICTIONARY) {
+                int id = (int) input.readVarint();
+                if (id >= dictionary.length) {
+                    dictionary = Arrays.copyOf(dictionary, Math.max(id + 1, dictionary.length * 2));
+                }
+                dictionary[id] = input.readString();
+            } else if (type == LogFormat.TRANSACTION) {
+                handler.accept(readTransaction(input, dictionary));
+                count++;
+            }
+            position += 4 + length;
+        }
+        return count;
+    }
+
+    private static Transaction readTransaction(LogFormat.Input input, String[] dictionary) {
+        Transaction transaction = new Transaction();
+        transaction.setRequestTime(input.readLong());
+        transaction.setResponseTime(input.readLong());
+        transaction.setSrcHost(readRef(input, dictionary));
+        transaction.setDstHost(readRef(input, dictionary));
+        transaction.setPort((int) input.readVarint());
+        transaction.setMethod(readRef(input, dictionary));
+        transaction.setPath(input.readString());
+        transaction.setParameters(readMap(input, dictionary));
+        transaction.setRequestHeaders(readMap(input, dictionary));
+        transaction.setRequestBody(input.readString());
+        transaction.setStatus((int) input.readVarint());
+        transaction.setResponseHeaders(readMap(input, dictionary));
+        transaction.setResponseBody(input.readString());
+        return transaction;
+    }
+
+    private static String readRef(LogFormat.Input input, String[] dictionary) {
+        int id = (int) input.readVarint() - 1;
+        return id < 0 ? null : dictionary[id];
+    }
+
+    private static Map<String, Object> readMap(LogFormat.Input input, String[] dictionary) {
+        int size = (int) input.readVarint() - 1;
+        if (size < 0) {
+            return null;
+        }
+        Map<String, Object> map = new HashMap<>(size * 4 / 3 + 1);
+        for (int i = 0; i < size; i++) {
+            String name = readRef(input, dictionary);
+            int count = (int) input.readVarint();
+            if (count == 1) {
+                map.put(name, input.readString());
+            } else {
+                List<String> values = new ArrayList<>(count);
+                for (int j = 0; j < count; j++) {
+                    values.add(input.readString());
+                }
+                map.put(name, values);
+            }
+        }
+        return map;
+    }
+}
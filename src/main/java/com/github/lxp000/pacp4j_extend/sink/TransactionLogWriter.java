@@ -0,0 +1,251 @@
+package com.github.lxp000.pacp4j_extend.sink;
+
+import com.github.lxp000.pacp4j_extend.http.HttpListener;
+import com.github.lxp000.pacp4j_extend.http.HttpPacket;
+import com.github.lxp000.pacp4j_extend.http.HttpRequest;
+import com.github.lxp000.pacp4j_extend.http.HttpResponse;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * 交易日志写入<br>
+ * 每组请求/响应编码为一条二进制记录(格式见{@link LogFormat}), 追加写入目录中内存映射的段文件,
+ * 段写满后换下一个文件(编号递增, 不覆盖已有的段); 地址/请求方式/首部名等重复的字符串按段编码为字典编号<br>
+ * 段文件保持预分配的大小(映射中的文件不能截断, Windows上会失败), 结束时写入结束标记, 读取在标记处停止<br>
+ * 作为{@link HttpListener}注册到解码器, 或在回调中调用{@link #write(HttpRequest, HttpResponse)};
+ * 读取用{@link TransactionLogReader}, 查看用{@link TransactionJson}
+ * <pre>
+ * try (TransactionLogWriter writer = new TransactionLogWriter(Paths.get("capture"))) {
+ *     decoder.addListener(writer);
+ *     PcapFileDecoder.decode(path, decoder, packet -&gt; packet.release());
+ * }
+ * </pre>
+ * 写入方法同步, 多个解码线程可以共用同一个
+ */
+public class TransactionLogWriter implements HttpListener, Closeable {
+    private static final long DEFAULT_SEGMENT_SIZE = 64L * 1024 * 1024;
+
+    private final Path directory;
+    private final long segmentSize;
+    private final Map<String, Integer> dictionary = new HashMap<>();  // 当前段的字典
+    private final List<String> added = new ArrayList<>();  // 本条记录新增的字典字符串
+    private final LogFormat.Output record = new LogFormat.Output();
+    private final LogFormat.Output entries = new LogFormat.Output();  // 新增字典的记录
+    private long nextIndex;
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private long written;
+
+    public TransactionLogWriter(Path directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * @param directory   段文件目录(不存在时创建, 已有段时从下一个编号开始)
+     * @param segmentSize 段文件大小(字节), 超出时换下一个文件
+     * @throws IOException 创建失败
+     */
+    public TransactionLogWriter(Path directory, long segmentSize) throws IOException {
+        if (segmentSize <= LogFormat.HEADER_SIZE || segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("segment size out of range: " + segmentSize);
+        }
+        this.directory = Files.createDirectories(directory);
+        this.segmentSize = segmentSize;
+        try (Stream<Path> files = Files.list(directory)) {
+            this.nextIndex = files.mapToLong(LogFormat::segmentIndex).max().orElse(-1) + 1;
+        }
+    }
+
+    @Override
+    public void onComplete(HttpPacket packet) {
+        if (packet instanceof HttpRequest) {
+            HttpRequest request = (HttpRequest) packet;  // 转为字符串保存: 视图模式下使用方可能在响应之前释放请求
+            request.getHttpMethod();
+            request.getPath();
+            request.getParameters();
+            request.getHeaders();
+            request.getBody();
+        }
+    }
+
+    @Override
+    public void onExchange(HttpRequest request, HttpResponse response) {
+        try {
+            write(request, response);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 写入一组请求/响应
+     *
+     * @param request  请求
+     * @param response 响应
+     * @throws IOException 创建段文件失败
+     */
+    public synchronized void write(HttpRequest request, HttpResponse response) throws IOException {
+        if (segment != null) {
+            encode(request, response);
+            if (entries.length + 4 + record.length + 4 > segment.remaining()) {
+                finish();  // 本段已满 新段重新编码字典
+            }
+        }
+        if (segment == null) {
+            encode(request, response);
+            open(entries.length + 4 + record.length);
+        }
+        segment.put(entries.bytes, 0, entries.length);
+        append(record);
+        written++;
+    }
+
+    /**
+     * 已写入的记录刷到磁盘
+     */
+    public synchronized void flush() {
+        if (segment != null) {
+            segment.force();
+        }
+    }
+
+    /**
+     * 已写入的请求/响应数量
+     *
+     * @return 数量
+     */
+    public synchronized long written() {
+        return written;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        finish();
+    }
+
+    /**
+     * 编码交易记录到record, 新增的字典记录到entries
+     */
+    private void encode(HttpRequest request, HttpResponse response) {
+        added.clear();
+        record.reset();
+        record.writeByte(LogFormat.TRANSACTION);
+        record.writeLong(request.getTimestamp());
+        record.writeLong(response.getTimestamp());
+        writeRef(request.getSrcHost());
+        writeRef(request.getDstHost());
+        record.writeVarint(request.getPort() == null ? 0 : request.getPort());
+        writeRef(request.getHttpMethod());
+        record.writeString(request.getPath());
+        writeMap(request.getParameters());
+        writeMap(request.getHeaders());
+        record.writeString(request.getBody());
+        record.writeVarint(response.getResCode() == null ? 0 : response.getResCode());
+        writeMap(response.getHeaders());
+        record.writeString(response.getBody());
+        entries.reset();
+        for (int i = 0; i < added.size(); i++) {
+            int start = entries.length;
+            entries.writeInt(0);
+            entries.writeByte(LogFormat.DICTIONARY);
+            entries.writeVarint(dictionary.size() - added.size() + i);
+            entries.writeString(added.get(i));
+            entries.putInt(start, entries.length - start - 4);
+        }
+    }
+
+    /**
+     * 字典编号(新字符串加入字典)
+     */
+    private void writeRef(String value) {
+        if (value == null) {
+            record.writeVarint(0);
+            return;
+        }
+        Integer id = dictionary.get(value);
+        if (id == null) {
+            id = dictionary.size();
+            dictionary.put(value, id);
+            added.add(value);
+        }
+        record.writeVarint(id + 1L);
+    }
+
+    /**
+     * varint(数量 + 1) + 每项: 名(字典) + varint(值数量) + 值
+     */
+    private void writeMap(Map<String, Object> map) {
+        if (map == null) {
+            record.writeVarint(0);
+            return;
+        }
+        record.writeVarint(map.size() + 1L);
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            writeRef(entry.getKey());
+            Object value = entry.getValue();
+            if (value instanceof List) {
+                List<?> values = (List<?>) value;
+                record.writeVarint(values.size());
+                for (Object item : values) {
+                    record.writeString(item == null ? null : item.toString());
+                }
+            } else {
+                record.writeVarint(1);
+                record.writeString(value == null ? null : value.toString());
+            }
+        }
+    }
+
+    /**
+     * 写入一条记录: 先写内容再写长度, 读取方不会看到不完整的记录
+     */
+    private void append(LogFormat.Output output) {
+        int position = segment.position();
+        segment.position(position + 4);
+        segment.put(output.bytes, 0, output.length);
+        segment.putInt(position, output.length);
+    }
+
+    /**
+     * 创建下一个段文件
+     *
+     * @param minSize 需要写入的字节数(超出段大小时本段加大, 另留结束标记的位置)
+     */
+    private void open(int minSize) throws IOException {
+        long size = Math.max(segmentSize, LogFormat.HEADER_SIZE + (long) minSize + 4);
+        Path file = directory.resolve(LogFormat.segmentName(nextIndex++));
+        channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        segment.putInt(LogFormat.MAGIC).putShort(LogFormat.VERSION);
+    }
+
+    /**
+     * 结束当前段: 写入结束标记并刷盘(每条记录都留有标记的位置)
+     */
+    private void finish() throws IOException {
+        dictionary.clear();
+        if (channel == null) {
+            return;
+        }
+        try {
+            segment.putInt(LogFormat.END);
+            segment.force();
+        } finally {
+            channel.close();
+            channel = null;
+            segment = null;
+        }
+    }
+}
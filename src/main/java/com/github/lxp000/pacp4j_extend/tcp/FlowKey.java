@@ -0,0 +1,155 @@
+package com.github.lxp000.pacp4j_extend.tcp;
+
+import lombok.Data;
+import org.pcap4j.packet.IpPacket;
+import org.pcap4j.packet.TcpPacket;
+
+/**
+ * TCP流标识(4元组+方向)<br>
+ * srcAddr:srcPort -> dstAddr:dstPort, 反方向通过{@link #reverse()}获取<br>
+ * 地址按128位保存为两个long(高/低64位), IPv4地址按IPv4映射的IPv6地址(::ffff:a.b.c.d)保存, 不同连接不会相同
+ */
+@Data
+public final class FlowKey {
+    private static final long IPV4_MAPPED = 0xFFFF_0000_0000L;
+
+    private final long srcAddrHigh;
+    private final long srcAddrLow;
+    private final int srcPort;
+    private final long dstAddrHigh;
+    private final long dstAddrLow;
+    private final int dstPort;
+
+    /**
+     * 从IP包和TCP包获取流标识
+     *
+     * @param ipPacket  IP包(可以为null)
+     * @param tcpPacket TCP包
+     * @return 流标识
+     */
+    public static FlowKey of(IpPacket ipPacket, TcpPacket tcpPacket) {
+        long srcHigh = 0;
+        long srcLow = 0;
+        long dstHigh = 0;
+        long dstLow = 0;
+        if (ipPacket != null) {
+            byte[] src = ipPacket.getHeader().getSrcAddr().getAddress();
+            byte[] dst = ipPacket.getHeader().getDstAddr().getAddress();
+            srcHigh = addressHigh(src);
+            srcLow = addressLow(src);
+            dstHigh = addressHigh(dst);
+            dstLow = addressLow(dst);
+        }
+        return new FlowKey(srcHigh, srcLow, tcpPacket.getHeader().getSrcPort().valueAsInt(),
+                dstHigh, dstLow, tcpPacket.getHeader().getDstPort().valueAsInt());
+    }
+
+    /**
+     * 反方向的流标识(请求 <=> 响应)
+     *
+     * @return dstAddr:dstPort -> srcAddr:srcPort
+     */
+    public FlowKey reverse() {
+        return new FlowKey(dstAddrHigh, dstAddrLow, dstPort, srcAddrHigh, srcAddrLow, srcPort);
+    }
+
+    /**
+     * 与方向无关的流标识(请求和响应相同), 地址(相同时端口)较小的一端作为src
+     *
+     * @return this 或 {@link #reverse()}
+     */
+    public FlowKey canonical() {
+        int c = srcAddrHigh != dstAddrHigh ? Long.compareUnsigned(srcAddrHigh, dstAddrHigh)
+                : srcAddrLow != dstAddrLow ? Long.compareUnsigned(srcAddrLow, dstAddrLow) : Integer.compare(srcPort, dstPort);
+        return c <= 0 ? this : reverse();
+    }
+
+    /**
+     * 只有源地址的标识(端口和目标为0), 用于按地址计数
+     *
+     * @return 源地址
+     */
+    public FlowKey source() {
+        return new FlowKey(srcAddrHigh, srcAddrLow, 0, 0, 0, 0);
+    }
+
+    /**
+     * 只有目标地址的标识(与{@link #source()}形式相同)
+     *
+     * @return 目标地址
+     */
+    public FlowKey destination() {
+        return new FlowKey(dstAddrHigh, dstAddrLow, 0, 0, 0, 0);
+    }
+
+    /**
+     * 与方向无关的哈希(请求和响应相同), 用于把同一条连接分配到同一处理线程<br>
+     * 地址折叠后参与哈希, 只用于分配, 不用于区分流
+     *
+     * @return 哈希值
+     */
+    public int flowHash() {
+        long addr = srcAddrHigh ^ srcAddrLow ^ dstAddrHigh ^ dstAddrLow;
+        return flowHash((int) addr ^ (int) (addr >>> 32), srcPort, dstPort);
+    }
+
+    /**
+     * 不创建流标识, 直接由首部字段计算与方向无关的哈希(抓包线程分配连接时使用)<br>
+     * IPv4地址传入两个地址(int)的异或时与{@link #flowHash()}相同
+     *
+     * @param addressHash 两端地址哈希的异或(例如{@code InetAddress#hashCode()})
+     * @param srcPort     源端口
+     * @param dstPort     目标端口
+     * @return 哈希值
+     */
+    public static int flowHash(int addressHash, int srcPort, int dstPort) {
+        int h = addressHash * 31 + (srcPort ^ dstPort);
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /**
+     * 地址的高64位
+     *
+     * @param address IPv4(4字节)/IPv6(16字节)地址
+     * @return IPv4为0
+     */
+    public static long addressHigh(byte[] address) {
+        return address.length == 4 ? 0 : toLong(address, 0);
+    }
+
+    /**
+     * 地址的低64位
+     *
+     * @param address IPv4(4字节)/IPv6(16字节)地址
+     * @return IPv4为::ffff:a.b.c.d的低64位
+     */
+    public static long addressLow(byte[] address) {
+        if (address.length == 4) {
+            return ipV4(address[0] << 24 | (address[1] & 0xFF) << 16 | (address[2] & 0xFF) << 8 | (address[3] & 0xFF));
+        }
+        return toLong(address, 8);
+    }
+
+    /**
+     * IPv4地址的低64位(高64位为0)
+     *
+     * @param address IPv4地址
+     * @return ::ffff:a.b.c.d的低64位
+     */
+    public static long ipV4(int address) {
+        return IPV4_MAPPED | address & 0xFFFFFFFFL;
+    }
+
+    private static long toLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = offset; i < offset + 8; i++) {
+            value = value << 8 | (bytes[i] & 0xFF);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,155 @@
+package com.github.lxp000.pacp4j_extend.tcp;
+
+import io.netty.buffer.Unpooled;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 原始帧解析<br>
+ * 按偏移量定位 链路层/IP/TCP 头部, 不创建pcap4j的包对象, payload为原始帧的切片(不复制)<br>
+ * 支持的链路类型: Null/Loopback, Ethernet(含VLAN), Raw IP, Linux cooked(SLL)<br>
+ * 支持IPv4(分片只处理第一片)和无扩展头的IPv6<br>
+ * 多字节字段按网络字节序读取, 与frame的{@link java.nio.ByteOrder}无关
+ */
+public final class FrameParser {
+    public static final int DLT_NULL = 0;
+    public static final int DLT_EN10MB = 1;
+    public static final int DLT_RAW = 101;
+    public static final int DLT_RAW_LIVE = 12;  // 在线抓包时libpcap返回的Raw IP(文件中为101)
+    public static final int DLT_LOOP = 108;
+    public static final int DLT_LINUX_SLL = 113;
+    private static final int ETHERTYPE_IPV4 = 0x0800;
+    private static final int ETHERTYPE_IPV6 = 0x86DD;
+    private static final int ETHERTYPE_VLAN = 0x8100;
+    private static final int ETHERTYPE_QINQ = 0x88A8;
+    private static final int PROTOCOL_TCP = 6;
+
+    private FrameParser() {
+    }
+
+    /**
+     * 解析原始帧
+     *
+     * @param frame    原始帧(position到limit)
+     * @param linkType 链路类型(pcap的network/linktype)
+     * @param segment  解析结果(复用)
+     * @return false 不是TCP包
+     */
+    public static boolean parse(ByteBuffer frame, int linkType, TcpSegment segment) {
+        int offset = frame.position();
+        int limit = frame.limit();
+        int etherType;
+        switch (linkType) {
+            case DLT_EN10MB:
+                if (limit - offset < 14) {
+                    return false;
+                }
+                etherType = u16(frame, offset + 12);
+                offset += 14;
+                while ((etherType == ETHERTYPE_VLAN || etherType == ETHERTYPE_QINQ) && limit - offset >= 4) {
+                    etherType = u16(frame, offset + 2);
+                    offset += 4;
+                }
+                break;
+            case DLT_NULL:
+            case DLT_LOOP:
+                if (limit - offset < 4) {
+                    return false;
+                }
+                offset += 4;  // 协议族(字节序不固定) 直接按IP版本判断
+                etherType = ipEtherType(frame, offset, limit);
+                break;
+            case DLT_RAW:
+            case DLT_RAW_LIVE:
+                etherType = ipEtherType(frame, offset, limit);
+                break;
+            case DLT_LINUX_SLL:
+                if (limit - offset < 16) {
+                    return false;
+                }
+                etherType = u16(frame, offset + 14);
+                offset += 16;
+                break;
+            default:
+                return false;
+        }
+        if (etherType == ETHERTYPE_IPV4) {
+            if (limit - offset < 20) {
+                return false;
+            }
+            int headerLength = (frame.get(offset) & 0x0F) * 4;
+            int totalLength = u16(frame, offset + 2);
+            if ((u16(frame, offset + 6) & 0x1FFF) != 0 || frame.get(offset + 9) != PROTOCOL_TCP
+                    || headerLength < 20 || totalLength != 0 && totalLength < headerLength) {
+                return false;  // 非第一片分片/不是TCP
+            }
+            segment.setIpV4(true);
+            segment.setSrcAddrHigh(0);
+            segment.setSrcAddrLow(FlowKey.ipV4(u32(frame, offset + 12)));
+            segment.setDstAddrHigh(0);
+            segment.setDstAddrLow(FlowKey.ipV4(u32(frame, offset + 16)));
+            if (totalLength != 0) {  // 0: 网卡分段/合并(TSO/LRO)的包 按帧长度
+                limit = Math.min(limit, offset + totalLength);  // 去掉以太网填充
+            }
+            offset += headerLength;
+        } else if (etherType == ETHERTYPE_IPV6) {
+            if (limit - offset < 40 || frame.get(offset + 6) != PROTOCOL_TCP) {
+                return false;
+            }
+            segment.setIpV4(false);
+            segment.setSrcAddrHigh(u64(frame, offset + 8));
+            segment.setSrcAddrLow(u64(frame, offset + 16));
+            segment.setDstAddrHigh(u64(frame, offset + 24));
+            segment.setDstAddrLow(u64(frame, offset + 32));
+            int payloadLength = u16(frame, offset + 4);
+            if (payloadLength != 0) {  // 0: 超长包/网卡合并的包 按帧长度
+                limit = Math.min(limit, offset + 40 + payloadLength);
+            }
+            offset += 40;
+        } else {
+            return false;
+        }
+        if (limit - offset < 20) {
+            return false;
+        }
+        int dataOffset = (frame.get(offset + 12) >> 4 & 0x0F) * 4;
+        if (dataOffset < 20 || limit - offset < dataOffset) {
+            return false;
+        }
+        segment.setSrcPort(u16(frame, offset));
+        segment.setDstPort(u16(frame, offset + 2));
+        segment.setSeqNum(u32(frame, offset + 4) & 0xFFFFFFFFL);
+        segment.setAckNum(u32(frame, offset + 8) & 0xFFFFFFFFL);
+        segment.setFlags(frame.get(offset + 13) & 0xFF);
+        offset += dataOffset;
+        if (offset >= limit) {
+            segment.setPayload(Unpooled.EMPTY_BUFFER);
+        } else {
+            ByteBuffer payload = frame.duplicate().order(ByteOrder.BIG_ENDIAN);
+            payload.limit(limit).position(offset);
+            segment.setPayload(Unpooled.wrappedBuffer(payload));
+        }
+        return true;
+    }
+
+    private static int ipEtherType(ByteBuffer frame, int offset, int limit) {
+        if (offset >= limit) {
+            return -1;
+        }
+        int version = frame.get(offset) >> 4 & 0x0F;
+        return version == 4 ? ETHERTYPE_IPV4 : version == 6 ? ETHERTYPE_IPV6 : -1;
+    }
+
+    private static int u16(ByteBuffer frame, int offset) {
+        return (frame.get(offset) & 0xFF) << 8 | (frame.get(offset + 1) & 0xFF);
+    }
+
+    private static int u32(ByteBuffer frame, int offset) {
+        return u16(frame, offset) << 16 | u16(frame, offset + 2);
+    }
+
+    private static long u64(ByteBuffer frame, int offset) {
+        return (long) u32(frame, offset) << 32 | u32(frame, offset + 4) & 0xFFFFFFFFL;
+    }
+}
@@ -0,0 +1,227 @@
+package com.github.lxp000.pacp4j_extend.tcp;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+import java.util.Arrays;
+
+/**
+ * TCP单向流重组<br>
+ * 按seqNum排序数据: 重复(重传)的数据丢弃, 部分重叠的只保留新数据, 乱序的数据复制到缓存,
+ * 缺口补上后通过{@link #poll()}按顺序取出<br>
+ * 乱序缓存有上限, 超出时说明缺口的数据已丢失(抓包丢包), 通过{@link #skipGap()}跳过缺口<br>
+ * seqNum按32位无符号数回绕比较
+ */
+public final class TcpReassembler {
+    /**
+     * {@link #offer(long, ByteBuf)}的返回值: 重复数据(重传), 本包没有可以直接使用的数据
+     */
+    public static final int NONE = -1;
+    /**
+     * {@link #offer(long, ByteBuf)}的返回值: 乱序数据(已缓存), 本包没有可以直接使用的数据
+     */
+    public static final int BUFFERED = -2;
+    private static final int MAX_SEGMENTS = 64;
+
+    private final ByteBufAllocator allocator;
+    private final int maxBufferedBytes;
+    private boolean started;
+    private long nextSeq;  // 下一个需要的seqNum
+    private long finSeq = -1;  // FIN的seqNum(-1 未收到)
+    private long[] seqs = new long[4];  // 乱序缓存 按seqNum排序
+    private ByteBuf[] buffers = new ByteBuf[4];
+    private int count;
+    private int bufferedBytes;
+
+    /**
+     * @param allocator        乱序缓存的分配器
+     * @param maxBufferedBytes 乱序缓存的最大字节数
+     */
+    public TcpReassembler(ByteBufAllocator allocator, int maxBufferedBytes) {
+        this.allocator = allocator;
+        this.maxBufferedBytes = maxBufferedBytes;
+    }
+
+    /**
+     * 设置流的开始位置(SYN的seqNum+1, 或中途开始抓包时第一个数据包的seqNum)
+     *
+     * @param seqNum 第一个数据字节的seqNum
+     */
+    public void start(long seqNum) {
+        reset();
+        started = true;
+        nextSeq = seqNum & 0xFFFFFFFFL;
+    }
+
+    public boolean isStarted() {
+        return started;
+    }
+
+    /**
+     * 下一个需要的seqNum(已按顺序取出的数据之后)
+     *
+     * @return seqNum
+     */
+    public long nextSeq() {
+        return nextSeq;
+    }
+
+    /**
+     * 接收一个报文段的数据
+     *
+     * @param seqNum  报文段的seqNum
+     * @param payload 数据(乱序时复制, 不保留)
+     * @return 新数据在payload中的开始位置(相对readerIndex, 之后的数据按顺序可以直接使用), 或{@link #NONE}/{@link #BUFFERED}
+     */
+    public int offer(long seqNum, ByteBuf payload) {
+        int length = payload.readableBytes();
+        if (!started) {
+            start(seqNum);
+        }
+        int offset = (int) (seqNum - nextSeq);
+        if (offset <= 0) {
+            if (offset + length <= 0) {
+                return NONE;  // 重传
+            }
+            nextSeq = (seqNum + length) & 0xFFFFFFFFL;
+            return -offset;
+        }
+        if (length > 0) {
+            insert(seqNum, payload);
+        }
+        return BUFFERED;
+    }
+
+    /**
+     * 取出乱序缓存中已连续的数据(调用{@link #offer(long, ByteBuf)}之后循环调用)
+     *
+     * @return null 没有连续的数据, 否则由调用方释放
+     */
+    public ByteBuf poll() {
+        while (count > 0) {
+            long seqNum = seqs[0];
+            int offset = (int) (seqNum - nextSeq);
+            if (offset > 0) {
+                return null;  // 还有缺口
+            }
+            ByteBuf buf = removeFirst();
+            if (offset + buf.readableBytes() <= 0) {
+                buf.release();  // 已经收到
+                continue;
+            }
+            buf.skipBytes(-offset);
+            nextSeq = (nextSeq + buf.readableBytes()) & 0xFFFFFFFFL;
+            return buf;
+        }
+        return null;
+    }
+
+    /**
+     * 乱序缓存是否超出上限(缺口的数据大概率已丢失)
+     *
+     * @return true 需要调用{@link #skipGap()}
+     */
+    public boolean isOverflow() {
+        return bufferedBytes > maxBufferedBytes || count == MAX_SEGMENTS;
+    }
+
+    /**
+     * 跳过缺口, 从最早的乱序数据继续(缺口前未完整的消息应由调用方丢弃)
+     */
+    public void skipGap() {
+        if (count > 0) {
+            nextSeq = seqs[0];
+        }
+    }
+
+    /**
+     * 收到FIN
+     *
+     * @param seqNum FIN的seqNum(报文段seqNum+数据长度)
+     */
+    public void finish(long seqNum) {
+        finSeq = seqNum & 0xFFFFFFFFL;
+    }
+
+    /**
+     * FIN之前的数据是否都已收到
+     *
+     * @return true 本方向不会再有数据
+     */
+    public boolean isFinished() {
+        return finSeq != -1 && (!started || (int) (nextSeq - finSeq) >= 0);
+    }
+
+    /**
+     * 乱序缓存的字节数
+     *
+     * @return 字节数
+     */
+    public int bufferedBytes() {
+        return bufferedBytes;
+    }
+
+    /**
+     * 乱序缓存的ByteBuf数量
+     *
+     * @return 数量
+     */
+    public int bufferCount() {
+        return count;
+    }
+
+    /**
+     * 释放乱序缓存并回到初始状态
+     */
+    public void reset() {
+        for (int i = 0; i < count; i++) {
+            buffers[i].release();
+            buffers[i] = null;
+        }
+        count = 0;
+        bufferedBytes = 0;
+        started = false;
+        finSeq = -1;
+    }
+
+    /**
+     * 按seqNum插入乱序缓存(相同seqNum保留较长的)
+     */
+    private void insert(long seqNum, ByteBuf payload) {
+        int index = 0;
+        while (index < count && (int) (seqs[index] - seqNum) < 0) {
+            index++;
+        }
+        int length = payload.readableBytes();
+        if (index < count && seqs[index] == seqNum) {
+            if (buffers[index].readableBytes() >= length) {
+                return;  // 重传
+            }
+            bufferedBytes -= buffers[index].readableBytes();
+            buffers[index].release();
+        } else {
+            if (count == seqs.length) {
+                seqs = Arrays.copyOf(seqs, count * 2);
+                buffers = Arrays.copyOf(buffers, count * 2);
+            }
+            System.arraycopy(seqs, index, seqs, index + 1, count - index);
+            System.arraycopy(buffers, index, buffers, index + 1, count - index);
+            count++;
+        }
+        ByteBuf copy = allocator.buffer(length);
+        copy.writeBytes(payload, payload.readerIndex(), length);
+        seqs[index] = seqNum;
+        buffers[index] = copy;
+        bufferedBytes += length;
+    }
+
+    private ByteBuf removeFirst() {
+        ByteBuf buf = buffers[0];
+        bufferedBytes -= buf.readableBytes();
+        count--;
+        System.arraycopy(seqs, 1, seqs, 0, count);
+        System.arraycopy(buffers, 1, buffers, 0, count);
+        buffers[count] = null;
+        return buf;
+    }
+}
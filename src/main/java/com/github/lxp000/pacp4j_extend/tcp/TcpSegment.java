@@ -0,0 +1,155 @@
+package com.github.lxp000.pacp4j_extend.tcp;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import lombok.Data;
+import org.pcap4j.packet.IpPacket;
+import org.pcap4j.packet.IpV4Packet;
+import org.pcap4j.packet.Packet;
+import org.pcap4j.packet.TcpPacket;
+
+import java.sql.Timestamp;
+
+/**
+ * TCP报文段<br>
+ * 解码器需要的IP/TCP字段和payload, 可以从pcap4j的{@link Packet}获取({@link #of(Packet)}),
+ * 也可以由{@link FrameParser}直接从原始帧按偏移量解析(payload不复制)<br>
+ * 可以复用同一个对象, 解码器不会保存本对象(只保存payload)
+ */
+@Data
+public class TcpSegment {
+    public static final int FIN = 0x01;
+    public static final int SYN = 0x02;
+    public static final int RST = 0x04;
+    public static final int PSH = 0x08;
+    public static final int ACK = 0x10;
+
+    private boolean ipV4;  // false 为IPv6
+    private long srcAddrHigh;  // 地址的高/低64位({@link FlowKey#addressHigh(byte[])}, {@link FlowKey#addressLow(byte[])})
+    private long srcAddrLow;
+    private long dstAddrHigh;
+    private long dstAddrLow;
+    private int srcPort;
+    private int dstPort;
+    private long seqNum;
+    private long ackNum;
+    private int flags;
+    private ByteBuf payload;  // TCP数据(没有数据时为空Buf)
+    private long timestamp;  // 抓包时间(纳秒, 0 未知: 解码器使用当前时间)
+
+    /**
+     * 从pcap4j包获取TCP报文段
+     *
+     * @param packet 包
+     * @return null 不是TCP包
+     */
+    public static TcpSegment of(Packet packet) {
+        TcpPacket tcpPacket = packet.get(TcpPacket.class);
+        if (tcpPacket == null) {
+            return null;
+        }
+        IpPacket ipPacket = packet.get(IpPacket.class);
+        TcpPacket.TcpHeader header = tcpPacket.getHeader();
+        TcpSegment segment = new TcpSegment();
+        if (ipPacket != null) {
+            segment.setIpV4(ipPacket instanceof IpV4Packet);
+            byte[] src = ipPacket.getHeader().getSrcAddr().getAddress();
+            byte[] dst = ipPacket.getHeader().getDstAddr().getAddress();
+            segment.setSrcAddrHigh(FlowKey.addressHigh(src));
+            segment.setSrcAddrLow(FlowKey.addressLow(src));
+            segment.setDstAddrHigh(FlowKey.addressHigh(dst));
+            segment.setDstAddrLow(FlowKey.addressLow(dst));
+        }
+        segment.setSrcPort(header.getSrcPort().valueAsInt());
+        segment.setDstPort(header.getDstPort().valueAsInt());
+        segment.setSeqNum(header.getSequenceNumberAsLong());
+        segment.setAckNum(header.getAcknowledgmentNumberAsLong());
+        segment.setFlags((header.getFin() ? FIN : 0) | (header.getSyn() ? SYN : 0) | (header.getRst() ? RST : 0)
+                | (header.getPsh() ? PSH : 0) | (header.getAck() ? ACK : 0));
+        Packet payload = tcpPacket.getPayload();
+        segment.setPayload(payload == null ? Unpooled.EMPTY_BUFFER : Unpooled.wrappedBuffer(payload.getRawData()));
+        return segment;
+    }
+
+    /**
+     * 抓包时间转为纳秒
+     *
+     * @param timestamp 抓包时间, 例如{@code PcapHandle.getTimestamp()}
+     * @return 纳秒
+     */
+    public static long toNanos(Timestamp timestamp) {
+        return Math.floorDiv(timestamp.getTime(), 1000) * 1_000_000_000L + timestamp.getNanos();
+    }
+
+    /**
+     * 本报文段的流
+     *
+     * @return 流标识
+     */
+    public FlowKey flowKey() {
+        return new FlowKey(srcAddrHigh, srcAddrLow, srcPort, dstAddrHigh, dstAddrLow, dstPort);
+    }
+
+    public boolean hasFlag(int flag) {
+        return (flags & flag) != 0;
+    }
+
+    /**
+     * 源地址
+     *
+     * @return IPv4地址(a.b.c.d), IPv6地址(RFC 5952 压缩格式)
+     */
+    public String getSrcHost() {
+        return ipV4 ? toHost((int) srcAddrLow) : toHost(srcAddrHigh, srcAddrLow);
+    }
+
+    /**
+     * 目标地址
+     *
+     * @return IPv4地址(a.b.c.d), IPv6地址(RFC 5952 压缩格式)
+     */
+    public String getDstHost() {
+        return ipV4 ? toHost((int) dstAddrLow) : toHost(dstAddrHigh, dstAddrLow);
+    }
+
+    private static String toHost(int addr) {
+        return (addr >>> 24) + "." + (addr >>> 16 & 0xFF) + "." + (addr >>> 8 & 0xFF) + "." + (addr & 0xFF);
+    }
+
+    /**
+     * IPv6地址: 8组小写十六进制, 最长的连续0组(至少2组, 相同长度取第一个)压缩为::
+     */
+    private static String toHost(long high, long low) {
+        int[] groups = new int[8];
+        for (int i = 0; i < 4; i++) {
+            groups[i] = (int) (high >>> (48 - 16 * i)) & 0xFFFF;
+            groups[4 + i] = (int) (low >>> (48 - 16 * i)) & 0xFFFF;
+        }
+        int zeroStart = -1;
+        int zeroLength = 1;
+        for (int i = 0; i < 8; ) {
+            int j = i;
+            while (j < 8 && groups[j] == 0) {
+                j++;
+            }
+            if (j - i > zeroLength) {
+                zeroStart = i;
+                zeroLength = j - i;
+            }
+            i = j == i ? i + 1 : j;
+        }
+        StringBuilder host = new StringBuilder(39);
+        for (int i = 0; i < 8; i++) {
+            if (i == zeroStart) {
+                host.append("::");
+                i += zeroLength - 1;
+                continue;
+            }
+            if (host.length() > 0 && host.charAt(host.length() - 1) != ':') {
+                host.append(':');
+            }
+            host.append(Integer.toHexString(groups[i]));
+        }
+        return host.toString();
+    }
+}
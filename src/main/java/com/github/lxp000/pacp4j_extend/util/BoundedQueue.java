@@ -0,0 +1,105 @@
+package com.github.lxp000.pacp4j_extend.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 有界无锁队列(多生产者/多消费者)<br>
+ * 数组预先分配, 每个槽带序号: 序号 == 位置 可写入, 序号 == 位置 + 1 可读取<br>
+ * 生产者/消费者只通过CAS竞争各自的位置, 不加锁
+ *
+ * @param <E> 元素
+ */
+public class BoundedQueue<E> {
+    private final AtomicReferenceArray<E> buffer;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();  // 下一个读取位置
+    private final AtomicLong tail = new AtomicLong();  // 下一个写入位置
+
+    /**
+     * @param capacity 容量(向上取2的幂)
+     */
+    public BoundedQueue(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        int length = Integer.highestOneBit(capacity);
+        if (length < capacity) {
+            length <<= 1;
+        }
+        buffer = new AtomicReferenceArray<>(length);
+        sequences = new AtomicLongArray(length);
+        for (int i = 0; i < length; i++) {
+            sequences.set(i, i);
+        }
+        mask = length - 1;
+    }
+
+    /**
+     * 写入
+     *
+     * @param e 元素
+     * @return false 队列已满
+     */
+    public boolean offer(E e) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long diff = sequences.get(index) - position;
+            if (diff == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    buffer.lazySet(index, e);
+                    sequences.lazySet(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (diff < 0) {
+                return false;  // 槽还未被读取 => 已满
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * 读取
+     *
+     * @return null 队列为空
+     */
+    public E poll() {
+        long position = head.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long diff = sequences.get(index) - (position + 1);
+            if (diff == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    E e = buffer.get(index);
+                    buffer.lazySet(index, null);
+                    sequences.lazySet(index, position + mask + 1);
+                    return e;
+                }
+                position = head.get();
+            } else if (diff < 0) {
+                return null;  // 槽还未写入 => 为空
+            } else {
+                position = head.get();
+            }
+        }
+    }
+
+    /**
+     * 当前元素数量(并发时为近似值)
+     *
+     * @return 数量
+     */
+    public int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, capacity()));
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,193 @@
+package com.github.lxp000.pacp4j_extend.util;
+
+import java.util.function.Consumer;
+
+/**
+ * 时间轮<br>
+ * 按到期时间(deadline)把任务放入对应的槽, 每个槽为一个双向链表, 添加/重新计时/取消都是O(1)<br>
+ * {@link #advance(long, Consumer)}只检查上次推进之后经过的槽, 超过一圈的任务留在槽中等待下一圈
+ *
+ * @param <T> 任务
+ */
+public class TimerWheel<T> {
+    private final long tick;  // 每个槽的时间跨度
+    private final Timeout<T>[] wheel;  // 每个槽的链表头
+    private final int mask;
+    private long lastTick = -1;  // 上次推进到的槽(-1 从未推进)
+    private int size;
+
+    /**
+     * @param tick      每个槽的时间跨度
+     * @param wheelSize 槽数量(向上取2的幂)
+     */
+    @SuppressWarnings("unchecked")
+    public TimerWheel(long tick, int wheelSize) {
+        if (tick <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("tick and wheelSize must be positive");
+        }
+        int length = Integer.highestOneBit(wheelSize);
+        if (length < wheelSize) {
+            length <<= 1;
+        }
+        this.tick = tick;
+        this.wheel = (Timeout<T>[]) new Timeout<?>[length];
+        this.mask = length - 1;
+    }
+
+    /**
+     * 添加任务
+     *
+     * @param item     任务
+     * @param deadline 到期时间
+     * @return 计时节点 用于{@link #reschedule(Timeout, long)}和{@link #cancel(Timeout)}
+     */
+    public Timeout<T> schedule(T item, long deadline) {
+        Timeout<T> timeout = new Timeout<>(item);
+        timeout.deadline = deadline;
+        link(timeout);
+        return timeout;
+    }
+
+    /**
+     * 重新计时
+     *
+     * @param timeout  计时节点
+     * @param deadline 新的到期时间
+     */
+    public void reschedule(Timeout<T> timeout, long deadline) {
+        unlink(timeout);
+        timeout.deadline = deadline;
+        link(timeout);
+    }
+
+    /**
+     * 取消任务(已到期或已取消不做处理)
+     *
+     * @param timeout 计时节点
+     */
+    public void cancel(Timeout<T> timeout) {
+        if (timeout != null) {
+            unlink(timeout);
+        }
+    }
+
+    /**
+     * 推进到当前时间, 到期的任务移出时间轮并回调
+     *
+     * @param time    当前时间
+     * @param expired 到期回调
+     * @return 到期任务数量
+     */
+    public int advance(long time, Consumer<T> expired) {
+        long nowTick = Math.floorDiv(time, tick);
+        if (nowTick <= lastTick) {
+            return 0;
+        }
+        long from = lastTick < 0 || nowTick - lastTick > wheel.length ? nowTick - wheel.length + 1 : lastTick + 1;
+        lastTick = nowTick;
+        int count = 0;
+        for (long t = from; t <= nowTick && size > 0; t++) {
+            count += expireBucket((int) (t & mask), time, expired);
+        }
+        return count;
+    }
+
+    /**
+     * 当前任务数量
+     *
+     * @return 数量
+     */
+    public int size() {
+        return size;
+    }
+
+    private int expireBucket(int index, long time, Consumer<T> expired) {
+        Timeout<T> expiredHead = null;  // 先摘出到期节点再回调, 回调中可以安全地取消/添加其他任务
+        Timeout<T> node = wheel[index];
+        while (node != null) {
+            Timeout<T> next = node.next;
+            if (node.deadline <= time) {
+                unlink(node);
+                node.next = expiredHead;
+                expiredHead = node;
+            }
+            node = next;
+        }
+        int count = 0;
+        while (expiredHead != null) {
+            Timeout<T> next = expiredHead.next;
+            expiredHead.next = null;
+            expired.accept(expiredHead.item);
+            expiredHead = next;
+            count++;
+        }
+        return count;
+    }
+
+    private void link(Timeout<T> timeout) {
+        long deadlineTick = Math.floorDiv(timeout.deadline, tick);
+        if (lastTick >= 0 && deadlineTick <= lastTick) {
+            deadlineTick = lastTick + 1;  // 已经到期 下一次推进时处理
+        }
+        int index = (int) (deadlineTick & mask);
+        timeout.bucket = index;
+        timeout.next = wheel[index];
+        if (wheel[index] != null) {
+            wheel[index].prev = timeout;
+        }
+        wheel[index] = timeout;
+        size++;
+    }
+
+    private void unlink(Timeout<T> timeout) {
+        if (timeout.bucket < 0) {
+            return;
+        }
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            wheel[timeout.bucket] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.bucket = -1;
+        size--;
+    }
+
+    /**
+     * 计时节点
+     *
+     * @param <T> 任务
+     */
+    public static final class Timeout<T> {
+        private final T item;
+        private long deadline;
+        private int bucket = -1;  // 所在的槽(-1 不在时间轮中)
+        private Timeout<T> prev;
+        private Timeout<T> next;
+
+        private Timeout(T item) {
+            this.item = item;
+        }
+
+        public T getItem() {
+            return item;
+        }
+
+        public long getDeadline() {
+            return deadline;
+        }
+
+        /**
+         * 是否还在时间轮中
+         *
+         * @return false 已到期或已取消
+         */
+        public boolean isPending() {
+            return bucket >= 0;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.github.lxp000.pacp4j_extend.benchmark;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 合成HTTP流量<br>
+ * 生成 Ethernet/IPv4/TCP/HTTP 原始帧, 同一个种子每次生成的帧完全相同<br>
+ * 每个连接的seqNum/ackNum连续(不含SYN/FIN), 每组请求/响应都是完整的
+ */
+public final class SyntheticTraffic {
+    private static final int MSS = 1460;
+    private static final int SERVER_ADDR = 0x0A000001;  // 10.0.0.1
+    private static final int CLIENT_ADDR = 0x0A010000;  // 10.1.0.0/16
+    private static final int EXCHANGES_PER_CONNECTION = 10;  // keep-alive
+
+    /**
+     * 流量场景
+     */
+    public enum Scenario {
+        /**
+         * 单包的GET请求和小响应
+         */
+        SMALL_GET,
+        /**
+         * Content-Length的POST请求和响应, body跨多个包
+         */
+        CONTENT_LENGTH,
+        /**
+         * chunked响应, chunk边界与包边界不对齐
+         */
+        CHUNKED,
+        /**
+         * 请求和响应的首部跨多个包
+         */
+        SPLIT_HEAD,
+        /**
+         * 大量连接同时等待响应(先发所有请求, 再发所有响应)
+         */
+        MANY_FLOWS
+    }
+
+    private SyntheticTraffic() {
+    }
+
+    /**
+     * 生成原始帧
+     *
+     * @param scenario  场景
+     * @param exchanges 请求/响应组数
+     * @param seed      随机种子
+     * @return 按发送顺序的原始帧(DLT_EN10MB)
+     */
+    public static List<byte[]> generate(Scenario scenario, int exchanges, long seed) {
+        Random random = new Random(seed);
+        List<byte[]> frames = new ArrayList<>();
+        if (scenario == Scenario.MANY_FLOWS) {
+            Connection[] connections = new Connection[exchanges];
+            for (int i = 0; i < exchanges; i++) {
+                connections[i] = new Connection(i, random);
+                connections[i].client(smallGet(i, random), frames, MSS);
+            }
+            for (int i = 0; i < exchanges; i++) {
+                connections[i].server(smallResponse(random), frames, MSS);
+            }
+            return frames;
+        }
+        Connection connection = null;
+        for (int i = 0; i < exchanges; i++) {
+            if (i % EXCHANGES_PER_CONNECTION == 0) {
+                connection = new Connection(i / EXCHANGES_PER_CONNECTION, random);
+            }
+            switch (scenario) {
+                case SMALL_GET:
+                    connection.client(smallGet(i, random), frames, MSS);
+                    connection.server(smallResponse(random), frames, MSS);
+                    break;
+                case CONTENT_LENGTH:
+                    connection.client(post(i, 4096, random), frames, MSS);
+                    connection.server(contentLengthResponse(16 * 1024, random), frames, MSS);
+                    break;
+                case CHUNKED:
+                    connection.client(smallGet(i, random), frames, MSS);
+                    connection.server(chunkedResponse(12 * 1024, 1000, random), frames, MSS);
+                    break;
+                case SPLIT_HEAD:
+                    connection.client(smallGet(i, random), frames, 48);  // 首部约200字节 分为5个包
+                    connection.server(contentLengthResponse(256, random), frames, 64);
+                    break;
+                default:
+                    throw new IllegalArgumentException(scenario.name());
+            }
+        }
+        return frames;
+    }
+
+    private static byte[] smallGet(int id, Random random) {
+        return ascii("GET /api/v1/items/" + id + "?page=" + random.nextInt(100) + "&size=20&sort=name,desc HTTP/1.1\r\n"
+                + "Host: api.example.com\r\n"
+                + "User-Agent: synthetic/1.0\r\n"
+                + "Accept: application/json\r\n"
+                + "Accept-Encoding: identity\r\n"
+                + "Connection: keep-alive\r\n"
+                + "X-Request-Id: " + Long.toHexString(random.nextLong()) + "\r\n\r\n");
+    }
+
+    private static byte[] post(int id, int bodyLength, Random random) {
+        byte[] head = ascii("POST /api/v1/items/" + id + " HTTP/1.1\r\n"
+                + "Host: api.example.com\r\n"
+                + "Content-Type: application/json\r\n"
+                + "Content-Length: " + bodyLength + "\r\n\r\n");
+        return concat(head, body(bodyLength, random));
+    }
+
+    private static byte[] smallResponse(Random random) {
+        return contentLengthResponse(64 + random.nextInt(64), random);
+    }
+
+    private static byte[] contentLengthResponse(int bodyLength, Random random) {
+        byte[] head = ascii("HTTP/1.1 200 OK\r\n"
+                + "Content-Type: application/json\r\n"
+                + "Cache-Control: no-cache\r\n"
+                + "Content-Length: " + bodyLength + "\r\n\r\n");
+        return concat(head, body(bodyLength, random));
+    }
+
+    private static byte[] chunkedResponse(int bodyLength, int chunkSize, Random random) {
+        StringBuilder builder = new StringBuilder("HTTP/1.1 200 OK\r\n"
+                + "Content-Type: application/json\r\n"
+                + "Transfer-Encoding: chunked\r\n\r\n");
+        byte[] body = body(bodyLength, random);
+        for (int i = 0; i < body.length; i += chunkSize) {
+            int length = Math.min(chunkSize, body.length - i);
+            builder.append(Integer.toHexString(length)).append("\r\n")
+                    .append(new String(body, i, length, StandardCharsets.US_ASCII)).append("\r\n");
+        }
+        return ascii(builder.append("0\r\n\r\n").toString());
+    }
+
+    /**
+     * 随机的可打印字符
+     */
+    private static byte[] body(int length, Random random) {
+        byte[] body = new byte[length];
+        for (int i = 0; i < length; i++) {
+            body[i] = (byte) ('a' + random.nextInt(26));
+        }
+        return body;
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] result = new byte[a.length + b.length];
+        System.arraycopy(a, 0, result, 0, a.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+
+    /**
+     * 一条TCP连接(客户端 -> 服务端:80)
+     */
+    private static final class Connection {
+        private final int clientAddr;
+        private final int clientPort;
+        private long clientSeq;
+        private long serverSeq;
+
+        Connection(int id, Random random) {
+            this.clientAddr = CLIENT_ADDR + (id >>> 14);
+            this.clientPort = 1024 + (id & 0x3FFF);
+            this.clientSeq = random.nextInt() & 0xFFFFFFFFL;
+            this.serverSeq = random.nextInt() & 0xFFFFFFFFL;
+        }
+
+        void client(byte[] data, List<byte[]> frames, int mss) {
+            for (int i = 0; i < data.length; i += mss) {
+                int length = Math.min(mss, data.length - i);
+                frames.add(frame(clientAddr, clientPort, SERVER_ADDR, 80, clientSeq, serverSeq, data, i, length));
+                clientSeq = (clientSeq + length) & 0xFFFFFFFFL;
+            }
+        }
+
+        void server(byte[] data, List<byte[]> frames, int mss) {
+            for (int i = 0; i < data.length; i += mss) {
+                int length = Math.min(mss, data.length - i);
+                frames.add(frame(SERVER_ADDR, 80, clientAddr, clientPort, serverSeq, clientSeq, data, i, length));
+                serverSeq = (serverSeq + length) & 0xFFFFFFFFL;
+            }
+        }
+    }
+
+    /**
+     * Ethernet/IPv4/TCP帧(PSH|ACK)
+     */
+    private static byte[] frame(int srcAddr, int srcPort, int dstAddr, int dstPort, long seqNum, long ackNum,
+                                byte[] data, int offset, int length) {
+        ByteBuffer buffer = ByteBuffer.allocate(14 + 20 + 20 + length);
+        buffer.put(new byte[]{0x02, 0, 0, 0, 0, 0x02, 0x02, 0, 0, 0, 0, 0x01}).putShort((short) 0x0800);
+        int ip = buffer.position();
+        buffer.put((byte) 0x45).put((byte) 0).putShort((short) (40 + length))
+                .putShort((short) 0).putShort((short) 0x4000)  // DF
+                .put((byte) 64).put((byte) 6).putShort((short) 0)
+                .putInt(srcAddr).putInt(dstAddr);
+        buffer.putShort(ip + 10, (short) checksum(buffer.array(), ip, 20));
+        buffer.putShort((short) srcPort).putShort((short) dstPort)
+                .putInt((int) seqNum).putInt((int) ackNum)
+                .put((byte) 0x50).put((byte) 0x18).putShort((short) 65535)
+                .putShort((short) 0).putShort((short) 0);
+        buffer.put(data, offset, length);
+        return buffer.array();
+    }
+
+    private static int checksum(byte[] bytes, int offset, int length) {
+        int sum = 0;
+        for (int i = offset; i < offset + length; i += 2) {
+            sum += (bytes[i] & 0xFF) << 8 | (bytes[i + 1] & 0xFF);
+        }
+        while ((sum >>> 16) != 0) {
+            sum = (sum & 0xFFFF) + (sum >>> 16);
+        }
+        return ~sum & 0xFFFF;
+    }
+}
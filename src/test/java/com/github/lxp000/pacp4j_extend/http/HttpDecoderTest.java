@@ -0,0 +1,325 @@
+package com.github.lxp000.pacp4j_extend.http;
+
+import com.github.lxp000.pacp4j_extend.benchmark.SyntheticTraffic;
+import com.github.lxp000.pacp4j_extend.dispatch.DispatcherConfig;
+import com.github.lxp000.pacp4j_extend.dispatch.HttpProtocol;
+import com.github.lxp000.pacp4j_extend.dispatch.ProtocolDispatcher;
+import com.github.lxp000.pacp4j_extend.metrics.DecoderMetrics;
+import com.github.lxp000.pacp4j_extend.metrics.DropReason;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static com.github.lxp000.pacp4j_extend.http.TcpConversation.ascii;
+import static org.junit.Assert.*;
+
+/**
+ * 解码结果和缓存释放<br>
+ * 每个用例结束时释放收到的请求/响应并关闭解码器, 解码器不能再持有ByteBuf,
+ * 也不能有未释放就被回收的ByteBuf(surefire使用-Dio.netty.leakDetection.level=paranoid, 每个ByteBuf都检查)
+ */
+public class HttpDecoderTest {
+    private static final int DLT_EN10MB = 1;
+
+    private HttpDecoder decoder;
+    private final List<HttpPacket> packets = new ArrayList<>();
+
+    static {
+        LeakRecorder.install();
+    }
+
+    @After
+    public void closeReleasesAllBuffers() throws InterruptedException {
+        for (HttpPacket packet : packets) {
+            packet.release();
+        }
+        if (decoder != null) {
+            decoder.close();
+            assertEquals(0, decoder.outstandingBuffers());
+            assertTrue(decoder.connections().isEmpty());
+        }
+        assertEquals(Collections.emptyList(), LeakRecorder.collect());
+    }
+
+    @Test
+    public void syntheticTraffic() {
+        for (boolean lazy : new boolean[]{false, true}) {
+            for (SyntheticTraffic.Scenario scenario : SyntheticTraffic.Scenario.values()) {
+                HttpDecoderConfig config = new HttpDecoderConfig();
+                config.setLazy(lazy);
+                HttpDecoder decoder = new HttpDecoder(config);
+                List<HttpPacket> packets = new ArrayList<>();
+                for (byte[] frame : SyntheticTraffic.generate(scenario, 100, 42)) {
+                    decoder.decode(frame, DLT_EN10MB, 0, packets::add);
+                }
+                int requests = 0;
+                int responses = 0;
+                for (HttpPacket packet : packets) {
+                    if (packet instanceof HttpRequest) {
+                        requests++;
+                    } else {
+                        assertNotNull(scenario.name(), ((HttpResponse) packet).getRequestPath());
+                        assertEquals(scenario.name(), packet.getBodyLength(), packet.getBody().length());
+                        responses++;
+                    }
+                    packet.release();
+                }
+                assertEquals(scenario.name(), 100, requests);
+                assertEquals(scenario.name(), 100, responses);
+                decoder.close();
+                assertEquals(scenario.name() + " lazy=" + lazy, 0, decoder.outstandingBuffers());
+            }
+        }
+    }
+
+    @Test
+    public void outOfOrderSegments() {
+        decoder = lazyDecoder();
+        TcpConversation conversation = new TcpConversation(40000);
+        decode(conversation.client("GET /a HTTP/1.1\r\n\r\n"));
+        byte[][] frames = conversation.server(ascii("HTTP/1.1 200 OK\r\nContent-Length: 26\r\n\r\nabcdefghijklmnopqrstuvwxyz"), 20, 25, 10);
+        decode(frames[0], frames[2], frames[3], frames[1]);
+        assertEquals(2, packets.size());
+        assertEquals("abcdefghijklmnopqrstuvwxyz", packets.get(1).getBody());
+    }
+
+    @Test
+    public void retransmittedSegments() {
+        decoder = lazyDecoder();
+        TcpConversation conversation = new TcpConversation(40001);
+        byte[] request = conversation.client("GET /a HTTP/1.1\r\n\r\n");
+        decode(request, request);
+        byte[][] frames = conversation.server(ascii("HTTP/1.1 200 OK\r\nContent-Length: 26\r\n\r\nabcdefghijklmnopqrstuvwxyz"), 20, 25, 10);
+        decode(frames[0], frames[1], frames[1], frames[0], frames[2], frames[3], frames[3]);
+        assertEquals(2, packets.size());
+        assertEquals("/a", ((HttpRequest) packets.get(0)).getPath());
+        assertEquals("abcdefghijklmnopqrstuvwxyz", packets.get(1).getBody());
+    }
+
+    @Test
+    public void chunkedSizeLineSplitAcrossSegments() {
+        decoder = lazyDecoder();
+        TcpConversation conversation = new TcpConversation(40002);
+        decode(conversation.client("GET /a HTTP/1.1\r\n\r\n"));
+        String head = "HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n";
+        String body = "1a\r\nabcdefghijklmnopqrstuvwxyz\r\n3;ext=1\r\n123\r\n0\r\nX-Checksum: 42\r\nX-Count: 2\r\n\r\n";
+        // 第一个chunk的长度行"1a"分在两个包, 第二个trailer行也跨包
+        decode(conversation.server(ascii(head + body), head.length() + 1, 40, 30));
+        assertEquals(2, packets.size());
+        HttpPacket response = packets.get(1);
+        assertEquals("abcdefghijklmnopqrstuvwxyz123", response.getBody());
+        assertEquals("42", response.getTrailers().get("X-Checksum"));
+        assertEquals("2", response.getTrailers().get("X-Count"));
+    }
+
+    @Test
+    public void pipelinedRequests() {
+        decoder = lazyDecoder();
+        TcpConversation conversation = new TcpConversation(40003);
+        decode(conversation.client("GET /1 HTTP/1.1\r\n\r\nPOST /2 HTTP/1.1\r\nContent-Length: 3\r\n\r\nabcGET /3 HTTP/1.1\r\n\r\n"));
+        decode(conversation.server("HTTP/1.1 201 A\r\nContent-Length: 1\r\n\r\naHTTP/1.1 202 B\r\nContent-Length: 0\r\n\r\n"));
+        decode(conversation.server("HTTP/1.1 203 C\r\nContent-Length: 1\r\n\r\nc"));
+        assertEquals(6, packets.size());
+        String[] paths = {"/1", "/2", "/3"};
+        for (int i = 0; i < 3; i++) {
+            assertEquals(paths[i], ((HttpRequest) packets.get(i)).getPath());
+            HttpResponse response = (HttpResponse) packets.get(3 + i);
+            assertEquals(Integer.valueOf(201 + i), response.getResCode());
+            assertEquals(paths[i], response.getRequestPath());
+            assertEquals(packets.get(i).getTimestamp(), response.getRequestTimestamp());
+        }
+        assertEquals("abc", packets.get(1).getBody());
+    }
+
+    @Test
+    public void gzipBody() throws IOException {
+        HttpDecoderConfig config = new HttpDecoderConfig();
+        config.setLazy(true);
+        config.setDecompress(true);
+        decoder = new HttpDecoder(config);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            text.append("line ").append(i).append('\n');
+        }
+        ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(gzip)) {
+            out.write(ascii(text.toString()));
+        }
+        byte[] head = ascii("HTTP/1.1 200 OK\r\nContent-Encoding: gzip\r\nContent-Length: " + gzip.size() + "\r\n\r\n");
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        response.write(head);
+        gzip.writeTo(response);
+        TcpConversation conversation = new TcpConversation(40004);
+        decode(conversation.client("GET /a HTTP/1.1\r\nAccept-Encoding: gzip\r\n\r\n"));
+        decode(conversation.server(response.toByteArray(), head.length + 10, 100));
+        assertEquals(2, packets.size());
+        assertEquals(text.toString(), packets.get(1).getBody());
+        assertNull(packets.get(1).getBodyError());
+    }
+
+    @Test
+    public void responseWithoutRequestIsSkipped() {
+        decoder = lazyDecoder();
+        TcpConversation conversation = new TcpConversation(40005);
+        // 没有请求的响应, body看起来像请求/响应的首部, 只能按长度跳过
+        String body = "GET /fake HTTP/1.1\r\n\r\nHTTP/1.1 500 X\r\n\r\n";
+        decode(conversation.server("HTTP/1.1 200 OK\r\nContent-Length: " + body.length() + "\r\n\r\n" + body.substring(0, 10)));
+        decode(conversation.server(body.substring(10)));
+        assertTrue(packets.isEmpty());
+        decode(conversation.client("GET /real HTTP/1.1\r\n\r\n"));
+        decode(conversation.server("HTTP/1.1 204 No Content\r\n\r\n"));
+        assertEquals(2, packets.size());
+        assertEquals("/real", ((HttpRequest) packets.get(0)).getPath());
+        assertEquals(Integer.valueOf(204), ((HttpResponse) packets.get(1)).getResCode());
+    }
+
+    @Test
+    public void http10ResponseReadUntilFin() {
+        decoder = lazyDecoder();
+        TcpConversation conversation = new TcpConversation(40006);
+        decode(conversation.client("GET /length HTTP/1.0\r\n\r\n"));
+        decode(conversation.server("HTTP/1.0 200 OK\r\nContent-Length: 2\r\n\r\nok"));
+        decode(conversation.client("HEAD /head HTTP/1.0\r\n\r\n"));
+        decode(conversation.server("HTTP/1.0 200 OK\r\n\r\n"));
+        assertEquals(4, packets.size());
+        assertEquals("ok", packets.get(1).getBody());
+        assertNull(packets.get(3).getBody());
+
+        decode(conversation.client("GET /close HTTP/1.0\r\n\r\n"));
+        decode(conversation.server("HTTP/1.0 200 OK\r\nContent-Type: text/plain\r\n\r\nhello "));
+        assertEquals(5, packets.size());  // 没有长度 等待连接结束
+        decode(conversation.server(ascii("world"), TcpConversation.PSH_ACK | TcpConversation.FIN));
+        assertEquals(6, packets.size());
+        assertEquals("hello world", packets.get(5).getBody());
+        assertEquals("/close", ((HttpResponse) packets.get(5)).getRequestPath());
+    }
+
+    @Test
+    public void decodeAfterCloseFails() {
+        decoder = lazyDecoder();
+        TcpConversation conversation = new TcpConversation(40008);
+        decode(conversation.client("GET /a HTTP/1.1\r\nContent-Length: 4\r\n\r\nab"));
+        decoder.reset();  // 重置后可以继续解码
+        decode(conversation.client("GET /b HTTP/1.1\r\n\r\n"));
+        assertEquals(1, packets.size());
+        assertEquals("/b", ((HttpRequest) packets.get(0)).getPath());
+        decoder.close();
+        try {
+            decode(conversation.client("GET /c HTTP/1.1\r\n\r\n"));
+            fail("decoded after close");
+        } catch (IllegalStateException expected) {
+            // 关闭后不能继续解码
+        }
+    }
+
+    @Test
+    public void ipV6FlowsAreKeyedOnFullAddress() {
+        decoder = lazyDecoder();
+        // 两个客户端地址每4字节异或的结果相同
+        byte[] server = {0x20, 0x01, 0x0d, (byte) 0xb8, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 2};
+        byte[] client1 = {0x20, 0x01, 0x0d, (byte) 0xb8, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1};
+        byte[] client2 = {0x20, 0x01, 0x0d, (byte) 0xb8, 0, 0, 0, 1, 0, 0, 0, 1, 0, 0, 0, 1};
+        TcpConversation first = new TcpConversation(client1, 40007, server);
+        TcpConversation second = new TcpConversation(client2, 40007, server);
+        decode(first.client("GET /one HTTP/1.1\r\n\r\n"), second.client("GET /two HTTP/1.1\r\n\r\n"));
+        decode(second.server("HTTP/1.1 202 B\r\nContent-Length: 0\r\n\r\n"), first.server("HTTP/1.1 201 A\r\nContent-Length: 0\r\n\r\n"));
+        assertEquals(4, packets.size());
+        assertEquals("/two", ((HttpResponse) packets.get(2)).getRequestPath());
+        assertEquals("/one", ((HttpResponse) packets.get(3)).getRequestPath());
+        assertEquals("2001:db8::2", ((HttpResponse) packets.get(3)).getSrcHost());
+        assertEquals("2001:db8:0:1:0:1:0:1", ((HttpRequest) packets.get(1)).getSrcHost());
+    }
+
+    @Test
+    public void admissionCountsClientsAndRemembersRefusals() {
+        HttpDecoderConfig config = new HttpDecoderConfig();
+        config.setLazy(true);
+        AdmissionConfig admission = new AdmissionConfig();
+        admission.setMaxSessions(2);
+        admission.setMaxSessionsPerHost(1);
+        config.setAdmission(admission);
+        DecoderMetrics metrics = new DecoderMetrics();
+        config.setMetrics(metrics);
+        decoder = new HttpDecoder(config);
+        byte[] server = {10, 0, 0, 2};
+        TcpConversation a = new TcpConversation(new byte[]{10, 0, 0, 1}, 40011, server);
+        TcpConversation b = new TcpConversation(new byte[]{10, 0, 0, 3}, 40011, server);
+        TcpConversation c = new TcpConversation(new byte[]{10, 0, 0, 4}, 40011, server);
+        TcpConversation d = new TcpConversation(new byte[]{10, 0, 0, 5}, 40011, server);
+        // 中途抓包 第一个包来自服务端: 按客户端地址计数, 两个连接都接受
+        decode(a.server("HTTP/1.1 200 OK\r\nContent-Length: 4\r\n\r\nab"), b.server("HTTP/1.1 200 OK\r\nContent-Length: 4\r\n\r\nab"));
+        decode(a.server("cd"), b.server("cd"), b.client("GET /b HTTP/1.1\r\n\r\n"), b.server("HTTP/1.1 204 No Content\r\n\r\n"));
+        assertEquals(2, packets.size());
+        assertEquals(0, metrics.getDrops(DropReason.SHED_HOST));
+        // 达到上限拒绝, 有连接结束后拒绝的连接仍然跳过
+        decode(c.client("GET /c1 HTTP/1.1\r\n\r\n"));
+        decode(a.client(new byte[0], TcpConversation.RST));
+        decode(c.client("GET /c2 HTTP/1.1\r\n\r\n"), c.server("HTTP/1.1 204 No Content\r\n\r\n"));
+        assertEquals(2, packets.size());
+        assertEquals(3, metrics.getDrops(DropReason.SHED_CAPACITY));
+        decode(d.client("GET /d HTTP/1.1\r\n\r\n"), d.server("HTTP/1.1 204 No Content\r\n\r\n"));
+        assertEquals(4, packets.size());
+        assertEquals("/d", ((HttpRequest) packets.get(2)).getPath());
+    }
+
+    @Test
+    public void ipV4TotalLengthZero() {
+        decoder = lazyDecoder();
+        TcpConversation conversation = new TcpConversation(40010);
+        byte[] request = conversation.client("GET /tso HTTP/1.1\r\n\r\n");
+        request[16] = 0;  // TSO: IPv4总长度为0
+        request[17] = 0;
+        decode(request, conversation.server("HTTP/1.1 204 No Content\r\n\r\n"));
+        assertEquals(2, packets.size());
+        assertEquals("/tso", ((HttpRequest) packets.get(0)).getPath());
+    }
+
+    @Test
+    public void dispatcherConnectionHoldsFlows() {
+        decoder = lazyDecoder();
+        DispatcherConfig config = new DispatcherConfig();
+        config.setEventTime(true);
+        config.setTimeout(1000);
+        ProtocolDispatcher dispatcher = new ProtocolDispatcher(config).register(new HttpProtocol(decoder), 80);
+        TcpConversation first = new TcpConversation(40008);
+        TcpConversation second = new TcpConversation(40009);
+        dispatch(dispatcher, 1, first.client("GET /first HTTP/1.1\r\n\r\n"));
+        dispatch(dispatcher, 1, first.server("HTTP/1.1 200 OK\r\nContent-Length: 10\r\n\r\nabc"));
+        assertEquals(1, decoder.connections().size());
+        assertTrue(decoder.outstandingBuffers() > 0);
+        // 分配器的连接超时, 连接中未完整的响应释放
+        dispatch(dispatcher, 10, second.client("GET /second HTTP/1.1\r\n\r\n"));
+        assertEquals(1, dispatcher.connectionCount());
+        assertEquals(1, decoder.connections().size());
+        assertEquals(0, decoder.outstandingBuffers());
+        dispatch(dispatcher, 10, second.server("HTTP/1.1 204 No Content\r\n\r\n"));
+        assertEquals(3, packets.size());
+        assertEquals("/second", ((HttpResponse) packets.get(2)).getRequestPath());
+        dispatcher.close();
+        assertEquals(0, decoder.outstandingBuffers());
+        assertTrue(decoder.connections().isEmpty());
+    }
+
+    private void dispatch(ProtocolDispatcher dispatcher, long seconds, byte[] frame) {
+        dispatcher.decode(ByteBuffer.wrap(frame), DLT_EN10MB, seconds * 1_000_000_000L, packet -> packets.add((HttpPacket) packet));
+    }
+
+    private static HttpDecoder lazyDecoder() {
+        HttpDecoderConfig config = new HttpDecoderConfig();
+        config.setLazy(true);
+        return new HttpDecoder(config);
+    }
+
+    private void decode(byte[]... frames) {
+        for (byte[] frame : frames) {
+            decoder.decode(frame, DLT_EN10MB, 0, packets::add);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.github.lxp000.pacp4j_extend.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import org.junit.After;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * 首部状态机
+ */
+public class HttpHeadParserTest {
+    private final HttpHeadParser parser = new HttpHeadParser(ByteBufAllocator.DEFAULT);
+
+    @After
+    public void tearDown() {
+        parser.reset();
+    }
+
+    @Test
+    public void headSplitAtEveryOffset() {
+        String head = "POST /req/test?id=1 HTTP/1.1\r\nHost: example.com\r\nX-Long: a\r\n  b\r\n\tc\r\nContent-Length: 4\r\n\r\n";
+        byte[] data = (head + "body").getBytes(StandardCharsets.US_ASCII);
+        for (int split = 1; split < data.length; split++) {
+            ByteBuf first = Unpooled.wrappedBuffer(data, 0, split);
+            ByteBuf second = Unpooled.wrappedBuffer(data, split, data.length - split);
+            int bodyIndex = parser.parse(first);
+            if (split < head.length()) {
+                assertEquals("split " + split, HttpHeadParser.NEED_MORE, bodyIndex);
+                assertEquals("split " + split, head.length() - split, parser.parse(second));
+            } else {
+                assertEquals("split " + split, head.length(), bodyIndex);
+            }
+            HttpRequest request = (HttpRequest) parser.take();
+            assertEquals("POST", request.getHttpMethod());
+            assertEquals("/req/test", request.getPath());
+            assertEquals("example.com", request.getHeaders().get("Host"));
+            assertEquals("a b c", request.getHeaders().get("X-Long"));
+            assertEquals(4, request.getContentLength());
+            request.release();
+            assertFalse(parser.isPending());
+        }
+    }
+
+    @Test
+    public void http10() {
+        HttpRequest request = (HttpRequest) parse("HEAD /index.html HTTP/1.0\r\n\r\n");
+        assertEquals("HEAD", request.getHttpMethod());
+        assertTrue(request.headMethod);
+        request.release();
+
+        HttpResponse response = (HttpResponse) parse("HTTP/1.0 200 OK\r\nContent-Type: text/plain\r\n\r\n");
+        assertEquals(Integer.valueOf(200), response.getResCode());
+        assertTrue(response.closeDelimited);  // 没有长度 body到连接结束
+        response.release();
+
+        response = (HttpResponse) parse("HTTP/1.0 200 OK\r\nContent-Length: 0\r\n\r\n");
+        assertFalse(response.closeDelimited);
+        response.release();
+
+        response = (HttpResponse) parse("HTTP/1.0 304 Not Modified\r\n\r\n");
+        assertFalse(response.closeDelimited);
+        response.release();
+
+        response = (HttpResponse) parse("HTTP/1.1 200 OK\r\n\r\n");
+        assertFalse(response.closeDelimited);
+        response.release();
+    }
+
+    @Test
+    public void obsFold() {
+        HttpPacket packet = parse("HTTP/1.1 200 OK\r\nX-Folded: first  \r\n second\r\n\t third\r\nNo-Colon\r\n next\r\nServer: s\r\n\r\n");
+        assertEquals("first second third", packet.getHeaders().get("X-Folded"));
+        assertEquals("s", packet.getHeaders().get("Server"));
+        assertEquals(2, packet.getHeaders().size());
+        packet.release();
+    }
+
+    @Test
+    public void oversizeHeadIsRejected() {
+        byte[] line = "X-Padding: 0123456789012345678901234567890123456789\r\n".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(HttpHeadParser.NEED_MORE, parser.parse(Unpooled.copiedBuffer("GET / HTTP/1.1\r\n", StandardCharsets.US_ASCII)));
+        int result = HttpHeadParser.NEED_MORE;
+        for (int length = 0; result == HttpHeadParser.NEED_MORE; length += line.length) {
+            assertTrue("head " + length, length <= 64 * 1024 + line.length);
+            result = parser.parse(Unpooled.wrappedBuffer(line));
+        }
+        assertEquals(HttpHeadParser.ERROR, result);
+        assertFalse(parser.isPending());
+        assertEquals(0, parser.bufferedBytes());
+    }
+
+    @Test
+    public void nonHttpIsRejected() {
+        assertEquals(HttpHeadParser.ERROR, parser.parse(Unpooled.wrappedBuffer(new byte[]{0x16, 0x03, 0x01, 0x02, 0x00})));
+        assertEquals(HttpHeadParser.ERROR, parser.parse(Unpooled.copiedBuffer("SSH-2.0-OpenSSH_8.9\r\n", StandardCharsets.US_ASCII)));
+        assertFalse(parser.isPending());
+    }
+
+    private HttpPacket parse(String head) {
+        ByteBuf data = Unpooled.copiedBuffer(head, StandardCharsets.US_ASCII);
+        assertEquals(head.length(), parser.parse(data));
+        return parser.take();
+    }
+}
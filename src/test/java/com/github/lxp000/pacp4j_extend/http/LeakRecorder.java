@@ -0,0 +1,61 @@
+package com.github.lxp000.pacp4j_extend.http;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.util.ResourceLeakDetector;
+import io.netty.util.ResourceLeakDetectorFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 记录Netty检测到的ByteBuf泄漏(不依赖日志输出)<br>
+ * 需要在第一次创建ByteBuf之前安装; 检测级别由-Dio.netty.leakDetection.level设置(surefire为paranoid)
+ */
+final class LeakRecorder {
+    private static final List<String> LEAKS = new CopyOnWriteArrayList<>();
+
+    private LeakRecorder() {
+    }
+
+    static void install() {
+        ResourceLeakDetectorFactory.setResourceLeakDetectorFactory(new ResourceLeakDetectorFactory() {
+            @Override
+            public <T> ResourceLeakDetector<T> newResourceLeakDetector(Class<T> resource, int samplingInterval, long maxActive) {
+                return new ResourceLeakDetector<T>(resource, samplingInterval) {
+                    @Override
+                    protected boolean needReport() {
+                        return true;
+                    }
+
+                    @Override
+                    protected void reportTracedLeak(String resourceType, String records) {
+                        LEAKS.add(resourceType + records);
+                    }
+
+                    @Override
+                    protected void reportUntracedLeak(String resourceType) {
+                        LEAKS.add(resourceType);
+                    }
+                };
+            }
+        });
+    }
+
+    /**
+     * 回收不可达的ByteBuf, 返回并清除目前为止检测到的泄漏<br>
+     * 泄漏在之后创建ByteBuf时报告, 所以每次GC后再分配一次
+     *
+     * @return 泄漏的记录
+     */
+    static List<String> collect() throws InterruptedException {
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(20);
+            ByteBufAllocator.DEFAULT.buffer(1).release();
+        }
+        List<String> leaks = new ArrayList<>(LEAKS);
+        LEAKS.clear();
+        return leaks;
+    }
+}
@@ -0,0 +1,90 @@
+package com.github.lxp000.pacp4j_extend.http;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 测试用的一条TCP连接(客户端 -> 服务端:80)<br>
+ * 按发送顺序生成两个方向的 Ethernet/IPv4(或IPv6)/TCP 帧, seqNum/ackNum自动递增
+ */
+final class TcpConversation {
+    static final int FIN = 0x01;
+    static final int RST = 0x04;
+    static final int PSH_ACK = 0x18;
+
+    private final byte[] clientAddr;
+    private final int clientPort;
+    private final byte[] serverAddr;
+    private long clientSeq = 1000;
+    private long serverSeq = 5000;
+
+    TcpConversation(int clientPort) {
+        this(new byte[]{10, 0, 0, 1}, clientPort, new byte[]{10, 0, 0, 2});
+    }
+
+    TcpConversation(byte[] clientAddr, int clientPort, byte[] serverAddr) {
+        this.clientAddr = clientAddr;
+        this.clientPort = clientPort;
+        this.serverAddr = serverAddr;
+    }
+
+    byte[] client(String data) {
+        return client(ascii(data), PSH_ACK);
+    }
+
+    byte[] client(byte[] data, int flags) {
+        byte[] frame = frame(clientAddr, clientPort, serverAddr, 80, clientSeq, serverSeq, flags, data);
+        clientSeq += data.length;
+        return frame;
+    }
+
+    byte[] server(String data) {
+        return server(ascii(data), PSH_ACK);
+    }
+
+    byte[] server(byte[] data, int flags) {
+        byte[] frame = frame(serverAddr, 80, clientAddr, clientPort, serverSeq, clientSeq, flags, data);
+        serverSeq += data.length;
+        return frame;
+    }
+
+    /**
+     * 服务端的数据按长度分为多个帧
+     */
+    byte[][] server(byte[] data, int... lengths) {
+        byte[][] frames = new byte[lengths.length + 1][];
+        int offset = 0;
+        for (int i = 0; i < lengths.length; i++) {
+            frames[i] = server(Arrays.copyOfRange(data, offset, offset + lengths[i]), PSH_ACK);
+            offset += lengths[i];
+        }
+        frames[lengths.length] = server(Arrays.copyOfRange(data, offset, data.length), PSH_ACK);
+        return frames;
+    }
+
+    static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] frame(byte[] srcAddr, int srcPort, byte[] dstAddr, int dstPort, long seqNum, long ackNum,
+                                int flags, byte[] data) {
+        boolean ipV4 = srcAddr.length == 4;
+        ByteBuffer buffer = ByteBuffer.allocate(14 + (ipV4 ? 20 : 40) + 20 + data.length);
+        buffer.put(new byte[]{0x02, 0, 0, 0, 0, 0x02, 0x02, 0, 0, 0, 0, 0x01}).putShort((short) (ipV4 ? 0x0800 : 0x86DD));
+        if (ipV4) {
+            buffer.put((byte) 0x45).put((byte) 0).putShort((short) (40 + data.length))
+                    .putShort((short) 0).putShort((short) 0x4000)
+                    .put((byte) 64).put((byte) 6).putShort((short) 0);
+        } else {
+            buffer.putInt(0x60000000).putShort((short) (20 + data.length)).put((byte) 6).put((byte) 64);
+        }
+        buffer.put(srcAddr).put(dstAddr);
+        buffer.putShort((short) srcPort).putShort((short) dstPort)
+                .putInt((int) seqNum).putInt((int) ackNum)
+                .put((byte) 0x50).put((byte) flags).putShort((short) 65535)
+                .putShort((short) 0).putShort((short) 0);
+        buffer.put(data);
+        return buffer.array();
+    }
+}
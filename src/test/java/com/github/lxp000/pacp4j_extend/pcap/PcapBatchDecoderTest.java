@@ -0,0 +1,101 @@
+package com.github.lxp000.pacp4j_extend.pcap;
+
+import com.github.lxp000.pacp4j_extend.benchmark.SyntheticTraffic;
+import com.github.lxp000.pacp4j_extend.http.HttpDecoder;
+import com.github.lxp000.pacp4j_extend.http.HttpDecoderConfig;
+import com.github.lxp000.pacp4j_extend.http.HttpPacket;
+import com.github.lxp000.pacp4j_extend.http.HttpRequest;
+import com.github.lxp000.pacp4j_extend.http.HttpResponse;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * 并行解码和拼接: 结果与一个解码器按顺序解码所有帧相同
+ */
+public class PcapBatchDecoderTest {
+    private static final int DLT_EN10MB = 1;
+    private static final long START = 1_600_000_000_000_000_000L;  // 第一个帧的抓包时间(纳秒)
+    private static final long INTERVAL = 1_000_000;  // 帧间隔1ms
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void parallelEqualsSequential() throws IOException {
+        List<byte[]> frames = SyntheticTraffic.generate(SyntheticTraffic.Scenario.CONTENT_LENGTH, 80, 7);
+        HttpDecoderConfig config = new HttpDecoderConfig();
+        config.setEventTime(true);
+
+        List<String> sequential = new ArrayList<>();
+        HttpDecoder decoder = new HttpDecoder(config);
+        for (int i = 0; i < frames.size(); i++) {
+            decoder.decode(frames.get(i), DLT_EN10MB, START + i * INTERVAL, packet -> sequential.add(describe(packet)));
+        }
+        decoder.close();
+
+        // 切分点在连接中间(请求和响应, 以及body的多个包在不同文件)
+        List<Path> files = new ArrayList<>();
+        int[] splits = {frames.size() / 5 + 1, frames.size() * 2 / 5 + 3, frames.size() * 3 / 5, frames.size() * 4 / 5 + 2, frames.size()};
+        int from = 0;
+        for (int split : splits) {
+            files.add(write(frames, from, split));
+            from = split;
+        }
+        List<String> parallel = new ArrayList<>();
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            assertEquals(frames.size(), PcapBatchDecoder.decode(files, config, pool, packet -> parallel.add(describe(packet))));
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(160, sequential.size());
+        assertEquals(sequential, parallel);
+    }
+
+    private static String describe(HttpPacket packet) {
+        String text;
+        if (packet instanceof HttpRequest) {
+            HttpRequest request = (HttpRequest) packet;
+            text = request.getHttpMethod() + " " + request.getPath() + " " + request.getBody();
+        } else {
+            HttpResponse response = (HttpResponse) packet;
+            text = response.getResCode() + " " + response.getBody() + " <- " + response.getRequestPath();
+        }
+        packet.release();
+        return packet.getTimestamp() + " " + text;
+    }
+
+    /**
+     * 写入pcap文件(微秒精度)
+     */
+    private Path write(List<byte[]> frames, int from, int to) throws IOException {
+        Path file = folder.newFile(String.format("capture-%03d.pcap", from)).toPath();
+        try (OutputStream out = Files.newOutputStream(file)) {
+            ByteBuffer header = ByteBuffer.allocate(24).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(0xa1b2c3d4).putShort((short) 2).putShort((short) 4).putInt(0).putInt(0).putInt(65535).putInt(DLT_EN10MB);
+            out.write(header.array());
+            for (int i = from; i < to; i++) {
+                byte[] frame = frames.get(i);
+                long micros = (START + i * INTERVAL) / 1000;
+                ByteBuffer record = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+                record.putInt((int) (micros / 1_000_000)).putInt((int) (micros % 1_000_000)).putInt(frame.length).putInt(frame.length);
+                out.write(record.array());
+                out.write(frame);
+            }
+        }
+        return file;
+    }
+}